@@ -0,0 +1,93 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.api.ProjectServiceApi;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1AppProjectSpec;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ProjectManager#updateProjectSpec} on projects with a growing number of destinations and
+ * source repositories.
+ * <p>
+ * {@code unchanged} merges the last destination and source repository of the project, which are already
+ * present, so the whole specification is scanned and nothing is written. {@code added} merges a new
+ * destination and source repository, then removes them to leave the project as it was.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectSpecBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int destinationCount;
+
+    private ProjectManager projectManager;
+    private V1alpha1AppProject project;
+    private Destination existingDestination;
+    private Source existingSource;
+    private Destination newDestination;
+    private Source newSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        projectManager = new ProjectManager(new ProjectServiceApi(), new SimpleMeterRegistry());
+
+        List<V1alpha1ApplicationDestination> destinations = new ArrayList<>(destinationCount + 1);
+        List<String> sourceRepos = new ArrayList<>(destinationCount + 1);
+        for (int i = 0; i < destinationCount; i++) {
+            destinations.add(new V1alpha1ApplicationDestination()
+                    .server("https://kubernetes.default.svc")
+                    .namespace("namespace-" + i));
+            sourceRepos.add(repoURL(i));
+        }
+        project = new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name("benchmark-project"))
+                .spec(new V1alpha1AppProjectSpec().destinations(destinations).sourceRepos(sourceRepos));
+
+        existingDestination = new Destination("https://kubernetes.default.svc", "namespace-" + (destinationCount - 1));
+        existingSource = new Source("path", repoURL(destinationCount - 1), "HEAD");
+        newDestination = new Destination("https://kubernetes.default.svc", "new-namespace");
+        newSource = new Source("path", repoURL(destinationCount), "HEAD");
+    }
+
+    @Benchmark
+    public boolean unchanged() {
+        return projectManager.updateProjectSpec(project, existingDestination, existingSource);
+    }
+
+    @Benchmark
+    public boolean added() {
+        boolean changed = projectManager.updateProjectSpec(project, newDestination, newSource);
+        V1alpha1AppProjectSpec spec = project.getSpec();
+        spec.getDestinations().remove(spec.getDestinations().size() - 1);
+        spec.getSourceRepos().remove(spec.getSourceRepos().size() - 1);
+        return changed;
+    }
+
+    private static String repoURL(int index) {
+        return String.format("https://gitlab.com/benchmark/repository-%05d.git", index);
+    }
+}
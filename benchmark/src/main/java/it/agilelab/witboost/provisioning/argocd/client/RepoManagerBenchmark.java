@@ -0,0 +1,133 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.agilelab.witboost.provisioning.argocd.configuration.GitConfiguration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.api.RepositoryServiceApi;
+import org.openapitools.client.model.V1alpha1ConnectionState;
+import org.openapitools.client.model.V1alpha1Repository;
+import org.openapitools.client.model.V1alpha1RepositoryList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Compares the lookup of a repository by its URL with the scan of the whole repository list
+ * performed by {@link RepoManager#createOrUpdateRepository(String, String)}.
+ * <p>
+ * The ArgoCD API is replaced by a stub that deserializes pre-serialized responses, so that the
+ * benchmark accounts for the payload size of the list endpoint without any network noise.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepoManagerBenchmark {
+
+    private static final String PROJECT = "benchmark-project";
+
+    @Param({"10000"})
+    private int repositoryCount;
+
+    private String repoURL;
+    private RepoManager targetedRepoManager;
+    private RepoManager listLookupRepoManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper =
+                new ObjectMapper().findAndRegisterModules().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        List<V1alpha1Repository> repositories = new ArrayList<>(repositoryCount);
+        for (int i = 0; i < repositoryCount; i++) {
+            repositories.add(repository(String.format("https://gitlab.com/benchmark/repository-%05d.git", i)));
+        }
+        repoURL = repositories.get(repositoryCount / 2).getRepo();
+
+        byte[] listPayload = objectMapper.writeValueAsBytes(new V1alpha1RepositoryList().items(repositories));
+        byte[] repositoryPayload = objectMapper.writeValueAsBytes(repository(repoURL));
+        RepositoryServiceApi stub = new StubRepositoryServiceApi(objectMapper, listPayload, repositoryPayload);
+
+        GitConfiguration gitConfiguration = new GitConfiguration();
+        gitConfiguration.setUsername("benchmark");
+        gitConfiguration.setToken("benchmark-token");
+
+        targetedRepoManager = new RepoManager(stub, gitConfiguration, false);
+        listLookupRepoManager = new RepoManager(stub, gitConfiguration, true);
+    }
+
+    @Benchmark
+    public Object targetedLookup() {
+        return targetedRepoManager.createOrUpdateRepository(repoURL, PROJECT);
+    }
+
+    @Benchmark
+    public Object listLookup() {
+        return listLookupRepoManager.createOrUpdateRepository(repoURL, PROJECT);
+    }
+
+    private static V1alpha1Repository repository(String url) {
+        return new V1alpha1Repository()
+                .repo(url)
+                .type("git")
+                .project(PROJECT)
+                .username("benchmark")
+                .connectionState(
+                        new V1alpha1ConnectionState().status("Successful").message(""));
+    }
+
+    /** Answers the ArgoCD repository calls by deserializing fixed payloads, as the real client would. */
+    private static class StubRepositoryServiceApi extends RepositoryServiceApi {
+
+        private final ObjectMapper objectMapper;
+        private final byte[] listPayload;
+        private final byte[] repositoryPayload;
+
+        StubRepositoryServiceApi(ObjectMapper objectMapper, byte[] listPayload, byte[] repositoryPayload) {
+            this.objectMapper = objectMapper;
+            this.listPayload = listPayload;
+            this.repositoryPayload = repositoryPayload;
+        }
+
+        @Override
+        public ResponseEntity<V1alpha1Repository> repositoryServiceCreateRepositoryWithHttpInfo(
+                V1alpha1Repository body, Boolean upsert, Boolean credsOnly) {
+            return ResponseEntity.ok(body);
+        }
+
+        @Override
+        public V1alpha1RepositoryList repositoryServiceListRepositories(
+                String repo, Boolean forceRefresh, String appProject) {
+            return read(listPayload, V1alpha1RepositoryList.class);
+        }
+
+        @Override
+        public V1alpha1Repository repositoryServiceGet(String repo, Boolean forceRefresh, String appProject) {
+            return read(repositoryPayload, V1alpha1Repository.class);
+        }
+
+        private <T> T read(byte[] payload, Class<T> type) {
+            try {
+                return objectMapper.readValue(payload, type);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1AppProjectSpec;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the in-process work done on the payloads of a provisioning request: reading the component
+ * descriptor, building the ArgoCD application and serializing the bodies sent to ArgoCD.
+ * <p>
+ * The descriptor is the sample of the automated sync component shipped with the documentation.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestPayloadBenchmark {
+
+    private static final int PROJECT_DESTINATIONS = 50;
+
+    private ObjectMapper yamlMapper;
+    private ObjectMapper jsonMapper;
+    private String descriptor;
+    private ArgoCDApplicationSpecific specific;
+    private V1alpha1Application application;
+    private V1alpha1AppProject project;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        yamlMapper = new YAMLMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        jsonMapper =
+                new ObjectMapper().findAndRegisterModules().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+        try (InputStream input = RequestPayloadBenchmark.class.getResourceAsStream("/descriptor.yaml")) {
+            descriptor = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        specific = readSpecific();
+        application = ApplicationManager.buildApplicationDetails(specific);
+
+        List<V1alpha1ApplicationDestination> destinations = new ArrayList<>();
+        List<String> sourceRepos = new ArrayList<>();
+        for (int i = 0; i < PROJECT_DESTINATIONS; i++) {
+            destinations.add(new V1alpha1ApplicationDestination()
+                    .server("https://kubernetes.default.svc")
+                    .namespace("namespace-" + i));
+            sourceRepos.add(String.format("https://gitlab.com/benchmark/repository-%05d.git", i));
+        }
+        project = new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name(specific.getProject()))
+                .spec(new V1alpha1AppProjectSpec().destinations(destinations).sourceRepos(sourceRepos));
+    }
+
+    /** Reads the descriptor and extracts the specific of the component to provision, as the framework does. */
+    @Benchmark
+    public ArgoCDApplicationSpecific readSpecific() throws Exception {
+        JsonNode root = yamlMapper.readTree(descriptor);
+        String componentId = root.get("componentIdToProvision").asText();
+        for (JsonNode component : root.get("dataProduct").get("components")) {
+            if (componentId.equals(component.get("id").asText())) {
+                return yamlMapper.treeToValue(component.get("specific"), ArgoCDApplicationSpecific.class);
+            }
+        }
+        throw new IllegalStateException("Component " + componentId + " not found in the descriptor");
+    }
+
+    @Benchmark
+    public V1alpha1Application buildApplicationDetails() {
+        return ApplicationManager.buildApplicationDetails(specific);
+    }
+
+    @Benchmark
+    public byte[] serializeApplication() throws Exception {
+        return jsonMapper.writeValueAsBytes(application);
+    }
+
+    @Benchmark
+    public byte[] serializeProject() throws Exception {
+        return jsonMapper.writeValueAsBytes(project);
+    }
+}
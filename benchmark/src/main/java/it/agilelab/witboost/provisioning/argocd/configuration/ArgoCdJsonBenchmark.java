@@ -0,0 +1,125 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1HealthStatus;
+import org.openapitools.client.model.V1alpha1SyncStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the serialization of the ArgoCD payloads by the default mapper, which writes every null field of the
+ * generated models and resolves the serializers on every call, with the pre-built writers and readers of
+ * {@link ArgoCdJsonMessageConverter}, with and without the Blackbird module.
+ * <p>
+ * The response read by the {@code read*} benchmarks carries {@code unknownFields} fields that are not part of the
+ * generated models, as returned by newer ArgoCD versions, to measure the cost of skipping them.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArgoCdJsonBenchmark {
+
+    @Param({"0", "100"})
+    public int unknownFields;
+
+    private ObjectMapper defaultMapper;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private ObjectWriter blackbirdWriter;
+    private ObjectReader blackbirdReader;
+    private V1alpha1Application application;
+    private byte[] response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        defaultMapper =
+                new ObjectMapper().findAndRegisterModules().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        ObjectMapper argoCdMapper = ArgoCdJsonMessageConverter.createObjectMapper(new ObjectMapper(), false);
+        writer = argoCdMapper.writerFor(V1alpha1Application.class);
+        reader = argoCdMapper.readerFor(V1alpha1Application.class);
+        ObjectMapper blackbirdMapper = ArgoCdJsonMessageConverter.createObjectMapper(new ObjectMapper(), true);
+        blackbirdWriter = blackbirdMapper.writerFor(V1alpha1Application.class);
+        blackbirdReader = blackbirdMapper.readerFor(V1alpha1Application.class);
+
+        application = new V1alpha1Application()
+                .metadata(new V1ObjectMeta().name("benchmark-app").namespace("argocd"))
+                .spec(new V1alpha1ApplicationSpec()
+                        .project("benchmark-project")
+                        .source(new V1alpha1ApplicationSource()
+                                .repoURL("https://gitlab.com/benchmark/repository.git")
+                                .path("manifests")
+                                .targetRevision("HEAD"))
+                        .destination(new V1alpha1ApplicationDestination()
+                                .server("https://kubernetes.default.svc")
+                                .namespace("benchmark")));
+
+        ObjectNode body = argoCdMapper.valueToTree(application.status(new V1alpha1ApplicationStatus()
+                .health(new V1alpha1HealthStatus().status("Healthy"))
+                .sync(new V1alpha1SyncStatus().status("Synced").revision("abc123"))
+                .reconciledAt(OffsetDateTime.now())));
+        ObjectNode unknown = ((ObjectNode) body.get("status")).putObject("unknownSection");
+        for (int i = 0; i < unknownFields; i++) {
+            ArrayNode values = unknown.putArray("field" + i);
+            values.addObject().put("name", "value-" + i).put("count", i);
+        }
+        response = argoCdMapper.writeValueAsBytes(body);
+        application.status(null);
+    }
+
+    @Benchmark
+    public byte[] writeDefault() throws Exception {
+        return defaultMapper.writeValueAsBytes(application);
+    }
+
+    @Benchmark
+    public byte[] writePrebuilt() throws Exception {
+        return writer.writeValueAsBytes(application);
+    }
+
+    @Benchmark
+    public byte[] writeBlackbird() throws Exception {
+        return blackbirdWriter.writeValueAsBytes(application);
+    }
+
+    @Benchmark
+    public V1alpha1Application readDefault() throws Exception {
+        return defaultMapper.readValue(response, V1alpha1Application.class);
+    }
+
+    @Benchmark
+    public V1alpha1Application readPrebuilt() throws Exception {
+        return reader.readValue(response);
+    }
+
+    @Benchmark
+    public V1alpha1Application readBlackbird() throws Exception {
+        return blackbirdReader.readValue(response);
+    }
+}
@@ -0,0 +1,54 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1HealthStatus;
+import org.openapitools.client.model.V1alpha1SyncStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the assembly of the {@link ProvisionInfo} returned for a provisioned application. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProvisionInfoBenchmark {
+
+    private V1alpha1Application application;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new V1alpha1Application()
+                .metadata(new V1ObjectMeta().name("appName"))
+                .spec(new V1alpha1ApplicationSpec()
+                        .project("default")
+                        .source(new V1alpha1ApplicationSource()
+                                .path("folderPath")
+                                .repoURL("https://gitlab.com/this.is.a.test/argocd.demo.git")
+                                .targetRevision("HEAD")))
+                .status(new V1alpha1ApplicationStatus()
+                        .health(new V1alpha1HealthStatus().status("Healthy"))
+                        .sync(new V1alpha1SyncStatus().status("Synced")));
+    }
+
+    @Benchmark
+    public ProvisionInfo buildProvisionInfo() {
+        return ArgocdProvisionService.buildProvisionInfo(application);
+    }
+}
@@ -0,0 +1,246 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.client.ApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.ProjectManager;
+import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
+import it.agilelab.witboost.provisioning.argocd.configuration.GitConfiguration;
+import it.agilelab.witboost.provisioning.argocd.configuration.VirtualThreads;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import it.agilelab.witboost.provisioning.argocd.model.application.SyncPolicy;
+import jakarta.validation.Validation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.api.ApplicationServiceApi;
+import org.openapitools.client.api.ProjectServiceApi;
+import org.openapitools.client.api.RepositoryServiceApi;
+import org.openapitools.client.model.ApplicationApplicationSyncRequest;
+import org.openapitools.client.model.ProjectProjectCreateRequest;
+import org.openapitools.client.model.ProjectProjectUpdateRequest;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ConnectionState;
+import org.openapitools.client.model.V1alpha1Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * Measures the time to serve a burst of concurrent provisioning requests with platform and virtual threads.
+ * <p>
+ * Every operation submits {@code concurrentProvisions} requests at once, as the servlet container would, and
+ * waits for all of them. With platform threads, requests run on a pool sized like the default Tomcat one and
+ * the project and repository setup on the bounded stage pool; with virtual threads, every request and stage
+ * gets its own virtual thread. ArgoCD is replaced by stubs answering every call after {@code latencyMillis},
+ * so the benchmark measures how many requests can wait on ArgoCD at the same time.
+ * </p>
+ * <p>
+ * The {@code virtual} mode requires Java 21 or later.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProvisionThreadingBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int STAGE_POOL_SIZE = 16;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"1000"})
+    private int concurrentProvisions;
+
+    @Param({"50"})
+    private long latencyMillis;
+
+    private ExecutorService requestExecutor;
+    private ArgocdProvisionService provisionService;
+    private List<ArgoCDApplicationSpecific> applications;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ExecutorService stageExecutor;
+        if (threads.equals("virtual")) {
+            requestExecutor = VirtualThreads.newThreadPerTaskExecutor("request-");
+            stageExecutor = VirtualThreads.newThreadPerTaskExecutor("argocd-stage-");
+        } else {
+            requestExecutor = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            stageExecutor = new ThreadPoolExecutor(
+                    STAGE_POOL_SIZE,
+                    STAGE_POOL_SIZE,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new SynchronousQueue<>(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        GitConfiguration gitConfiguration = new GitConfiguration();
+        gitConfiguration.setUsername("benchmark");
+        gitConfiguration.setToken("benchmark-token");
+        provisionService = new ArgocdProvisionService(
+                new RepoManager(new StubRepositoryServiceApi(latencyMillis), gitConfiguration),
+                new ApplicationManager(new StubApplicationServiceApi(latencyMillis)),
+                new ProjectManager(new StubProjectServiceApi(latencyMillis), new SimpleMeterRegistry()),
+                stageExecutor,
+                1,
+                concurrentProvisions,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                null,
+                new SimpleMeterRegistry());
+
+        applications = new ArrayList<>(concurrentProvisions);
+        for (int i = 0; i < concurrentProvisions; i++) {
+            applications.add(application(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdown();
+        provisionService.shutdown();
+    }
+
+    @Benchmark
+    public int concurrentProvisions() throws Exception {
+        List<Future<Boolean>> requests = new ArrayList<>(concurrentProvisions);
+        for (ArgoCDApplicationSpecific application : applications) {
+            requests.add(requestExecutor.submit(() ->
+                    provisionService.provisionBatch(List.of(application)).get(0).isRight()));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> request : requests) {
+            if (request.get()) succeeded++;
+        }
+        if (succeeded != concurrentProvisions) {
+            throw new IllegalStateException(
+                    String.format("Only %d of %d provisions succeeded", succeeded, concurrentProvisions));
+        }
+        return succeeded;
+    }
+
+    private static ArgoCDApplicationSpecific application(int index) {
+        ArgoCDApplicationSpecific application = new ArgoCDApplicationSpecific();
+        application.setName(String.format("application-%04d", index));
+        // One project per application, so that the project writes are not coalesced
+        application.setProject(String.format("project-%04d", index));
+        Destination destination = new Destination();
+        destination.setServer("https://kubernetes.default.svc");
+        destination.setNamespace(application.getName());
+        application.setDestination(destination);
+        application.setSource(new Source("folderPath", "https://gitlab.com/benchmark/repository.git", "HEAD"));
+        application.setSyncPolicy(new SyncPolicy());
+        return application;
+    }
+
+    private static void waitForArgoCd(long latencyMillis) {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Answers the ArgoCD project calls after a fixed latency, reporting every project as missing. */
+    private static class StubProjectServiceApi extends ProjectServiceApi {
+
+        private final long latencyMillis;
+
+        StubProjectServiceApi(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public V1alpha1AppProject projectServiceGet(String name) {
+            waitForArgoCd(latencyMillis);
+            throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+        }
+
+        @Override
+        public V1alpha1AppProject projectServiceCreate(ProjectProjectCreateRequest body) {
+            waitForArgoCd(latencyMillis);
+            return body.getProject();
+        }
+
+        @Override
+        public V1alpha1AppProject projectServiceUpdate(String projectMetadataName, ProjectProjectUpdateRequest body) {
+            waitForArgoCd(latencyMillis);
+            return body.getProject();
+        }
+    }
+
+    /** Answers the ArgoCD repository calls after a fixed latency. */
+    private static class StubRepositoryServiceApi extends RepositoryServiceApi {
+
+        private final long latencyMillis;
+
+        StubRepositoryServiceApi(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public ResponseEntity<V1alpha1Repository> repositoryServiceCreateRepositoryWithHttpInfo(
+                V1alpha1Repository body, Boolean upsert, Boolean credsOnly) {
+            waitForArgoCd(latencyMillis);
+            return ResponseEntity.ok(body);
+        }
+
+        @Override
+        public V1alpha1Repository repositoryServiceGet(String repo, Boolean forceRefresh, String appProject) {
+            waitForArgoCd(latencyMillis);
+            return new V1alpha1Repository()
+                    .repo(repo)
+                    .project(appProject)
+                    .connectionState(new V1alpha1ConnectionState().status("Successful"));
+        }
+    }
+
+    /** Answers the ArgoCD application calls after a fixed latency. */
+    private static class StubApplicationServiceApi extends ApplicationServiceApi {
+
+        private final long latencyMillis;
+
+        StubApplicationServiceApi(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public V1alpha1Application applicationServiceCreate(
+                V1alpha1Application body, Boolean upsert, Boolean validate) {
+            waitForArgoCd(latencyMillis);
+            return body;
+        }
+
+        @Override
+        public V1alpha1Application applicationServiceSync(String name, ApplicationApplicationSyncRequest body) {
+            waitForArgoCd(latencyMillis);
+            return new V1alpha1Application();
+        }
+    }
+}
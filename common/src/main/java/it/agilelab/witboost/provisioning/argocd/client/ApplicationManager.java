@@ -2,10 +2,15 @@ package it.agilelab.witboost.provisioning.argocd.client;
 
 import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.openapitools.client.api.ApplicationServiceApi;
 import org.openapitools.client.model.*;
 import org.slf4j.Logger;
@@ -22,9 +27,45 @@ public class ApplicationManager {
 
     private final Logger logger = LoggerFactory.getLogger(ApplicationManager.class);
     private final ApplicationServiceApi applicationServiceApi;
+    private final ArgoCdCallMetrics callMetrics;
+    private final ApplicationWriter writer;
 
     public ApplicationManager(ApplicationServiceApi applicationServiceApi) {
+        this(applicationServiceApi, null, null);
+    }
+
+    /**
+     * Constructs an {@code ApplicationManager} that, after triggering the sync, waits for the application to be
+     * Synced and Healthy.
+     *
+     * @param applicationServiceApi the API client for interacting with ArgoCD applications.
+     * @param applicationWatcher the watcher following the application after the sync, or {@code null} to return
+     *                           as soon as the sync has been triggered.
+     * @param syncTimeout the maximum time to wait for the synchronization.
+     */
+    public ApplicationManager(
+            ApplicationServiceApi applicationServiceApi, ApplicationWatcher applicationWatcher, Duration syncTimeout) {
+        this(applicationServiceApi, applicationWatcher, syncTimeout, Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructs an {@code ApplicationManager} recording its calls to ArgoCD in the given registry.
+     *
+     * @param applicationServiceApi the API client for interacting with ArgoCD applications.
+     * @param applicationWatcher the watcher following the application after the sync, or {@code null} to return
+     *                           as soon as the sync has been triggered.
+     * @param syncTimeout the maximum time to wait for the synchronization.
+     * @param meterRegistry the registry where the {@link ArgoCdCallMetrics} and the {@link SyncDecision} counters
+     *                      are registered.
+     */
+    public ApplicationManager(
+            ApplicationServiceApi applicationServiceApi,
+            ApplicationWatcher applicationWatcher,
+            Duration syncTimeout,
+            MeterRegistry meterRegistry) {
         this.applicationServiceApi = applicationServiceApi;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
+        this.writer = new ApplicationWriter(new BlockingCalls(), applicationWatcher, syncTimeout, meterRegistry);
     }
 
     /**
@@ -36,27 +77,22 @@ public class ApplicationManager {
      */
     public Either<FailedOperation, V1alpha1Application> createOrUpdateApplication(
             ArgoCDApplicationSpecific applicationSpecific) {
-        try {
-
-            V1alpha1Application applicationDetails = buildApplicationDetails(applicationSpecific);
-            V1alpha1Application v1alpha1Application =
-                    applicationServiceApi.applicationServiceCreate(applicationDetails, true, true);
-
-            applicationServiceApi.applicationServiceSync(
-                    applicationSpecific.getName(), new ApplicationApplicationSyncRequest());
+        return createOrUpdateApplication(applicationSpecific, ProvisionProgress.NOOP);
+    }
 
-            logger.info(
-                    "Application {} created or updated successfully (project {}).",
-                    applicationSpecific.getName(),
-                    applicationSpecific.getProject());
-            return Either.right(v1alpha1Application);
-        } catch (Exception e) {
-            String error = String.format(
-                    "An unexpected error occurred while creating the application %s. Please try again later. If the issue still persists, contact the platform team for assistance! Details: %s",
-                    applicationSpecific.getName(), e.getMessage());
-            logger.error(error, e);
-            return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
-        }
+    /**
+     * Creates or updates an ArgoCD application, reporting the application and sync steps to the given
+     * {@link ProvisionProgress}. The flow is shared with the {@link AsyncApplicationManager}, see
+     * {@link ApplicationWriter}.
+     *
+     * @param applicationSpecific The application details to be created or updated.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return An {@link Either} containing the created/updated {@link V1alpha1Application} on success
+     *         or a {@link FailedOperation} on failure.
+     */
+    public Either<FailedOperation, V1alpha1Application> createOrUpdateApplication(
+            ArgoCDApplicationSpecific applicationSpecific, ProvisionProgress progress) {
+        return writer.createOrUpdate(applicationSpecific, progress).join();
     }
 
     /**
@@ -69,7 +105,9 @@ public class ApplicationManager {
     public Either<FailedOperation, Void> deleteApplication(String appName, String project) {
         try {
 
-            applicationServiceApi.applicationServiceDelete(appName, false, null, null, project);
+            callMetrics.record(
+                    "application.delete",
+                    () -> applicationServiceApi.applicationServiceDelete(appName, false, null, null, project));
             logger.info("Application {} deleted successfully.", appName);
             return Either.right(null);
 
@@ -95,8 +133,10 @@ public class ApplicationManager {
     public Either<FailedOperation, V1alpha1ApplicationStatus> getApplicationStatus(String name, String project) {
         try {
 
-            V1alpha1Application application = applicationServiceApi.applicationServiceGet(
-                    name, null, null, null, null, null, null, List.of(project));
+            V1alpha1Application application = callMetrics.record(
+                    "application.get",
+                    () -> applicationServiceApi.applicationServiceGet(
+                            name, null, null, null, null, null, null, List.of(project)));
             V1alpha1ApplicationStatus status = application.getStatus();
 
             logger.info(String.format(
@@ -117,12 +157,13 @@ public class ApplicationManager {
     }
 
     /**
-     * Builds the application details for creating or updating an ArgoCD application.
+     * Builds the application details for creating or updating an ArgoCD application, annotated with the hash of
+     * its desired state.
      *
      * @param appSpecific The specific application configuration.
      * @return A fully constructed {@link V1alpha1Application}.
      */
-    private V1alpha1Application buildApplicationDetails(ArgoCDApplicationSpecific appSpecific) {
+    static V1alpha1Application buildApplicationDetails(ArgoCDApplicationSpecific appSpecific) {
         V1alpha1ApplicationSpec spec = new V1alpha1ApplicationSpec()
                 .project(appSpecific.getProject())
                 .destination(new V1alpha1ApplicationDestination()
@@ -141,7 +182,48 @@ public class ApplicationManager {
         }
 
         return new V1alpha1Application()
-                .metadata(new V1ObjectMeta().name(appSpecific.getName()))
+                .metadata(new V1ObjectMeta()
+                        .name(appSpecific.getName())
+                        .putAnnotationsItem(DesiredState.HASH_ANNOTATION, DesiredState.hash(spec)))
                 .spec(spec);
     }
+
+    /** The calls of the blocking client, completed on the caller's thread. */
+    private class BlockingCalls implements ApplicationWriter.Calls {
+
+        @Override
+        public CompletableFuture<V1alpha1Application> get(String name, String project) {
+            try {
+                return CompletableFuture.completedFuture(callMetrics.record(
+                        "application.get",
+                        () -> applicationServiceApi.applicationServiceGet(
+                                name, null, null, null, null, null, null, List.of(project))));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1Application> create(V1alpha1Application application) {
+            try {
+                return CompletableFuture.completedFuture(callMetrics.record(
+                        "application.create",
+                        () -> applicationServiceApi.applicationServiceCreate(application, true, true)));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        @Override
+        public CompletableFuture<?> sync(String name) {
+            try {
+                return CompletableFuture.completedFuture(callMetrics.record(
+                        "application.sync",
+                        () -> applicationServiceApi.applicationServiceSync(
+                                name, new ApplicationApplicationSyncRequest())));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
 }
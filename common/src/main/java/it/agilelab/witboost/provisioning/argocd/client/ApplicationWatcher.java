@@ -0,0 +1,340 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1ApplicationWatchEvent;
+import org.openapitools.client.model.V1alpha1ComparedTo;
+import org.openapitools.client.model.V1alpha1OperationState;
+import org.openapitools.client.model.V1alpha1RevisionHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Follows an ArgoCD application through the watch stream ({@code GET /api/v1/stream/applications}) until its
+ * synchronization completes.
+ * <p>
+ * A single streaming connection is opened per application: ArgoCD sends the current state of the application
+ * first, then an event for every change, so no polling is needed. The stream is closed as soon as the
+ * application is Synced and Healthy, the sync operation fails, or the deadline expires.
+ * </p>
+ */
+public class ApplicationWatcher {
+
+    static final String WATCH_PATH = "/api/v1/stream/applications";
+
+    private final Logger logger = LoggerFactory.getLogger(ApplicationWatcher.class);
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String basePath;
+    private final String token;
+
+    /**
+     * Constructs an {@code ApplicationWatcher}.
+     *
+     * @param httpClient the HTTP client used to open the watch streams.
+     * @param objectMapper the mapper used to parse the watch events.
+     * @param basePath the base URL of the ArgoCD API server.
+     * @param token the token used to authenticate to ArgoCD.
+     */
+    public ApplicationWatcher(HttpClient httpClient, ObjectMapper objectMapper, String basePath, String token) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.basePath = basePath;
+        this.token = token;
+    }
+
+    /**
+     * Waits until the application is Synced and Healthy, without any pending or failed sync operation.
+     * <p>
+     * The first event of the stream is the current state of the application, which may still describe a previous
+     * spec or a previous sync. An event only completes the wait if the last comparison of the application was made
+     * against the desired spec and, when a sync was requested, if its sync operation is a later one than the
+     * operation ArgoCD reported before the request: the operation was seen running on the stream, it started after
+     * the previous one, or ArgoCD recorded a later deployment in the history of the application.
+     * </p>
+     *
+     * @param name The name of the application.
+     * @param project The ArgoCD project where the application is located.
+     * @param desired The spec the application has been created or updated with.
+     * @param syncRequest The sync requested for the application, or {@code null} if no sync was requested.
+     * @param timeout The maximum time to wait for the synchronization.
+     * @return A future completed with the last observed {@link V1alpha1Application} once it is Synced and Healthy,
+     *         or a {@link FailedOperation} if the sync fails, the stream is interrupted or the timeout expires.
+     */
+    public CompletableFuture<Either<FailedOperation, V1alpha1Application>> waitForSync(
+            String name, String project, V1alpha1ApplicationSpec desired, SyncRequest syncRequest, Duration timeout) {
+        CompletableFuture<Either<FailedOperation, V1alpha1Application>> result = new CompletableFuture<>();
+        WatchSubscriber subscriber = new WatchSubscriber(name, desired, syncRequest, result);
+
+        URI uri = UriComponentsBuilder.fromHttpUrl(basePath)
+                .path(WATCH_PATH)
+                .queryParam("name", name)
+                .queryParam("projects", project)
+                .build()
+                .encode()
+                .toUri();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        logger.info("Waiting up to {} for application {} to be Synced and Healthy", timeout, name);
+        httpClient
+                .sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(subscriber))
+                .whenComplete((response, failure) -> {
+                    if (result.isDone()) return;
+                    if (failure != null) {
+                        result.complete(failure(name, failure.getMessage(), failure));
+                    } else {
+                        result.complete(failure(
+                                name,
+                                String.format("the watch stream was closed with status %d", response.statusCode()),
+                                null));
+                    }
+                });
+        CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .execute(() -> {
+                    if (!result.isDone()) result.complete(timedOut(name, timeout, subscriber.last.get()));
+                });
+
+        return result.whenComplete((outcome, failure) -> subscriber.cancel());
+    }
+
+    /** Whether the sync operation has completed and left the application Synced and Healthy. */
+    static boolean isSyncedAndHealthy(V1alpha1Application application) {
+        V1alpha1ApplicationStatus status = application.getStatus();
+        if (application.getOperation() != null || status == null) return false;
+        V1alpha1OperationState operationState = status.getOperationState();
+        return status.getSync() != null
+                && "Synced".equals(status.getSync().getStatus())
+                && status.getHealth() != null
+                && "Healthy".equals(status.getHealth().getStatus())
+                && (operationState == null || "Succeeded".equals(operationState.getPhase()));
+    }
+
+    /**
+     * Whether the last comparison of the application was made against the desired source and destination, that
+     * is whether its sync and health status describe the desired spec rather than a previous one.
+     */
+    static boolean comparedToDesired(V1alpha1ApplicationSpec desired, V1alpha1Application application) {
+        V1alpha1ApplicationStatus status = application.getStatus();
+        V1alpha1ComparedTo comparedTo =
+                status != null && status.getSync() != null ? status.getSync().getComparedTo() : null;
+        return comparedTo != null
+                && sameSource(desired.getSource(), comparedTo.getSource())
+                && sameDestination(desired.getDestination(), comparedTo.getDestination());
+    }
+
+    private static boolean sameSource(V1alpha1ApplicationSource desired, V1alpha1ApplicationSource compared) {
+        return desired != null
+                && compared != null
+                && Objects.equals(desired.getRepoURL(), compared.getRepoURL())
+                && Objects.equals(desired.getPath(), compared.getPath())
+                && Objects.equals(desired.getTargetRevision(), compared.getTargetRevision());
+    }
+
+    private static boolean sameDestination(
+            V1alpha1ApplicationDestination desired, V1alpha1ApplicationDestination compared) {
+        return desired != null
+                && compared != null
+                && Objects.equals(desired.getServer(), compared.getServer())
+                && Objects.equals(desired.getNamespace(), compared.getNamespace());
+    }
+
+    private static V1alpha1OperationState operationState(V1alpha1Application application) {
+        return application.getStatus() != null ? application.getStatus().getOperationState() : null;
+    }
+
+    /** The id of the last deployment recorded by ArgoCD in the history of the application, if any. */
+    private static Long lastHistoryId(V1alpha1Application application) {
+        List<V1alpha1RevisionHistory> history =
+                application.getStatus() != null ? application.getStatus().getHistory() : null;
+        if (history == null) return null;
+        return history.stream()
+                .map(V1alpha1RevisionHistory::getId)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(null);
+    }
+
+    /** The message of the completed sync operation, if it failed. */
+    static Optional<String> operationFailure(V1alpha1Application application) {
+        if (application.getOperation() != null || application.getStatus() == null) return Optional.empty();
+        V1alpha1OperationState operationState = application.getStatus().getOperationState();
+        if (operationState == null) return Optional.empty();
+        if (!"Failed".equals(operationState.getPhase()) && !"Error".equals(operationState.getPhase())) {
+            return Optional.empty();
+        }
+        return Optional.of(String.format("%s: %s", operationState.getPhase(), operationState.getMessage()));
+    }
+
+    private Either<FailedOperation, V1alpha1Application> failure(String name, String details, Throwable cause) {
+        String error = String.format(
+                "An unexpected error occurred while waiting for the synchronization of the application %s. Details: %s",
+                name, details);
+        logger.error(error, cause);
+        Problem problem = cause == null ? new Problem(error) : new Problem(error, cause);
+        return Either.left(new FailedOperation(error, Collections.singletonList(problem)));
+    }
+
+    private Either<FailedOperation, V1alpha1Application> timedOut(
+            String name, Duration timeout, V1alpha1Application last) {
+        V1alpha1ApplicationStatus status = last == null ? null : last.getStatus();
+        String error = String.format(
+                "The application %s was not Synced and Healthy after %s. Sync status: %s. Health status: %s",
+                name,
+                timeout,
+                status != null && status.getSync() != null ? status.getSync().getStatus() : "unknown",
+                status != null && status.getHealth() != null
+                        ? status.getHealth().getStatus()
+                        : "unknown");
+        logger.error(error);
+        return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+    }
+
+    /** Receives the watch stream, one JSON object per line, and completes the result on a terminal state. */
+    private class WatchSubscriber implements Flow.Subscriber<String> {
+
+        private final String name;
+        private final V1alpha1ApplicationSpec desired;
+        private final SyncRequest syncRequest;
+        private final CompletableFuture<Either<FailedOperation, V1alpha1Application>> result;
+        private final AtomicReference<V1alpha1Application> last = new AtomicReference<>();
+        private volatile Flow.Subscription subscription;
+        private boolean operationSeen;
+
+        WatchSubscriber(
+                String name,
+                V1alpha1ApplicationSpec desired,
+                SyncRequest syncRequest,
+                CompletableFuture<Either<FailedOperation, V1alpha1Application>> result) {
+            this.name = name;
+            this.desired = desired;
+            this.syncRequest = syncRequest;
+            this.result = result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (result.isDone() || line.isBlank()) return;
+            try {
+                JsonNode message = objectMapper.readTree(line);
+                if (!message.hasNonNull("result")) {
+                    JsonNode error = message.has("error") ? message.get("error") : message;
+                    result.complete(failure(name, error.path("message").asText(line), null));
+                    return;
+                }
+                V1alpha1ApplicationWatchEvent event =
+                        objectMapper.treeToValue(message.get("result"), V1alpha1ApplicationWatchEvent.class);
+                onEvent(event);
+            } catch (Exception e) {
+                result.complete(failure(name, e.getMessage(), e));
+            }
+        }
+
+        private void onEvent(V1alpha1ApplicationWatchEvent event) {
+            V1alpha1Application application = event.getApplication();
+            if (application == null) return;
+            last.set(application);
+
+            if ("DELETED".equals(event.getType())) {
+                result.complete(failure(name, "the application has been deleted", null));
+                return;
+            }
+            // ArgoCD reports the start of an operation to the second: the requested operation is also recognized
+            // once it has been seen running, since the next terminal state is then its own
+            if (application.getOperation() != null) operationSeen = true;
+            if (syncRequest != null && !operationSeen && !syncRequest.startedBy(application)) return;
+            Optional<String> operationFailure = operationFailure(application);
+            if (operationFailure.isPresent()) {
+                String error = String.format(
+                        "The synchronization of the application %s failed. Details: %s", name, operationFailure.get());
+                logger.error(error);
+                result.complete(Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error)))));
+            } else if (isSyncedAndHealthy(application) && comparedToDesired(desired, application)) {
+                logger.info("Application {} is Synced and Healthy", name);
+                result.complete(Either.right(application));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!result.isDone()) result.complete(failure(name, throwable.getMessage(), throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            if (!result.isDone()) result.complete(failure(name, "the watch stream was closed by ArgoCD", null));
+        }
+
+        void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) current.cancel();
+        }
+    }
+
+    /**
+     * A sync requested for an application, identified by the start of the last sync operation and by the last
+     * deployment that ArgoCD reported before the request, {@code null} if there was none. Only the values reported
+     * by ArgoCD are compared, so the clock of the tech adapter plays no part.
+     *
+     * @param previousStartedAt The start of the last sync operation before the request.
+     * @param previousHistoryId The id of the last deployment in the history of the application before the request.
+     */
+    public record SyncRequest(OffsetDateTime previousStartedAt, Long previousHistoryId) {
+
+        /** The sync requested for the application, as ArgoCD reported it right before the request. */
+        public static SyncRequest after(V1alpha1Application application) {
+            V1alpha1OperationState operationState = operationState(application);
+            return new SyncRequest(
+                    operationState != null ? operationState.getStartedAt() : null, lastHistoryId(application));
+        }
+
+        /**
+         * Whether the sync operation of the application started after the one reported before the request, or a
+         * later deployment was recorded. The start is reported to the second, so the history tells apart two syncs
+         * started within the same second.
+         */
+        boolean startedBy(V1alpha1Application application) {
+            V1alpha1OperationState operationState = operationState(application);
+            if (operationState == null || operationState.getStartedAt() == null) return false;
+            if (previousStartedAt == null || operationState.getStartedAt().isAfter(previousStartedAt)) return true;
+            Long historyId = lastHistoryId(application);
+            return historyId != null && (previousHistoryId == null || historyId > previousHistoryId);
+        }
+    }
+}
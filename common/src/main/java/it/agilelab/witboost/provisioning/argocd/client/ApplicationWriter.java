@@ -0,0 +1,228 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openapitools.client.model.V1alpha1Application;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates or updates ArgoCD applications and triggers their synchronization on behalf of both the
+ * {@link ApplicationManager} and the {@link AsyncApplicationManager}.
+ * <p>
+ * The calls to ArgoCD are made through the {@link Calls} of the manager: they return futures that are already
+ * completed when the client is blocking, in which case the whole flow runs on the caller's thread. When an
+ * {@link ApplicationWatcher} is given, the flow then waits for the application to be Synced and Healthy.
+ * </p>
+ */
+final class ApplicationWriter {
+
+    private final Logger logger = LoggerFactory.getLogger(ApplicationWriter.class);
+    private final Calls calls;
+    private final ApplicationWatcher applicationWatcher;
+    private final Duration syncTimeout;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Creates a writer.
+     *
+     * @param calls the calls to the ArgoCD application API.
+     * @param applicationWatcher the watcher following the application after the sync, or {@code null} to complete
+     *                           as soon as the sync has been triggered.
+     * @param syncTimeout the maximum time to wait for the synchronization.
+     * @param meterRegistry the registry where the {@link SyncDecision} counters are registered.
+     */
+    ApplicationWriter(
+            Calls calls, ApplicationWatcher applicationWatcher, Duration syncTimeout, MeterRegistry meterRegistry) {
+        this.calls = calls;
+        this.applicationWatcher = applicationWatcher;
+        this.syncTimeout = syncTimeout;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Creates or updates an ArgoCD application and triggers its synchronization, reporting the application
+     * and sync steps to the given {@link ProvisionProgress}. If the live application already has the desired
+     * spec, the update is skipped. The sync is only requested when the {@link SyncDecision} requires it.
+     *
+     * @param applicationSpecific The application details to be created or updated.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return A future completed with the created/updated {@link V1alpha1Application} on success
+     *         or a {@link FailedOperation} on failure. It never completes exceptionally.
+     */
+    CompletableFuture<Either<FailedOperation, V1alpha1Application>> createOrUpdate(
+            ArgoCDApplicationSpecific applicationSpecific, ProvisionProgress progress) {
+        V1alpha1Application desired;
+        try {
+            progress.update(ProvisionStep.APPLICATION, StepStatus.RUNNING);
+            desired = ApplicationManager.buildApplicationDetails(applicationSpecific);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(
+                    createFailure(applicationSpecific, ProvisionStep.APPLICATION, e, progress));
+        }
+
+        return findApplication(applicationSpecific)
+                .thenCompose(live -> upsertAndSync(applicationSpecific, desired, live, progress));
+    }
+
+    /**
+     * Whether the sync has to be followed until the application is Synced and Healthy, which is not needed when
+     * ArgoCD already reports it so at the desired state.
+     */
+    static boolean needsWait(SyncDecision decision, V1alpha1Application application) {
+        return decision != SyncDecision.UP_TO_DATE || !ApplicationWatcher.isSyncedAndHealthy(application);
+    }
+
+    /** Reads the live application, completing with {@code null} if it does not exist or could not be read. */
+    private CompletableFuture<V1alpha1Application> findApplication(ArgoCDApplicationSpecific applicationSpecific) {
+        CompletableFuture<V1alpha1Application> live;
+        try {
+            live = calls.get(applicationSpecific.getName(), applicationSpecific.getProject());
+        } catch (RuntimeException e) {
+            live = CompletableFuture.failedFuture(e);
+        }
+        return live.exceptionally(failure -> {
+            logger.debug(
+                    "Application {} could not be read, it will be created or updated: {}",
+                    applicationSpecific.getName(),
+                    AsyncApiErrors.message(failure));
+            return null;
+        });
+    }
+
+    private CompletableFuture<Either<FailedOperation, V1alpha1Application>> upsertAndSync(
+            ArgoCDApplicationSpecific applicationSpecific,
+            V1alpha1Application desired,
+            V1alpha1Application live,
+            ProvisionProgress progress) {
+        AtomicReference<ProvisionStep> currentStep = new AtomicReference<>(ProvisionStep.APPLICATION);
+        CompletableFuture<V1alpha1Application> written;
+        if (DesiredState.isUpToDate(live, desired)) {
+            logger.info(
+                    "Application {} already has the desired state (project {}), skipping the update.",
+                    applicationSpecific.getName(),
+                    applicationSpecific.getProject());
+            progress.update(ProvisionStep.APPLICATION, StepStatus.SKIPPED);
+            written = CompletableFuture.completedFuture(live);
+        } else {
+            try {
+                written = calls.create(desired).thenApply(application -> {
+                    progress.update(ProvisionStep.APPLICATION, StepStatus.COMPLETED);
+                    return application;
+                });
+            } catch (RuntimeException e) {
+                written = CompletableFuture.failedFuture(e);
+            }
+        }
+
+        return written.thenCompose(application -> {
+                    currentStep.set(ProvisionStep.SYNC);
+                    return sync(applicationSpecific, desired, application, progress);
+                })
+                .<Either<FailedOperation, V1alpha1Application>>handle((outcome, failure) -> {
+                    if (failure != null) {
+                        return createFailure(applicationSpecific, currentStep.get(), failure, progress);
+                    }
+                    if (outcome.isRight()) {
+                        logger.info(
+                                "Application {} created or updated successfully (project {}).",
+                                applicationSpecific.getName(),
+                                applicationSpecific.getProject());
+                    }
+                    return outcome;
+                });
+    }
+
+    /**
+     * Requests the sync of the application when the {@link SyncDecision} requires it, then waits for the
+     * application to be Synced and Healthy if a watcher is configured and ArgoCD does not already report it so.
+     */
+    private CompletableFuture<Either<FailedOperation, V1alpha1Application>> sync(
+            ArgoCDApplicationSpecific applicationSpecific,
+            V1alpha1Application desired,
+            V1alpha1Application application,
+            ProvisionProgress progress) {
+        SyncDecision decision = SyncDecision.decide(desired.getSpec(), application);
+        decision.counter(meterRegistry).increment();
+        boolean waitForSync = applicationWatcher != null && needsWait(decision, application);
+        if (decision != SyncDecision.REQUIRED) {
+            logger.info("Not syncing application {}: {}", applicationSpecific.getName(), decision);
+        }
+        if (decision != SyncDecision.REQUIRED && !waitForSync) {
+            progress.update(ProvisionStep.SYNC, StepStatus.SKIPPED);
+            return CompletableFuture.completedFuture(Either.right(application));
+        }
+
+        progress.update(ProvisionStep.SYNC, StepStatus.RUNNING);
+        CompletableFuture<Either<FailedOperation, V1alpha1Application>> synced;
+        if (decision == SyncDecision.REQUIRED) {
+            // Read before the sync, the last operation tells the new sync apart from the previous ones
+            ApplicationWatcher.SyncRequest syncRequest = ApplicationWatcher.SyncRequest.after(application);
+            synced = calls.sync(applicationSpecific.getName())
+                    .thenCompose(requested -> awaitSync(applicationSpecific, application, syncRequest));
+        } else {
+            // No sync requested: any sync operation, automated or already running, ends the wait
+            synced = awaitSync(applicationSpecific, application, null);
+        }
+        return synced.thenApply(outcome -> {
+            progress.update(ProvisionStep.SYNC, outcome.isLeft() ? StepStatus.FAILED : StepStatus.COMPLETED);
+            return outcome;
+        });
+    }
+
+    private <T> Either<FailedOperation, T> createFailure(
+            ArgoCDApplicationSpecific applicationSpecific,
+            ProvisionStep step,
+            Throwable failure,
+            ProvisionProgress progress) {
+        progress.update(step, StepStatus.FAILED);
+        String error = String.format(
+                "An unexpected error occurred while creating the application %s. Please try again later. If the issue still persists, contact the platform team for assistance! Details: %s",
+                applicationSpecific.getName(), AsyncApiErrors.message(failure));
+        logger.error(error, AsyncApiErrors.unwrap(failure));
+        return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+    }
+
+    /**
+     * Waits for the application to be Synced and Healthy, if a watcher is configured. A {@code null} sync request
+     * accepts any sync operation.
+     */
+    private CompletableFuture<Either<FailedOperation, V1alpha1Application>> awaitSync(
+            ArgoCDApplicationSpecific applicationSpecific,
+            V1alpha1Application application,
+            ApplicationWatcher.SyncRequest syncRequest) {
+        if (applicationWatcher == null) return CompletableFuture.completedFuture(Either.right(application));
+        return applicationWatcher.waitForSync(
+                applicationSpecific.getName(),
+                applicationSpecific.getProject(),
+                application.getSpec(),
+                syncRequest,
+                syncTimeout);
+    }
+
+    /**
+     * The calls to the ArgoCD application API made by a manager. Failures are reported by completing the
+     * returned future exceptionally.
+     */
+    interface Calls {
+
+        /** Reads the application. */
+        CompletableFuture<V1alpha1Application> get(String name, String project);
+
+        /** Creates the application, or updates it if it already exists. */
+        CompletableFuture<V1alpha1Application> create(V1alpha1Application application);
+
+        /** Triggers the synchronization of the application. */
+        CompletableFuture<?> sync(String name);
+    }
+}
@@ -0,0 +1,115 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.openapitools.client.async.ApiException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Records the latency and the outcome of the calls to the ArgoCD API.
+ * <p>
+ * Every call is timed by the {@value #CALLS_METRIC} timer, tagged by {@code operation} (e.g.
+ * {@code application.create}) and {@code result}: {@code success}, {@code not_found},
+ * {@code conflict}, {@code client_error}, {@code server_error}, {@code rejected} when the call was not sent by
+ * {@link ArgoCdResilience} or {@link ArgoCdRateLimiter} or {@code error} when no response was received.
+ * The timer publishes a percentile histogram, so that the latency quantiles can be aggregated across
+ * replicas. The calls in flight are tracked by the {@value #ACTIVE_CALLS_METRIC} long task timer, tagged by
+ * {@code operation}. Calls are not tagged by ArgoCD project, so that the number of series does not grow with the
+ * number of projects.
+ * </p>
+ */
+public class ArgoCdCallMetrics {
+
+    public static final String CALLS_METRIC = "argocd.client.requests";
+    public static final String ACTIVE_CALLS_METRIC = "argocd.client.requests.active";
+
+    private final MeterRegistry meterRegistry;
+
+    public ArgoCdCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Performs a call of the blocking client, recording its latency and outcome.
+     *
+     * @param operation The name of the operation, e.g. {@code project.update}.
+     * @param call The call to perform.
+     * @return The result of the call.
+     */
+    public <T> T record(String operation, Supplier<T> call) {
+        LongTaskTimer.Sample active = activeCalls(operation).start();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String result = "error";
+        try {
+            T value = call.get();
+            result = "success";
+            return value;
+        } catch (RuntimeException e) {
+            result = result(e);
+            throw e;
+        } finally {
+            active.stop();
+            sample.stop(calls(operation, result));
+        }
+    }
+
+    /**
+     * Performs a call of the non-blocking client, recording its latency and outcome once the returned future
+     * completes.
+     *
+     * @param operation The name of the operation, e.g. {@code project.update}.
+     * @param call The call to perform.
+     * @return The future of the call.
+     */
+    <T> CompletableFuture<T> recordAsync(String operation, AsyncApiErrors.ApiCall<T> call) {
+        LongTaskTimer.Sample active = activeCalls(operation).start();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return AsyncApiErrors.call(call).whenComplete((value, failure) -> {
+            active.stop();
+            sample.stop(calls(operation, failure == null ? "success" : result(failure)));
+        });
+    }
+
+    /** Classifies a failed call by the HTTP status returned by ArgoCD, if any. */
+    static String result(Throwable failure) {
+        Throwable cause = AsyncApiErrors.unwrap(failure);
+        if (cause instanceof RestClientResponseException e && e.getStatusCode() != null)
+            return result(e.getStatusCode().value());
+        if (cause instanceof ApiException e && e.getCode() > 0) return result(e.getCode());
+        if (cause instanceof CallNotPermittedException
+                || cause instanceof BulkheadFullException
+                || cause instanceof ArgoCdRateLimiter.WaitTimeoutException) {
+            return "rejected";
+        }
+        return "error";
+    }
+
+    private static String result(int status) {
+        if (status == 404) return "not_found";
+        if (status == 409) return "conflict";
+        if (status >= 400 && status < 500) return "client_error";
+        if (status >= 500) return "server_error";
+        return "error";
+    }
+
+    private Timer calls(String operation, String result) {
+        return Timer.builder(CALLS_METRIC)
+                .description("Calls to the ArgoCD API")
+                .tag("operation", operation)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private LongTaskTimer activeCalls(String operation) {
+        return LongTaskTimer.builder(ACTIVE_CALLS_METRIC)
+                .description("Calls to the ArgoCD API in flight")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,251 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.agilelab.witboost.provisioning.argocd.configuration.ArgoCdConfiguration;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Limits the rate of the calls sent to the ArgoCD API, so that mass redeploys do not starve the ArgoCD UI and
+ * controllers.
+ * <p>
+ * A single token bucket, refilled at {@code permitsPerSecond} and holding up to {@code burst} tokens, is shared by
+ * all the calls of the adapter. When the bucket is empty calls wait in a queue, served by {@link Priority}: reads
+ * and deletes go ahead of creations, updates and syncs, and calls of the same priority are served in arrival order.
+ * A call waiting for longer than {@code maxWait} fails with a {@link WaitTimeoutException}.
+ * </p>
+ * <p>
+ * The calls waiting are tracked by the {@value #QUEUE_METRIC} gauge and the time spent waiting by the
+ * {@value #WAIT_METRIC} timer, both tagged by {@code priority}; the timer is also tagged by {@code result}
+ * ({@code acquired} or {@code timeout}).
+ * </p>
+ * <p>
+ * Like {@link ArgoCdResilience}, the blocking client is limited by registering this class as an interceptor of its
+ * {@code RestTemplate}, the non-blocking client by sending its requests through {@link #decorate(HttpClient)}. When
+ * the calls are retried, this class is given to {@link ArgoCdResilience} instead, so that every attempt waits for a
+ * permit.
+ * </p>
+ */
+public class ArgoCdRateLimiter implements ClientHttpRequestInterceptor {
+
+    public static final String QUEUE_METRIC = "argocd.client.ratelimit.queue";
+    public static final String WAIT_METRIC = "argocd.client.ratelimit.wait";
+
+    /** The priority classes of the calls, served in declaration order. */
+    public enum Priority {
+        /** Reads and deletes. */
+        HIGH,
+        /** Creations, updates and syncs. */
+        LOW
+    }
+
+    private final double permitsPerSecond;
+    private final double burst;
+    private final long maxWaitNanos;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+    private final Map<Priority, AtomicInteger> queued = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> acquired = new EnumMap<>(Priority.class);
+    private final Map<Priority, Timer> timedOut = new EnumMap<>(Priority.class);
+
+    private double tokens;
+    private long refilledAt;
+    private long sequence;
+    private ScheduledFuture<?> pendingDrain;
+
+    public ArgoCdRateLimiter(ArgoCdConfiguration.RateLimit rateLimit, MeterRegistry meterRegistry) {
+        this.permitsPerSecond = rateLimit.getPermitsPerSecond();
+        this.burst = Math.max(1, rateLimit.getBurst());
+        this.maxWaitNanos = rateLimit.getMaxWait().toNanos();
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("argocd-ratelimit-"));
+        // The timeouts of the granted calls are cancelled, they must not pile up in the queue of the scheduler
+        this.scheduler.setRemoveOnCancelPolicy(true);
+
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            AtomicInteger size = new AtomicInteger();
+            queued.put(priority, size);
+            Gauge.builder(QUEUE_METRIC, size, AtomicInteger::get)
+                    .description("Calls to the ArgoCD API waiting for the rate limiter")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            acquired.put(priority, waitTimer(meterRegistry, tag, "acquired"));
+            timedOut.put(priority, waitTimer(meterRegistry, tag, "timeout"));
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        CompletableFuture<Void> permit = acquire(priority(request.getMethod().name()));
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            permit.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the ArgoCD rate limiter");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IOException(e.getCause());
+        }
+        return execution.execute(request, body);
+    }
+
+    /**
+     * Decorates the HTTP client of the non-blocking ArgoCD client, so that its requests are sent once the rate
+     * limiter allows them, without holding a thread while waiting.
+     *
+     * @param httpClient the client sending the requests.
+     * @return the decorated client.
+     */
+    public HttpClient decorate(HttpClient httpClient) {
+        return new DelegatingHttpClient(httpClient) {
+            @Override
+            public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+                    java.net.http.HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+                return acquire(priority(request.method()))
+                        .thenCompose(ignored -> delegate.sendAsync(request, responseBodyHandler));
+            }
+        };
+    }
+
+    /**
+     * Requests a permit to send a call.
+     *
+     * @param priority the priority of the call.
+     * @return a future completed once the call can be sent, or failed with a {@link WaitTimeoutException} if the
+     * call waited for longer than {@code maxWait}.
+     */
+    CompletableFuture<Void> acquire(Priority priority) {
+        Waiter waiter;
+        synchronized (this) {
+            refill(System.nanoTime());
+            if (queue.isEmpty() && tokens >= 1) {
+                tokens -= 1;
+                acquired.get(priority).record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(null);
+            }
+            waiter = new Waiter(priority, sequence++, System.nanoTime());
+            queue.add(waiter);
+            queued.get(priority).incrementAndGet();
+            waiter.expiry = scheduler.schedule(() -> expire(waiter), maxWaitNanos, TimeUnit.NANOSECONDS);
+            scheduleDrain();
+        }
+        return waiter.permit;
+    }
+
+    /** The number of drains and timeouts scheduled and not run yet. */
+    int scheduledTasks() {
+        return scheduler.getQueue().size();
+    }
+
+    /** The priority of a call after its HTTP method: reads and deletes go first. */
+    static Priority priority(String method) {
+        return switch (method) {
+            case "GET", "HEAD", "DELETE" -> Priority.HIGH;
+            default -> Priority.LOW;
+        };
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            pendingDrain = null;
+            refill(now);
+            while (!queue.isEmpty() && tokens >= 1) {
+                Waiter waiter = queue.poll();
+                queued.get(waiter.priority).decrementAndGet();
+                // The waiter left the queue, its timeout would only keep it referenced by the scheduler
+                waiter.expiry.cancel(false);
+                if (waiter.permit.isDone()) continue;
+                tokens -= 1;
+                granted.add(waiter);
+            }
+            if (!queue.isEmpty()) scheduleDrain();
+        }
+        // Completed outside the lock, since the calls are sent by the callbacks of the permits
+        for (Waiter waiter : granted) {
+            acquired.get(waiter.priority).record(now - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+            waiter.permit.complete(null);
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) return;
+            queued.get(waiter.priority).decrementAndGet();
+        }
+        timedOut.get(waiter.priority).record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+        waiter.permit.completeExceptionally(new WaitTimeoutException(maxWaitNanos));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+        refilledAt = now;
+    }
+
+    private void scheduleDrain() {
+        if (pendingDrain != null) return;
+        long delay = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        pendingDrain = scheduler.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer waitTimer(MeterRegistry meterRegistry, String priority, String result) {
+        return Timer.builder(WAIT_METRIC)
+                .description("Time spent by the calls to the ArgoCD API waiting for the rate limiter")
+                .tag("priority", priority)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static final class Waiter {
+        private final Priority priority;
+        private final long sequence;
+        private final long enqueuedAt;
+        private final CompletableFuture<Void> permit = new CompletableFuture<>();
+        private ScheduledFuture<?> expiry;
+
+        private Waiter(Priority priority, long sequence, long enqueuedAt) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /** A call waited for the rate limiter for longer than {@code argocd.rateLimit.maxWait}. */
+    public static class WaitTimeoutException extends RuntimeException {
+        WaitTimeoutException(long maxWaitNanos) {
+            super("The call to ArgoCD waited for the rate limiter for more than "
+                    + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.configuration.ArgoCdConfiguration;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpResponse;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Protects the calls to the ArgoCD API from transient failures.
+ * <p>
+ * Calls are grouped by API ({@code application}, {@code project}, {@code repository} or {@code other}) after
+ * their path, and every API has:
+ * </p>
+ * <ul>
+ *     <li>a retry, sending the call again after a jittered exponential backoff when it failed with an I/O error
+ *     or a 502, 503 or 504 response. Only idempotent calls (reads, deletes, updates and upserts) are sent again
+ *     once the request may have reached ArgoCD, the others only when the connection could not be established;</li>
+ *     <li>a circuit breaker, failing the calls fast with a
+ *     {@link io.github.resilience4j.circuitbreaker.CallNotPermittedException} while too many of them fail;</li>
+ *     <li>a bulkhead, bounding the calls in flight. Blocking calls wait for a free slot, non-blocking calls are
+ *     rejected with a {@link BulkheadFullException} instead of holding a thread.</li>
+ * </ul>
+ * <p>
+ * The blocking client is protected by registering this class as an interceptor of its {@code RestTemplate}, the
+ * non-blocking client by sending its requests through {@link #decorate(HttpClient)}. The interceptors that every
+ * attempt of a blocking call must go through, like the {@link ArgoCdRateLimiter}, are given to the constructor
+ * instead of being registered after this class: a {@code RestTemplate} runs its interceptors only once per call.
+ * The state of the circuit breakers, bulkheads and retries is exposed by the {@code resilience4j.*} metrics,
+ * tagged by {@code name}.
+ * </p>
+ */
+public class ArgoCdResilience implements ClientHttpRequestInterceptor {
+
+    static final List<String> APIS = List.of("application", "project", "repository", "other");
+    static final Set<Integer> TRANSIENT_STATUSES = Set.of(502, 503, 504);
+
+    private static final String API_PATH = "/api/v1/";
+
+    private final Logger logger = LoggerFactory.getLogger(ArgoCdResilience.class);
+    private final CircuitBreakerRegistry circuitBreakers;
+    private final BulkheadRegistry bulkheads;
+    private final RetryRegistry retries;
+    private final RetryConfig connectRetryConfig;
+    private final ScheduledExecutorService scheduler;
+    private final List<ClientHttpRequestInterceptor> attemptInterceptors;
+
+    public ArgoCdResilience(ArgoCdConfiguration.Resilience resilience, MeterRegistry meterRegistry) {
+        this(resilience, meterRegistry, List.of());
+    }
+
+    /**
+     * @param resilience the configuration of the retries, circuit breakers and bulkheads.
+     * @param meterRegistry the registry of the {@code resilience4j.*} metrics.
+     * @param attemptInterceptors the interceptors of the blocking client that every attempt of a call goes through,
+     *                            in order, after the circuit breaker and the bulkhead.
+     */
+    public ArgoCdResilience(
+            ArgoCdConfiguration.Resilience resilience,
+            MeterRegistry meterRegistry,
+            List<? extends ClientHttpRequestInterceptor> attemptInterceptors) {
+        this.attemptInterceptors = List.copyOf(attemptInterceptors);
+        IntervalFunction backoff = IntervalFunction.ofExponentialRandomBackoff(
+                resilience.getInitialBackoff(), resilience.getBackoffMultiplier(), resilience.getBackoffJitter());
+        this.retries = RetryRegistry.of(RetryConfig.<Integer>custom()
+                .maxAttempts(resilience.getMaxAttempts())
+                .intervalFunction(backoff)
+                .retryOnException(failure -> failure instanceof IOException)
+                .retryOnResult(TRANSIENT_STATUSES::contains)
+                .build());
+        this.connectRetryConfig = RetryConfig.<Integer>custom()
+                .maxAttempts(resilience.getMaxAttempts())
+                .intervalFunction(backoff)
+                .retryOnException(ArgoCdResilience::isConnectFailure)
+                .retryOnResult(status -> false)
+                .build();
+        this.circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(resilience.getFailureRateThreshold())
+                .slidingWindowSize(resilience.getSlidingWindowSize())
+                .minimumNumberOfCalls(resilience.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(resilience.getOpenStateDuration())
+                // Calls timed out by the rate limiter did not reach ArgoCD
+                .ignoreExceptions(ArgoCdRateLimiter.WaitTimeoutException.class)
+                .build());
+        this.bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(resilience.getMaxConcurrentCalls())
+                .maxWaitDuration(resilience.getMaxBulkheadWait())
+                .build());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("argocd-retry-"));
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+        TaggedRetryMetrics.ofRetryRegistry(retries).bindTo(meterRegistry);
+        APIS.forEach(api -> {
+            circuitBreakers.circuitBreaker(api);
+            bulkheads.bulkhead(api);
+        });
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** The circuit breaker protecting the calls to the given API. */
+    CircuitBreaker circuitBreaker(String api) {
+        return circuitBreakers.circuitBreaker(api);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String api = api(request.getURI());
+        Retry.Context<Integer> retryContext =
+                retry(api, request.getMethod().name(), request.getURI()).context();
+        while (true) {
+            ClientHttpResponse response;
+            try {
+                response = attempt(api, request, body, execution);
+            } catch (IOException e) {
+                onError(retryContext, e);
+                logger.warn(
+                        "Retrying {} {} after an I/O error: {}", request.getMethod(), request.getURI(), e.getMessage());
+                continue;
+            }
+            int status = response.getStatusCode().value();
+            if (TRANSIENT_STATUSES.contains(status) && retryContext.onResult(status)) {
+                response.close();
+                logger.warn("Retrying {} {} after a {} response", request.getMethod(), request.getURI(), status);
+                continue;
+            }
+            retryContext.onComplete();
+            return response;
+        }
+    }
+
+    /**
+     * Decorates the HTTP client of the non-blocking ArgoCD client, so that its requests are retried and go through
+     * the circuit breakers and the bulkheads.
+     *
+     * @param httpClient the client sending the requests.
+     * @return the decorated client.
+     */
+    public HttpClient decorate(HttpClient httpClient) {
+        return new DelegatingHttpClient(httpClient) {
+            @Override
+            public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+                    java.net.http.HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler) {
+                String api = api(request.uri());
+                Retry.AsyncContext<Integer> retryContext =
+                        retry(api, request.method(), request.uri()).asyncContext();
+                CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+                sendWithRetry(delegate, api, request, responseBodyHandler, retryContext, result);
+                return result;
+            }
+        };
+    }
+
+    private ClientHttpResponse attempt(
+            String api, HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(api);
+        Bulkhead bulkhead = bulkheads.bulkhead(api);
+        circuitBreaker.acquirePermission();
+        try {
+            bulkhead.acquirePermission();
+        } catch (RuntimeException e) {
+            circuitBreaker.releasePermission();
+            throw e;
+        }
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = new AttemptExecution(execution).execute(request, body);
+            onResponse(circuitBreaker, start, response.getStatusCode().value());
+            return response;
+        } catch (IOException | RuntimeException e) {
+            circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            throw e;
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    private <T> void sendWithRetry(
+            HttpClient httpClient,
+            String api,
+            java.net.http.HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler,
+            Retry.AsyncContext<Integer> retryContext,
+            CompletableFuture<HttpResponse<T>> result) {
+        attemptAsync(httpClient, api, request, responseBodyHandler).whenComplete((response, failure) -> {
+            long delay;
+            if (failure != null) {
+                delay = retryContext.onError(AsyncApiErrors.unwrap(failure));
+                if (delay < 0) {
+                    result.completeExceptionally(AsyncApiErrors.unwrap(failure));
+                    return;
+                }
+                logger.warn(
+                        "Retrying {} {} after an error: {}",
+                        request.method(),
+                        request.uri(),
+                        AsyncApiErrors.message(failure));
+            } else if (TRANSIENT_STATUSES.contains(response.statusCode())) {
+                delay = retryContext.onResult(response.statusCode());
+                if (delay < 0) {
+                    result.complete(response);
+                    return;
+                }
+                discard(response);
+                logger.warn(
+                        "Retrying {} {} after a {} response", request.method(), request.uri(), response.statusCode());
+            } else {
+                retryContext.onComplete();
+                result.complete(response);
+                return;
+            }
+            scheduler.schedule(
+                    () -> sendWithRetry(httpClient, api, request, responseBodyHandler, retryContext, result),
+                    delay,
+                    TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> attemptAsync(
+            HttpClient httpClient,
+            String api,
+            java.net.http.HttpRequest request,
+            HttpResponse.BodyHandler<T> responseBodyHandler) {
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(api);
+        Bulkhead bulkhead = bulkheads.bulkhead(api);
+        try {
+            circuitBreaker.acquirePermission();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!bulkhead.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(BulkheadFullException.createBulkheadFullException(bulkhead));
+        }
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, responseBodyHandler).whenComplete((response, failure) -> {
+            bulkhead.onComplete();
+            if (failure != null) {
+                circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, AsyncApiErrors.unwrap(failure));
+            } else {
+                onResponse(circuitBreaker, start, response.statusCode());
+            }
+        });
+    }
+
+    private static void onResponse(CircuitBreaker circuitBreaker, long start, int status) {
+        long duration = System.nanoTime() - start;
+        if (TRANSIENT_STATUSES.contains(status)) {
+            circuitBreaker.onError(duration, TimeUnit.NANOSECONDS, new TransientStatusException(status));
+        } else {
+            circuitBreaker.onSuccess(duration, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Retry retry(String api, String method, URI uri) {
+        return isIdempotent(method, uri) ? retries.retry(api) : retries.retry(api + ".connect", connectRetryConfig);
+    }
+
+    private static void onError(Retry.Context<Integer> retryContext, IOException failure) throws IOException {
+        try {
+            retryContext.onError(failure);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof InputStream body) {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // The response is discarded anyway
+            }
+        }
+    }
+
+    /** The API a call belongs to, after the resource in its path, e.g. {@code /api/v1/applications/name}. */
+    static String api(URI uri) {
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        int start = path.indexOf(API_PATH);
+        if (start < 0) return "other";
+        String resource = path.substring(start + API_PATH.length());
+        int end = resource.indexOf('/');
+        return switch (end < 0 ? resource : resource.substring(0, end)) {
+            case "applications" -> "application";
+            case "projects" -> "project";
+            case "repositories" -> "repository";
+            default -> "other";
+        };
+    }
+
+    /**
+     * Whether a call can be sent again after it may have reached ArgoCD: reads, deletes and updates, and the
+     * creations in upsert mode.
+     */
+    static boolean isIdempotent(String method, URI uri) {
+        return switch (method) {
+            case "GET", "HEAD", "PUT", "DELETE" -> true;
+            case "POST" -> uri.getRawQuery() != null && uri.getRawQuery().contains("upsert=true");
+            default -> false;
+        };
+    }
+
+    /** Whether a call failed before the request could be sent. */
+    static boolean isConnectFailure(Throwable failure) {
+        return failure instanceof ConnectException
+                || failure instanceof HttpConnectTimeoutException
+                || failure instanceof org.apache.hc.client5.http.ConnectTimeoutException;
+    }
+
+    /**
+     * Sends an attempt of a blocking call through the attempt interceptors, then to the rest of the chain of the
+     * {@code RestTemplate}.
+     */
+    private final class AttemptExecution implements ClientHttpRequestExecution {
+        private final Iterator<ClientHttpRequestInterceptor> interceptors = attemptInterceptors.iterator();
+        private final ClientHttpRequestExecution execution;
+
+        private AttemptExecution(ClientHttpRequestExecution execution) {
+            this.execution = execution;
+        }
+
+        @Override
+        public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
+            return interceptors.hasNext()
+                    ? interceptors.next().intercept(request, body, this)
+                    : execution.execute(request, body);
+        }
+    }
+
+    /** A transient error response of ArgoCD, recorded as a failure by the circuit breakers. */
+    static class TransientStatusException extends IOException {
+        TransientStatusException(int status) {
+            super("ArgoCD answered with status " + status);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import org.openapitools.client.async.ApiException;
+
+/** Helpers to inspect the failures of the non-blocking ArgoCD client. */
+final class AsyncApiErrors {
+
+    private AsyncApiErrors() {}
+
+    /** Returns the actual cause of a failure propagated through a chain of {@code CompletableFuture}. */
+    static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static boolean isNotFound(Throwable throwable) {
+        return unwrap(throwable) instanceof ApiException e && e.getCode() == 404;
+    }
+
+    /** See {@link ProjectManager#isConflict}. */
+    static boolean isConflict(Throwable throwable) {
+        if (!(unwrap(throwable) instanceof ApiException e)) return false;
+        String body = e.getResponseBody() != null ? e.getResponseBody() : "";
+        return e.getCode() == 409
+                || body.contains(ProjectManager.CONFLICT_MESSAGE)
+                || body.contains(ProjectManager.EXISTING_PROJECT_MESSAGE);
+    }
+
+    /**
+     * Invokes a call of the non-blocking client, turning a synchronous {@link ApiException} raised while
+     * building the request into a failed future.
+     */
+    static <T> CompletableFuture<T> call(ApiCall<T> call) {
+        try {
+            return call.call();
+        } catch (ApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    static String message(Throwable throwable) {
+        return unwrap(throwable).getMessage();
+    }
+
+    @FunctionalInterface
+    interface ApiCall<T> {
+        CompletableFuture<T> call() throws ApiException;
+    }
+}
@@ -0,0 +1,137 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.openapitools.client.async.api.ApplicationServiceApi;
+import org.openapitools.client.model.ApplicationApplicationSyncRequest;
+import org.openapitools.client.model.V1alpha1Application;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The non-blocking counterpart of {@link ApplicationManager}.
+ * <p>
+ * Every operation returns immediately a {@link CompletableFuture}, completed by the threads of the
+ * non-blocking ArgoCD client once the calls have been answered. The future never completes exceptionally:
+ * failures are reported as a {@link FailedOperation}, as in the blocking manager.
+ * </p>
+ */
+public class AsyncApplicationManager {
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncApplicationManager.class);
+    private final ApplicationServiceApi applicationServiceApi;
+    private final ArgoCdCallMetrics callMetrics;
+    private final ApplicationWriter writer;
+
+    public AsyncApplicationManager(ApplicationServiceApi applicationServiceApi) {
+        this(applicationServiceApi, null, null);
+    }
+
+    /**
+     * Constructs an {@code AsyncApplicationManager} that, after triggering the sync, waits for the application to be
+     * Synced and Healthy.
+     *
+     * @param applicationServiceApi the non-blocking API client for interacting with ArgoCD applications.
+     * @param applicationWatcher the watcher following the application after the sync, or {@code null} to complete
+     *                           as soon as the sync has been triggered.
+     * @param syncTimeout the maximum time to wait for the synchronization.
+     */
+    public AsyncApplicationManager(
+            ApplicationServiceApi applicationServiceApi, ApplicationWatcher applicationWatcher, Duration syncTimeout) {
+        this(applicationServiceApi, applicationWatcher, syncTimeout, Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructs an {@code AsyncApplicationManager} recording its calls to ArgoCD in the given registry.
+     *
+     * @param applicationServiceApi the non-blocking API client for interacting with ArgoCD applications.
+     * @param applicationWatcher the watcher following the application after the sync, or {@code null} to complete
+     *                           as soon as the sync has been triggered.
+     * @param syncTimeout the maximum time to wait for the synchronization.
+     * @param meterRegistry the registry where the {@link ArgoCdCallMetrics} and the {@link SyncDecision} counters
+     *                      are registered.
+     */
+    public AsyncApplicationManager(
+            ApplicationServiceApi applicationServiceApi,
+            ApplicationWatcher applicationWatcher,
+            Duration syncTimeout,
+            MeterRegistry meterRegistry) {
+        this.applicationServiceApi = applicationServiceApi;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
+        this.writer = new ApplicationWriter(new NonBlockingCalls(), applicationWatcher, syncTimeout, meterRegistry);
+    }
+
+    /**
+     * Creates or updates an ArgoCD application and triggers its synchronization, reporting the application
+     * and sync steps to the given {@link ProvisionProgress}, as {@link ApplicationManager} does.
+     *
+     * @param applicationSpecific The application details to be created or updated.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return A future completed with the created/updated {@link V1alpha1Application} on success
+     *         or a {@link FailedOperation} on failure.
+     */
+    public CompletableFuture<Either<FailedOperation, V1alpha1Application>> createOrUpdateApplication(
+            ArgoCDApplicationSpecific applicationSpecific, ProvisionProgress progress) {
+        return writer.createOrUpdate(applicationSpecific, progress);
+    }
+
+    /**
+     * Deletes an ArgoCD application. An application that does not exist is considered deleted.
+     *
+     * @param appName The name of the application to delete.
+     * @param project The ArgoCD project where the application is located.
+     * @return A future completed with {@code null} on success or a {@link FailedOperation} on failure.
+     */
+    public CompletableFuture<Either<FailedOperation, Void>> deleteApplication(String appName, String project) {
+        return callMetrics
+                .recordAsync(
+                        "application.delete",
+                        () -> applicationServiceApi.applicationServiceDelete(appName, false, null, null, project))
+                .<Either<FailedOperation, Void>>handle((deleted, failure) -> {
+                    if (failure != null && !AsyncApiErrors.isNotFound(failure)) {
+                        String error = String.format(
+                                "An unexpected error occurred while deleting the application %s. Please try again later. If the issue still persists, contact the platform team for assistance! Details: %s",
+                                appName, AsyncApiErrors.message(failure));
+                        logger.error(error, AsyncApiErrors.unwrap(failure));
+                        return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+                    }
+                    logger.info("Application {} deleted successfully.", appName);
+                    return Either.right(null);
+                });
+    }
+
+    /** The calls of the non-blocking client, completed by its I/O threads. */
+    private class NonBlockingCalls implements ApplicationWriter.Calls {
+
+        @Override
+        public CompletableFuture<V1alpha1Application> get(String name, String project) {
+            return callMetrics.recordAsync(
+                    "application.get",
+                    () -> applicationServiceApi.applicationServiceGet(
+                            name, null, null, null, null, null, null, List.of(project)));
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1Application> create(V1alpha1Application application) {
+            return callMetrics.recordAsync(
+                    "application.create",
+                    () -> applicationServiceApi.applicationServiceCreate(application, true, true));
+        }
+
+        @Override
+        public CompletableFuture<?> sync(String name) {
+            return callMetrics.recordAsync(
+                    "application.sync",
+                    () -> applicationServiceApi.applicationServiceSync(name, new ApplicationApplicationSyncRequest()));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.client.ProjectWriter.Mutation;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openapitools.client.async.api.ProjectServiceApi;
+import org.openapitools.client.model.ProjectProjectCreateRequest;
+import org.openapitools.client.model.ProjectProjectUpdateRequest;
+import org.openapitools.client.model.V1alpha1AppProject;
+
+/**
+ * The non-blocking counterpart of {@link ProjectManager}.
+ * <p>
+ * Projects are written by a {@link ProjectWriter}, as in the blocking manager: concurrent requests on the same
+ * project are coalesced, projects are written only when their specification changes, and the updates are
+ * retried on conflicts after a jittered backoff. No thread is held while waiting for ArgoCD, for the batch
+ * window or for the backoff. The same metrics of the blocking manager are updated.
+ * </p>
+ */
+public class AsyncProjectManager {
+
+    private final ProjectServiceApi projectServiceApi;
+    private final ArgoCdCallMetrics callMetrics;
+    private final ProjectWriter writer;
+
+    public AsyncProjectManager(ProjectServiceApi projectServiceApi, MeterRegistry meterRegistry) {
+        this(
+                projectServiceApi,
+                meterRegistry,
+                Duration.ZERO,
+                ProjectManager.DEFAULT_CONFLICT_RETRIES,
+                ProjectManager.DEFAULT_CONFLICT_BACKOFF);
+    }
+
+    /**
+     * Constructs an {@code AsyncProjectManager} with the specified {@link ProjectServiceApi}.
+     *
+     * @param projectServiceApi the non-blocking API client for interacting with ArgoCD projects.
+     * @param meterRegistry the registry where the project write metrics are registered.
+     * @param batchWindow how long the leader of a batch waits for further mutations of the same project
+     *                    before applying them.
+     * @param conflictRetries how many times a write rejected because of a concurrent modification is retried.
+     * @param conflictBackoff the base delay before retrying a rejected write.
+     */
+    public AsyncProjectManager(
+            ProjectServiceApi projectServiceApi,
+            MeterRegistry meterRegistry,
+            Duration batchWindow,
+            int conflictRetries,
+            Duration conflictBackoff) {
+        this.projectServiceApi = projectServiceApi;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
+        this.writer =
+                new ProjectWriter(new NonBlockingCalls(), meterRegistry, batchWindow, conflictRetries, conflictBackoff);
+    }
+
+    /**
+     * Creates or updates an ArgoCD project so that it includes the given destination and source repository.
+     *
+     * @param name the name of the ArgoCD project to create or update.
+     * @param destination the destination details (server and namespace) to add to the project.
+     * @param source the source repository details (URL) to add to the project.
+     * @return A future completed with the created or updated {@link V1alpha1AppProject} on success,
+     * or a {@link FailedOperation} on failure.
+     */
+    public CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> createOrUpdateProject(
+            String name, Destination destination, Source source) {
+        return writer.write(name, List.of(new Mutation(destination, source))).exceptionally(failure -> {
+            String error = String.format(
+                    "An unexpected error occurred while creating (or updating) the project %s. Details: %s",
+                    name, AsyncApiErrors.message(failure));
+            return Either.left(new FailedOperation(
+                    error, Collections.singletonList(new Problem(error, AsyncApiErrors.unwrap(failure)))));
+        });
+    }
+
+    /** The number of projects with pending mutations or a running batch. */
+    int queuedProjects() {
+        return writer.queuedProjects();
+    }
+
+    /** The calls of the non-blocking client, completed by its I/O threads. */
+    private class NonBlockingCalls implements ProjectWriter.Calls {
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> get(String name) {
+            return callMetrics.recordAsync("project.get", () -> projectServiceApi.projectServiceGet(name));
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> create(V1alpha1AppProject project) {
+            return callMetrics.recordAsync(
+                    "project.create",
+                    () -> projectServiceApi.projectServiceCreate(new ProjectProjectCreateRequest().project(project)));
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> update(String name, V1alpha1AppProject project) {
+            return callMetrics.recordAsync(
+                    "project.update",
+                    () -> projectServiceApi.projectServiceUpdate(
+                            name, new ProjectProjectUpdateRequest().project(project)));
+        }
+
+        @Override
+        public CompletableFuture<Void> delay(Duration delay) {
+            if (delay.isZero() || delay.isNegative()) return CompletableFuture.completedFuture(null);
+            return CompletableFuture.runAsync(
+                    () -> {}, CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public boolean isNotFound(Throwable failure) {
+            return AsyncApiErrors.isNotFound(failure);
+        }
+
+        @Override
+        public boolean isConflict(Throwable failure) {
+            return AsyncApiErrors.isConflict(failure);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.configuration.GitConfiguration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.openapitools.client.async.api.RepositoryServiceApi;
+import org.openapitools.client.model.V1alpha1Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The non-blocking counterpart of {@link RepoManager}, looking up the repository after its creation or update
+ * in the same way.
+ */
+public class AsyncRepoManager {
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncRepoManager.class);
+    private final RepositoryServiceApi repositoryServiceApi;
+    private final GitConfiguration gitConfiguration;
+    private final boolean listLookup;
+    private final ArgoCdCallMetrics callMetrics;
+
+    public AsyncRepoManager(RepositoryServiceApi repositoryServiceApi, GitConfiguration gitConfiguration) {
+        this(repositoryServiceApi, gitConfiguration, false);
+    }
+
+    /**
+     * Constructor for injecting the required dependencies.
+     *
+     * @param repositoryServiceApi Non-blocking API client for interacting with ArgoCD repository services.
+     * @param gitConfiguration Configuration containing credentials and settings for Git repositories.
+     * @param listLookup If true, the repository is searched in the list of all the repositories registered
+     *                   in ArgoCD instead of being looked up by its URL.
+     */
+    public AsyncRepoManager(
+            RepositoryServiceApi repositoryServiceApi, GitConfiguration gitConfiguration, boolean listLookup) {
+        this(repositoryServiceApi, gitConfiguration, listLookup, Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructor for injecting the required dependencies.
+     *
+     * @param repositoryServiceApi Non-blocking API client for interacting with ArgoCD repository services.
+     * @param gitConfiguration Configuration containing credentials and settings for Git repositories.
+     * @param listLookup If true, the repository is searched in the list of all the repositories registered
+     *                   in ArgoCD instead of being looked up by its URL.
+     * @param meterRegistry Registry where the {@link ArgoCdCallMetrics} are registered.
+     */
+    public AsyncRepoManager(
+            RepositoryServiceApi repositoryServiceApi,
+            GitConfiguration gitConfiguration,
+            boolean listLookup,
+            MeterRegistry meterRegistry) {
+        this.repositoryServiceApi = repositoryServiceApi;
+        this.gitConfiguration = gitConfiguration;
+        this.listLookup = listLookup;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
+    }
+
+    /**
+     * Creates or updates a Git repository in ArgoCD, then verifies its connection state.
+     *
+     * @param repoURL The URL of the Git repository to create or update.
+     * @param project The ArgoCD project in which the repository should exist.
+     * @return A future completed with the created/updated {@link V1alpha1Repository} on success,
+     *         or a {@link FailedOperation} describing the failure.
+     */
+    public CompletableFuture<Either<FailedOperation, V1alpha1Repository>> createOrUpdateRepository(
+            String repoURL, String project) {
+        return callMetrics
+                .recordAsync(
+                        "repository.create",
+                        () -> repositoryServiceApi.repositoryServiceCreateRepository(
+                                RepoManager.buildRepository(gitConfiguration, repoURL, project), true, false))
+                .thenCompose(created -> listLookup ? findRepositoryInList(repoURL) : findRepository(repoURL, project))
+                .<Either<FailedOperation, V1alpha1Repository>>handle((repository, failure) -> {
+                    if (failure != null) {
+                        String error = String.format(
+                                "An unexpected error occurred while creating the repository %s. Details: %s",
+                                repoURL, AsyncApiErrors.message(failure));
+                        Throwable cause = AsyncApiErrors.unwrap(failure);
+                        logger.error(error, cause);
+                        return Either.left(
+                                new FailedOperation(error, Collections.singletonList(new Problem(error, cause))));
+                    }
+                    return RepoManager.checkConnection(logger, repoURL, project, repository);
+                });
+    }
+
+    private CompletableFuture<Optional<V1alpha1Repository>> findRepository(String repoURL, String project) {
+        return callMetrics
+                .recordAsync("repository.get", () -> repositoryServiceApi.repositoryServiceGet(repoURL, true, project))
+                .<Optional<V1alpha1Repository>>handle((repository, failure) -> {
+                    if (failure == null) return Optional.ofNullable(repository);
+                    if (AsyncApiErrors.isNotFound(failure)) return Optional.empty();
+                    throw new CompletionException(AsyncApiErrors.unwrap(failure));
+                });
+    }
+
+    private CompletableFuture<Optional<V1alpha1Repository>> findRepositoryInList(String repoURL) {
+        return callMetrics
+                .recordAsync(
+                        "repository.list",
+                        () -> repositoryServiceApi.repositoryServiceListRepositories(null, true, null))
+                .thenApply(repositories -> RepoManager.findInList(repositories.getItems(), repoURL));
+    }
+}
@@ -0,0 +1,76 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+
+/**
+ * The desired state of an ArgoCD application, stamped on the application as the {@value #HASH_ANNOTATION}
+ * annotation.
+ * <p>
+ * The hash is the SHA-256 of the application spec serialized in a canonical form: properties and map entries
+ * sorted, empty and null fields omitted. Comparing it with the hash of the live spec tells whether re-provisioning
+ * the component would change anything in ArgoCD. The annotation alone is not trusted, since the spec can be
+ * edited in ArgoCD without touching it: it only spares hashing the live spec when it already differs.
+ * </p>
+ */
+final class DesiredState {
+
+    static final String HASH_ANNOTATION = "witboost.agilelab.it/desired-state-hash";
+
+    private static final ObjectWriter CANONICAL_WRITER = JsonMapper.builder()
+            .findAndAddModules()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .serializationInclusion(JsonInclude.Include.NON_EMPTY)
+            .build()
+            .writerFor(V1alpha1ApplicationSpec.class);
+
+    private DesiredState() {}
+
+    /**
+     * Computes the hash of the desired spec of an application.
+     *
+     * @param spec The spec of the application.
+     * @return The hexadecimal SHA-256 of the canonical form of the spec.
+     */
+    static String hash(V1alpha1ApplicationSpec spec) {
+        try {
+            byte[] canonical = CANONICAL_WRITER.writeValueAsBytes(spec);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to compute the hash of the application spec", e);
+        }
+    }
+
+    /**
+     * Whether the live application already carries the desired state of the given one.
+     *
+     * @param live The application read from ArgoCD, or {@code null} if it does not exist or could not be read.
+     * @param desired The application to be created or updated, built by
+     *                {@link ApplicationManager#buildApplicationDetails}.
+     * @return {@code true} if the live spec has the hash the desired application is annotated with.
+     */
+    static boolean isUpToDate(V1alpha1Application live, V1alpha1Application desired) {
+        String desiredHash = annotation(desired);
+        // Fast path: an application last written with a different spec has a different annotation
+        if (desiredHash == null || !desiredHash.equals(annotation(live))) return false;
+        return live.getSpec() != null && desiredHash.equals(hash(live.getSpec()));
+    }
+
+    private static String annotation(V1alpha1Application application) {
+        if (application == null || application.getMetadata() == null) return null;
+        Map<String, String> annotations = application.getMetadata().getAnnotations();
+        return annotations != null ? annotations.get(HASH_ANNOTATION) : null;
+    }
+}
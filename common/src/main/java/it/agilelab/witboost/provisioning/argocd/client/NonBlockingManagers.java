@@ -0,0 +1,23 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The managers backed by the non-blocking ArgoCD client, together with the executor running its I/O.
+ *
+ * @param repoManager The non-blocking manager of the ArgoCD repositories.
+ * @param applicationManager The non-blocking manager of the ArgoCD applications.
+ * @param projectManager The non-blocking manager of the ArgoCD projects.
+ * @param ioExecutor The executor of the HTTP client, completing the futures returned by the managers.
+ */
+public record NonBlockingManagers(
+        AsyncRepoManager repoManager,
+        AsyncApplicationManager applicationManager,
+        AsyncProjectManager projectManager,
+        ExecutorService ioExecutor) {
+
+    /** Stops the I/O executor of the HTTP client. */
+    public void shutdown() {
+        ioExecutor.shutdown();
+    }
+}
@@ -1,16 +1,21 @@
 package it.agilelab.witboost.provisioning.argocd.client;
 
 import com.witboost.provisioning.model.common.FailedOperation;
-import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.client.ProjectWriter.Mutation;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
 import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
 import it.agilelab.witboost.provisioning.argocd.model.application.Source;
-import java.util.Collections;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import org.openapitools.client.api.ProjectServiceApi;
 import org.openapitools.client.model.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientResponseException;
 
 /**
  * A manager class for handling projects in ArgoCD.
@@ -19,26 +24,113 @@ import org.springframework.web.client.HttpClientErrorException;
  * It ensures that project specifications, such as source repositories and destination servers, are updated
  * or created as required.
  * </p>
+ * <p>
+ * Existing projects are written back only when their specification actually changes. The number of
+ * performed and skipped writes is tracked by the {@value #PROJECT_WRITES_METRIC} counter, tagged by
+ * {@code result}.
+ * </p>
+ * <p>
+ * The writes are performed by a {@link ProjectWriter}, shared with the {@link AsyncProjectManager}.
+ * </p>
+ * <p>
+ * Concurrent mutations of the same project are coalesced: every request is queued on its project, and the
+ * first waiting thread becomes the leader of the batch. The leader waits for the batch window, drains the
+ * queue, applies all the pending destinations and source repositories with a single get-modify-update
+ * cycle, and completes every waiter with the shared result. This avoids both the per-request round-trips
+ * and the lost updates between concurrent read-modify-write cycles on the same project.
+ * </p>
+ * <p>
+ * Updates are conditional on the {@code resourceVersion} of the project read in the same cycle, so that a
+ * concurrent modification (e.g. by another replica of the tech adapter) is rejected by ArgoCD instead of
+ * being overwritten. On a conflict, the project is read again and the mutations re-applied, up to a bounded
+ * number of retries with jittered exponential backoff. A creation rejected because the project has been created
+ * concurrently is a conflict as well, and the batch is retried as an update. Conflicts are counted by the
+ * {@value #PROJECT_CONFLICTS_METRIC} counter, and the retries needed by every batch are recorded by the
+ * {@value #PROJECT_RETRIES_METRIC} summary, tagged by {@code outcome}. Neither is tagged by project, so that
+ * their cardinality stays bounded.
+ * </p>
  */
 public class ProjectManager {
 
-    private final Logger logger = LoggerFactory.getLogger(ProjectManager.class);
+    public static final String PROJECT_WRITES_METRIC = "argocd.project.writes";
+    public static final String PROJECT_BATCH_SIZE_METRIC = "argocd.project.batch.size";
+    public static final String PROJECT_CONFLICTS_METRIC = "argocd.project.conflicts";
+    public static final String PROJECT_RETRIES_METRIC = "argocd.project.retries";
+
+    static final int DEFAULT_CONFLICT_RETRIES = 5;
+    static final Duration DEFAULT_CONFLICT_BACKOFF = Duration.ofMillis(100);
+    static final String CONFLICT_MESSAGE = "the object has been modified";
+    static final String EXISTING_PROJECT_MESSAGE = "existing project spec is different";
+
     private final ProjectServiceApi projectServiceApi;
+    private final ArgoCdCallMetrics callMetrics;
+    private final ProjectWriter writer;
 
     /**
-     * Constructs a {@code ProjectManager} with the specified {@link ProjectServiceApi}.
+     * Constructs a {@code ProjectManager} with the specified {@link ProjectServiceApi}, registering its
+     * metrics in the global registry.
      *
      * @param projectServiceApi the API client for interacting with ArgoCD projects.
      */
     public ProjectManager(ProjectServiceApi projectServiceApi) {
+        this(projectServiceApi, Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructs a {@code ProjectManager} with the specified {@link ProjectServiceApi}.
+     *
+     * @param projectServiceApi the API client for interacting with ArgoCD projects.
+     * @param meterRegistry the registry where the project write counters are registered.
+     */
+    public ProjectManager(ProjectServiceApi projectServiceApi, MeterRegistry meterRegistry) {
+        this(projectServiceApi, meterRegistry, Duration.ZERO);
+    }
+
+    /**
+     * Constructs a {@code ProjectManager} with the specified {@link ProjectServiceApi}.
+     *
+     * @param projectServiceApi the API client for interacting with ArgoCD projects.
+     * @param meterRegistry the registry where the project write counters are registered.
+     * @param batchWindow how long the leader of a batch waits for further mutations of the same project
+     *                    before applying them. With a zero window, only the mutations queued while the
+     *                    previous batch was being applied are coalesced.
+     */
+    public ProjectManager(ProjectServiceApi projectServiceApi, MeterRegistry meterRegistry, Duration batchWindow) {
+        this(projectServiceApi, meterRegistry, batchWindow, DEFAULT_CONFLICT_RETRIES, DEFAULT_CONFLICT_BACKOFF);
+    }
+
+    /**
+     * Constructs a {@code ProjectManager} with the specified {@link ProjectServiceApi}.
+     *
+     * @param projectServiceApi the API client for interacting with ArgoCD projects.
+     * @param meterRegistry the registry where the project write counters are registered.
+     * @param batchWindow how long the leader of a batch waits for further mutations of the same project
+     *                    before applying them.
+     * @param conflictRetries how many times a write rejected because of a concurrent modification is retried.
+     * @param conflictBackoff the base delay before retrying a rejected write. The delay of every retry is a
+     *                        random value up to the base delay doubled for each previous retry.
+     */
+    public ProjectManager(
+            ProjectServiceApi projectServiceApi,
+            MeterRegistry meterRegistry,
+            Duration batchWindow,
+            int conflictRetries,
+            Duration conflictBackoff) {
         this.projectServiceApi = projectServiceApi;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
+        this.writer =
+                new ProjectWriter(new BlockingCalls(), meterRegistry, batchWindow, conflictRetries, conflictBackoff);
     }
 
     /**
      * Creates or updates an ArgoCD project based on the provided name, destination, and source details.
      * <p>
-     * If the project already exists, its specification is updated. If it does not exist,
-     * a new project is created with the given details.
+     * If the project already exists, its specification is updated, unless it already contains the
+     * destination and the source repository. If it does not exist, a new project is created with the
+     * given details.
+     * </p>
+     * <p>
+     * Concurrent calls for the same project are merged into a single write, see {@link ProjectManager}.
      * </p>
      *
      * @param name the name of the ArgoCD project to create or update.
@@ -49,25 +141,55 @@ public class ProjectManager {
      */
     public Either<FailedOperation, V1alpha1AppProject> createOrUpdateProject(
             String name, Destination destination, Source source) {
+        return writer.write(name, List.of(new Mutation(destination, source))).join();
+    }
 
-        try {
-            V1alpha1AppProject project = projectServiceApi.projectServiceGet(name);
-            V1alpha1AppProject updatedProject = updateProjectSpec(project, destination, source);
+    /**
+     * Creates or updates an ArgoCD project so that it includes the destinations and source repositories
+     * of all the given applications, with a single write.
+     *
+     * @param name the name of the ArgoCD project to create or update.
+     * @param applications the applications whose destination and source must be allowed in the project.
+     * @return An {@link Either} containing the created or updated {@link V1alpha1AppProject} on success,
+     * or a {@link FailedOperation} on failure.
+     */
+    public Either<FailedOperation, V1alpha1AppProject> createOrUpdateProject(
+            String name, List<ArgoCDApplicationSpecific> applications) {
+        List<Mutation> mutations = applications.stream()
+                .map(application -> new Mutation(application.getDestination(), application.getSource()))
+                .toList();
+        return writer.write(name, mutations).join();
+    }
 
-            projectServiceApi.projectServiceUpdate(name, new ProjectProjectUpdateRequest().project(updatedProject));
+    /** The number of projects with pending mutations or a running batch. */
+    int queuedProjects() {
+        return writer.queuedProjects();
+    }
 
-            logger.info(String.format("Project %s updated successfully", name));
-            return Either.right(updatedProject);
+    /**
+     * Applies all the mutations of a batch, retrying when the write is rejected because the project was
+     * concurrently modified.
+     *
+     * @param name the name of the ArgoCD project to create or update.
+     * @param batch the mutations to apply, in arrival order.
+     * @return An {@link Either} containing the created or updated {@link V1alpha1AppProject} on success,
+     * or a {@link FailedOperation} on failure. The same result is shared by all the mutations of the batch.
+     */
+    protected Either<FailedOperation, V1alpha1AppProject> applyBatch(String name, List<Mutation> batch) {
+        return writer.applyBatch(name, batch).join();
+    }
 
-        } catch (HttpClientErrorException.NotFound e) {
-            return createProject(name, destination, source);
-        } catch (Exception e) {
-            String error = String.format(
-                    "An unexpected error occurred while creating (or updating) the project %s. Details: %s",
-                    name, e.getMessage());
-            logger.error(error, e);
-            return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
-        }
+    /**
+     * Checks whether ArgoCD rejected a write because of a concurrent modification. Depending on the
+     * version, ArgoCD reports it either as a {@code 409 Conflict} or with the Kubernetes conflict message.
+     * A creation racing with another one is rejected as {@code InvalidArgument} because the existing project
+     * spec is different: it is a conflict as well, and the batch is retried as an update.
+     */
+    static boolean isConflict(RestClientResponseException e) {
+        String body = e.getResponseBodyAsString();
+        return e instanceof HttpClientErrorException.Conflict
+                || body.contains(CONFLICT_MESSAGE)
+                || body.contains(EXISTING_PROJECT_MESSAGE);
     }
 
     /**
@@ -77,33 +199,13 @@ public class ProjectManager {
      * if they are not already present.
      * </p>
      *
-     * @param project the existing ArgoCD project to update.
+     * @param project the existing ArgoCD project to update in place.
      * @param destination the destination details (server and namespace) to add to the project.
      * @param source the source repository details (URL) to add to the project.
-     * @return The updated {@link V1alpha1AppProject}.
+     * @return {@code true} if the specification was changed, {@code false} if it already contained both.
      */
-    protected V1alpha1AppProject updateProjectSpec(V1alpha1AppProject project, Destination destination, Source source) {
-
-        V1alpha1AppProjectSpec spec = project.getSpec();
-
-        boolean destinationExists = spec.getDestinations().stream()
-                .anyMatch(dest -> dest.getServer().equalsIgnoreCase(destination.getServer())
-                        && ((dest.getNamespace() == null && destination.getNamespace() == null)
-                                || (dest.getNamespace() != null
-                                        && destination.getNamespace() != null
-                                        && dest.getNamespace().equalsIgnoreCase(destination.getNamespace()))));
-
-        if (!destinationExists) {
-            spec.addDestinationsItem(new V1alpha1ApplicationDestination()
-                    .server(destination.getServer())
-                    .namespace(destination.getNamespace()));
-        }
-
-        if (!spec.getSourceRepos().contains(source.getRepoURL())) {
-            spec.addSourceReposItem(source.getRepoURL());
-        }
-
-        return project.spec(spec).status(project.getStatus()).metadata(project.getMetadata());
+    protected boolean updateProjectSpec(V1alpha1AppProject project, Destination destination, Source source) {
+        return ProjectWriter.mergeIntoSpec(project.getSpec(), destination, source);
     }
 
     /**
@@ -117,23 +219,62 @@ public class ProjectManager {
      */
     protected Either<FailedOperation, V1alpha1AppProject> createProject(
             String name, Destination destination, Source source) {
+        return writer.create(name, List.of(new Mutation(destination, source)))
+                .exceptionally(failure -> Either.left(writer.createFailure(name, AsyncApiErrors.unwrap(failure))))
+                .join();
+    }
+
+    /** The calls of the blocking client, completed on the caller's thread. */
+    private class BlockingCalls implements ProjectWriter.Calls {
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> get(String name) {
+            return call("project.get", () -> projectServiceApi.projectServiceGet(name));
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> create(V1alpha1AppProject project) {
+            return call(
+                    "project.create",
+                    () -> projectServiceApi.projectServiceCreate(new ProjectProjectCreateRequest().project(project)));
+        }
+
+        @Override
+        public CompletableFuture<V1alpha1AppProject> update(String name, V1alpha1AppProject project) {
+            return call(
+                    "project.update",
+                    () -> projectServiceApi.projectServiceUpdate(
+                            name, new ProjectProjectUpdateRequest().project(project)));
+        }
+
+        @Override
+        public CompletableFuture<Void> delay(Duration delay) {
+            if (delay.isZero() || delay.isNegative()) return CompletableFuture.completedFuture(null);
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean isNotFound(Throwable failure) {
+            return AsyncApiErrors.unwrap(failure) instanceof HttpClientErrorException.NotFound;
+        }
+
+        @Override
+        public boolean isConflict(Throwable failure) {
+            return AsyncApiErrors.unwrap(failure) instanceof RestClientResponseException e
+                    && ProjectManager.isConflict(e);
+        }
 
-        try {
-            V1alpha1AppProject project = projectServiceApi.projectServiceCreate(new ProjectProjectCreateRequest()
-                    .project(new V1alpha1AppProject()
-                            .metadata(new V1ObjectMeta().name(name))
-                            .spec(new V1alpha1AppProjectSpec()
-                                    .addSourceReposItem(source.getRepoURL())
-                                    .addDestinationsItem(new V1alpha1ApplicationDestination()
-                                            .server(destination.getServer())
-                                            .namespace(destination.getNamespace())))));
-
-            logger.info(String.format("Project %s created successfully.", name));
-            return Either.right(project);
-        } catch (Exception e) {
-            String error = String.format("Failed to create the project %s. Details: %s", name, e.getMessage());
-            logger.error(error, e);
-            return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
+        private <T> CompletableFuture<T> call(String operation, Supplier<T> call) {
+            try {
+                return CompletableFuture.completedFuture(callMetrics.record(operation, call));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
         }
     }
 }
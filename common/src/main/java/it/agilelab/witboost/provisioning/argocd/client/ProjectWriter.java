@@ -0,0 +1,397 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1AppProjectSpec;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes ArgoCD projects on behalf of both the {@link ProjectManager} and the {@link AsyncProjectManager}.
+ * <p>
+ * The writer holds the logic shared by the two managers: the coalescing of the concurrent mutations of the
+ * same project, the comparison of the live specification with the desired one, and the retries of the writes
+ * rejected because of a concurrent modification. The calls to ArgoCD are made through the {@link Calls} of the
+ * manager: they return futures that are already completed when the client is blocking, in which case the whole
+ * write runs on the caller's thread.
+ * </p>
+ */
+final class ProjectWriter {
+
+    private final Logger logger = LoggerFactory.getLogger(ProjectWriter.class);
+    private final Calls calls;
+    private final Duration batchWindow;
+    private final int conflictRetries;
+    private final Duration conflictBackoff;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, MutationQueue> queues = new ConcurrentHashMap<>();
+    private final Counter performedWrites;
+    private final Counter skippedWrites;
+    private final DistributionSummary batchSize;
+    private final Counter conflicts;
+
+    /**
+     * Creates a writer.
+     *
+     * @param calls the calls to the ArgoCD project API.
+     * @param meterRegistry the registry where the project write metrics are registered.
+     * @param batchWindow how long the leader of a batch waits for further mutations of the same project.
+     * @param conflictRetries how many times a write rejected because of a concurrent modification is retried.
+     * @param conflictBackoff the base delay before retrying a rejected write.
+     */
+    ProjectWriter(
+            Calls calls,
+            MeterRegistry meterRegistry,
+            Duration batchWindow,
+            int conflictRetries,
+            Duration conflictBackoff) {
+        this.calls = calls;
+        this.batchWindow = batchWindow;
+        this.conflictRetries = conflictRetries;
+        this.conflictBackoff = conflictBackoff;
+        this.meterRegistry = meterRegistry;
+        this.performedWrites = Counter.builder(ProjectManager.PROJECT_WRITES_METRIC)
+                .description("Updates of existing ArgoCD projects")
+                .tag("result", "performed")
+                .register(meterRegistry);
+        this.skippedWrites = Counter.builder(ProjectManager.PROJECT_WRITES_METRIC)
+                .description("Updates of existing ArgoCD projects")
+                .tag("result", "skipped")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder(ProjectManager.PROJECT_BATCH_SIZE_METRIC)
+                .description("Mutations coalesced in a single ArgoCD project write")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder(ProjectManager.PROJECT_CONFLICTS_METRIC)
+                .description("ArgoCD project writes rejected because of a concurrent modification")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the mutations on their project and applies them, together with the ones queued concurrently.
+     *
+     * @param name the name of the ArgoCD project to create or update.
+     * @param mutations the destinations and source repositories to add to the project.
+     * @return A future completed with the outcome of the first failed mutation, or of the last one if all of
+     * them succeeded. It completes exceptionally only if the write failed with an unexpected throwable.
+     */
+    CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> write(String name, List<Mutation> mutations) {
+        MutationQueue queue = enqueue(name, mutations);
+        drain(name, queue);
+
+        CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> result = CompletableFuture.completedFuture(null);
+        for (Mutation mutation : mutations) {
+            result = result.thenCombine(
+                    mutation.result(), (previous, next) -> previous != null && previous.isLeft() ? previous : next);
+        }
+        return result;
+    }
+
+    /**
+     * Queues the mutations on their project. The queue is looked up and filled atomically, so that mutations are
+     * never added to a queue that {@link #drain} has just dropped.
+     */
+    private MutationQueue enqueue(String name, List<Mutation> mutations) {
+        return queues.compute(name, (key, queue) -> {
+            MutationQueue current = queue != null ? queue : new MutationQueue();
+            current.mutations.addAll(mutations);
+            return current;
+        });
+    }
+
+    /**
+     * Applies the queued mutations of a project, unless another caller is already leading its batches.
+     * <p>
+     * The leader keeps draining until the queue is empty, and re-checks it after releasing the leadership
+     * so that a mutation queued in between is never left without a leader. With a non-blocking client, the
+     * next batch is started by the thread completing the previous one. If a batch fails with an unexpected
+     * throwable, its mutations and those still queued are completed exceptionally, so that no waiter is left
+     * hanging. The queue is dropped once it is empty and without a leader.
+     * </p>
+     */
+    private void drain(String name, MutationQueue queue) {
+        try {
+            while (!queue.mutations.isEmpty() && queue.leader.compareAndSet(false, true)) {
+                CompletableFuture<Void> round = applyQueued(name, queue);
+                if (!round.isDone()) {
+                    round.whenComplete((ignored, failure) -> drain(name, queue));
+                    return;
+                }
+            }
+        } finally {
+            queues.computeIfPresent(
+                    name,
+                    (key, current) ->
+                            current == queue && current.mutations.isEmpty() && !current.leader.get() ? null : current);
+        }
+    }
+
+    /** Waits for the batch window, then applies the mutations queued so far and releases the leadership. */
+    private CompletableFuture<Void> applyQueued(String name, MutationQueue queue) {
+        List<Mutation> batch = new ArrayList<>();
+        CompletableFuture<Void> round;
+        try {
+            round = calls.delay(batchWindow).thenCompose(ignored -> {
+                Mutation next;
+                while ((next = queue.mutations.poll()) != null) {
+                    batch.add(next);
+                }
+                if (batch.isEmpty()) return CompletableFuture.completedFuture(null);
+
+                batchSize.record(batch.size());
+                return applyBatch(name, batch)
+                        .thenAccept(result -> batch.forEach(m -> m.result().complete(result)));
+            });
+        } catch (Throwable e) {
+            round = CompletableFuture.failedFuture(e);
+        }
+        return round.whenComplete((ignored, failure) -> {
+            if (failure != null) failPending(queue, batch, AsyncApiErrors.unwrap(failure));
+            queue.leader.set(false);
+        });
+    }
+
+    /** Completes exceptionally the mutations of a failed batch and those still queued on the same project. */
+    private static void failPending(MutationQueue queue, List<Mutation> batch, Throwable failure) {
+        Mutation next;
+        while ((next = queue.mutations.poll()) != null) {
+            batch.add(next);
+        }
+        batch.forEach(m -> m.result().completeExceptionally(failure));
+    }
+
+    /** The number of projects with pending mutations or a running batch. */
+    int queuedProjects() {
+        return queues.size();
+    }
+
+    /**
+     * Applies all the mutations of a batch, retrying when the write is rejected because the project was
+     * concurrently modified.
+     *
+     * @param name the name of the ArgoCD project to create or update.
+     * @param batch the mutations to apply, in arrival order.
+     * @return A future completed with the created or updated {@link V1alpha1AppProject} on success, or a
+     * {@link FailedOperation} on failure. The same result is shared by all the mutations of the batch.
+     */
+    CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> applyBatch(String name, List<Mutation> batch) {
+        AtomicInteger retries = new AtomicInteger();
+
+        return writeWithRetries(name, batch, retries).handle((result, failure) -> {
+            Throwable cause = failure != null ? AsyncApiErrors.unwrap(failure) : null;
+            if (cause instanceof Error error) throw error;
+            Either<FailedOperation, V1alpha1AppProject> outcome =
+                    cause == null ? result : Either.left(writeFailure(name, retries.get(), cause));
+            DistributionSummary.builder(ProjectManager.PROJECT_RETRIES_METRIC)
+                    .description("Retries needed to write an ArgoCD project because of concurrent modifications")
+                    .tag("outcome", outcome.isRight() ? "success" : "failure")
+                    .register(meterRegistry)
+                    .record(retries.get());
+            return outcome;
+        });
+    }
+
+    private CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> writeWithRetries(
+            String name, List<Mutation> batch, AtomicInteger retries) {
+        return writeBatch(name, batch).exceptionallyCompose(failure -> {
+            if (!calls.isConflict(failure)) return CompletableFuture.failedFuture(failure);
+            conflicts.increment();
+            if (retries.get() >= conflictRetries) return CompletableFuture.failedFuture(failure);
+
+            int retry = retries.incrementAndGet();
+            logger.warn(
+                    "Project {} was modified concurrently, retrying the update ({}/{})", name, retry, conflictRetries);
+            return calls.delay(Duration.ofMillis(backoffDelay(conflictBackoff, retry)))
+                    .thenCompose(ignored -> writeWithRetries(name, batch, retries));
+        });
+    }
+
+    private FailedOperation writeFailure(String name, int retries, Throwable cause) {
+        String error = calls.isConflict(cause)
+                ? String.format(
+                        "Failed to update the project %s after %d retries, as it keeps being modified concurrently. Details: %s",
+                        name, retries, cause.getMessage())
+                : String.format(
+                        "An unexpected error occurred while creating (or updating) the project %s. Details: %s",
+                        name, cause.getMessage());
+        logger.error(error, cause);
+        return new FailedOperation(error, Collections.singletonList(new Problem(error, cause)));
+    }
+
+    /**
+     * Applies all the mutations of a batch with a single get-modify-update cycle.
+     * <p>
+     * The project is sent back with the {@code resourceVersion} it was read with, so ArgoCD rejects the
+     * update with a conflict if the project has been modified in the meantime.
+     * </p>
+     */
+    private CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> writeBatch(
+            String name, List<Mutation> batch) {
+        return calls.get(name)
+                .<Optional<V1alpha1AppProject>>handle((project, failure) -> {
+                    if (failure == null) return Optional.of(project);
+                    if (calls.isNotFound(failure)) return Optional.empty();
+                    throw new CompletionException(AsyncApiErrors.unwrap(failure));
+                })
+                .thenCompose(project ->
+                        project.map(existing -> update(name, existing, batch)).orElseGet(() -> create(name, batch)));
+    }
+
+    private CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> update(
+            String name, V1alpha1AppProject project, List<Mutation> batch) {
+        boolean changed = false;
+        for (Mutation mutation : batch) {
+            changed |= mergeIntoSpec(project.getSpec(), mutation.destination(), mutation.source());
+        }
+
+        if (!changed) {
+            skippedWrites.increment();
+            logger.info(String.format("Project %s is already up to date, skipping the update", name));
+            return CompletableFuture.completedFuture(Either.right(project));
+        }
+
+        if (project.getMetadata() == null || project.getMetadata().getResourceVersion() == null) {
+            logger.warn("Project {} has no resourceVersion, the update will not be checked for conflicts", name);
+        }
+        return calls.update(name, project).thenApply(updated -> {
+            performedWrites.increment();
+            logger.info(String.format("Project %s updated successfully (%d coalesced requests)", name, batch.size()));
+            return Either.right(project);
+        });
+    }
+
+    /**
+     * Creates a new ArgoCD project including all the mutations of a batch.
+     *
+     * @return A future completed with the created project, or with a {@link FailedOperation} if the creation
+     * failed. It completes exceptionally if the project has been concurrently created by someone else, so that
+     * the batch is retried as an update.
+     */
+    CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> create(String name, List<Mutation> batch) {
+        V1alpha1AppProject newProject;
+        try {
+            newProject = new V1alpha1AppProject()
+                    .metadata(new V1ObjectMeta().name(name))
+                    .spec(new V1alpha1AppProjectSpec()
+                            .sourceRepos(new ArrayList<>())
+                            .destinations(new ArrayList<>()));
+            batch.forEach(mutation -> mergeIntoSpec(newProject.getSpec(), mutation.destination(), mutation.source()));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(Either.left(createFailure(name, e)));
+        }
+
+        return calls.create(newProject).handle((project, failure) -> {
+            if (failure == null) {
+                logger.info(String.format("Project %s created successfully.", name));
+                return Either.right(project);
+            }
+            // Created concurrently by someone else: the batch is retried as an update
+            if (calls.isConflict(failure)) throw new CompletionException(AsyncApiErrors.unwrap(failure));
+            return Either.left(createFailure(name, AsyncApiErrors.unwrap(failure)));
+        });
+    }
+
+    FailedOperation createFailure(String name, Throwable cause) {
+        String error = String.format("Failed to create the project %s. Details: %s", name, cause.getMessage());
+        logger.error(error, cause);
+        return new FailedOperation(error, Collections.singletonList(new Problem(error, cause)));
+    }
+
+    /** Full jitter: a random delay up to the base delay doubled for each previous retry. */
+    static long backoffDelay(Duration conflictBackoff, int retry) {
+        long maxDelay = conflictBackoff.toMillis() << Math.min(retry - 1, 10);
+        return maxDelay <= 0 ? 0 : ThreadLocalRandom.current().nextLong(maxDelay + 1);
+    }
+
+    /**
+     * Adds the destination and the source repository to a project specification, if not already present.
+     *
+     * @return {@code true} if the specification was changed, {@code false} if it already contained both.
+     */
+    static boolean mergeIntoSpec(V1alpha1AppProjectSpec spec, Destination destination, Source source) {
+
+        boolean destinationExists = spec.getDestinations().stream()
+                .anyMatch(dest -> dest.getServer().equalsIgnoreCase(destination.getServer())
+                        && ((dest.getNamespace() == null && destination.getNamespace() == null)
+                                || (dest.getNamespace() != null
+                                        && destination.getNamespace() != null
+                                        && dest.getNamespace().equalsIgnoreCase(destination.getNamespace()))));
+
+        boolean changed = false;
+
+        if (!destinationExists) {
+            spec.addDestinationsItem(new V1alpha1ApplicationDestination()
+                    .server(destination.getServer())
+                    .namespace(destination.getNamespace()));
+            changed = true;
+        }
+
+        if (!spec.getSourceRepos().contains(source.getRepoURL())) {
+            spec.addSourceReposItem(source.getRepoURL());
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * The calls to the ArgoCD project API made by a manager. Failures are reported by completing the returned
+     * future exceptionally.
+     */
+    interface Calls {
+
+        CompletableFuture<V1alpha1AppProject> get(String name);
+
+        CompletableFuture<V1alpha1AppProject> create(V1alpha1AppProject project);
+
+        CompletableFuture<V1alpha1AppProject> update(String name, V1alpha1AppProject project);
+
+        /** Returns a future completed once the given delay has elapsed. */
+        CompletableFuture<Void> delay(Duration delay);
+
+        /** Whether the call failed because the project does not exist. */
+        boolean isNotFound(Throwable failure);
+
+        /** Whether the write was rejected because of a concurrent modification, see {@link ProjectManager#isConflict}. */
+        boolean isConflict(Throwable failure);
+    }
+
+    /** A pending addition of a destination and a source repository to a project. */
+    record Mutation(
+            Destination destination,
+            Source source,
+            CompletableFuture<Either<FailedOperation, V1alpha1AppProject>> result) {
+
+        Mutation(Destination destination, Source source) {
+            this(destination, source, new CompletableFuture<>());
+        }
+    }
+
+    /** The pending mutations of a single project and the flag of the caller currently applying them. */
+    private static class MutationQueue {
+        private final Queue<Mutation> mutations = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean leader = new AtomicBoolean(false);
+    }
+}
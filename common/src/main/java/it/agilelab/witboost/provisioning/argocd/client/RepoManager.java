@@ -2,15 +2,18 @@ package it.agilelab.witboost.provisioning.argocd.client;
 
 import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.configuration.GitConfiguration;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import org.openapitools.client.api.RepositoryServiceApi;
 import org.openapitools.client.model.V1alpha1Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 
 /**
  * A manager class for handling Git repositories in ArgoCD.
@@ -20,29 +23,63 @@ import org.springframework.stereotype.Service;
  * by {@link GitConfiguration}.
  * </p>
  */
-@Service
 public class RepoManager {
 
     private final Logger logger = LoggerFactory.getLogger(RepoManager.class);
     private final RepositoryServiceApi repositoryServiceApi;
     private final GitConfiguration gitConfiguration;
+    private final boolean listLookup;
+    private final ArgoCdCallMetrics callMetrics;
 
     /**
      * Constructor for injecting the required dependencies.
+     * The repository is looked up by its URL after the creation or update.
      *
      * @param repositoryServiceApi API client for interacting with ArgoCD repository services.
      * @param gitConfiguration Configuration containing credentials and settings for Git repositories.
      */
     public RepoManager(RepositoryServiceApi repositoryServiceApi, GitConfiguration gitConfiguration) {
+        this(repositoryServiceApi, gitConfiguration, false);
+    }
+
+    /**
+     * Constructor for injecting the required dependencies.
+     *
+     * @param repositoryServiceApi API client for interacting with ArgoCD repository services.
+     * @param gitConfiguration Configuration containing credentials and settings for Git repositories.
+     * @param listLookup If true, the repository is searched in the list of all the repositories registered
+     *                   in ArgoCD instead of being looked up by its URL.
+     */
+    public RepoManager(
+            RepositoryServiceApi repositoryServiceApi, GitConfiguration gitConfiguration, boolean listLookup) {
+        this(repositoryServiceApi, gitConfiguration, listLookup, Metrics.globalRegistry);
+    }
+
+    /**
+     * Constructor for injecting the required dependencies.
+     *
+     * @param repositoryServiceApi API client for interacting with ArgoCD repository services.
+     * @param gitConfiguration Configuration containing credentials and settings for Git repositories.
+     * @param listLookup If true, the repository is searched in the list of all the repositories registered
+     *                   in ArgoCD instead of being looked up by its URL.
+     * @param meterRegistry Registry where the {@link ArgoCdCallMetrics} are registered.
+     */
+    public RepoManager(
+            RepositoryServiceApi repositoryServiceApi,
+            GitConfiguration gitConfiguration,
+            boolean listLookup,
+            MeterRegistry meterRegistry) {
         this.repositoryServiceApi = repositoryServiceApi;
         this.gitConfiguration = gitConfiguration;
+        this.listLookup = listLookup;
+        this.callMetrics = new ArgoCdCallMetrics(meterRegistry);
     }
 
     /**
      * Creates or updates a Git repository in ArgoCD.
      * <p>
      * This method sends a request to create or update the specified Git repository,
-     * then retrieves the updated list of repositories to verify the operation's success.
+     * then retrieves the repository and its connection state to verify the operation's success.
      * </p>
      *
      * @param repoURL The URL of the Git repository to create or update.
@@ -53,48 +90,15 @@ public class RepoManager {
     public Either<FailedOperation, V1alpha1Repository> createOrUpdateRepository(String repoURL, String project) {
         try {
 
-            repositoryServiceApi.repositoryServiceCreateRepositoryWithHttpInfo(
-                    new V1alpha1Repository()
-                            .type("git")
-                            .password(gitConfiguration.getToken())
-                            .repo(repoURL)
-                            .username(gitConfiguration.getUsername())
-                            .project(project),
-                    true,
-                    false);
-
-            List<V1alpha1Repository> repoList = repositoryServiceApi
-                    .repositoryServiceListRepositories(null, true, null)
-                    .getItems();
-
-            return repoList.stream()
-                    .filter(repo -> repo.getRepo().equalsIgnoreCase(repoURL))
-                    .findFirst()
-                    .<Either<FailedOperation, V1alpha1Repository>>map(repo -> {
-                        if (repo.getConnectionState().getStatus().equalsIgnoreCase("Successful")) {
-                            logger.info(
-                                    "Repository {} created or updated successfully (project {}).", repoURL, project);
-                            return Either.right(repo);
-                        } else {
-                            String error = String.format(
-                                    "Failed to create or update the repository %s. Details: [Connection status: %s. Message: %s]",
-                                    repoURL,
-                                    repo.getConnectionState().getStatus(),
-                                    repo.getConnectionState().getMessage());
-                            logger.error(error);
-                            return Either.left(new FailedOperation(
-                                    error,
-                                    Collections.singletonList(new Problem(
-                                            repo.getConnectionState().getMessage()))));
-                        }
-                    })
-                    .orElseGet(() -> {
-                        String error = String.format(
-                                "Repository %s not found after creation or update. This might indicate an internal error.",
-                                repoURL);
-                        logger.error(error);
-                        return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
-                    });
+            callMetrics.record(
+                    "repository.create",
+                    () -> repositoryServiceApi.repositoryServiceCreateRepositoryWithHttpInfo(
+                            buildRepository(gitConfiguration, repoURL, project), true, false));
+
+            Optional<V1alpha1Repository> repository =
+                    listLookup ? findRepositoryInList(repoURL) : findRepository(repoURL, project);
+
+            return checkConnection(logger, repoURL, project, repository);
 
         } catch (Exception e) {
             String error = String.format(
@@ -104,4 +108,98 @@ public class RepoManager {
             return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
         }
     }
+
+    static V1alpha1Repository buildRepository(GitConfiguration gitConfiguration, String repoURL, String project) {
+        return new V1alpha1Repository()
+                .type("git")
+                .password(gitConfiguration.getToken())
+                .repo(repoURL)
+                .username(gitConfiguration.getUsername())
+                .project(project);
+    }
+
+    /**
+     * Checks that the repository found after its creation or update can be reached by ArgoCD.
+     *
+     * @param logger The logger of the calling manager.
+     * @param repoURL The URL of the Git repository.
+     * @param project The ArgoCD project the repository is scoped to.
+     * @param repository The repository retrieved from ArgoCD, if any.
+     * @return An {@link Either} containing the repository if its connection state is successful,
+     *         or a {@link FailedOperation} describing the failure.
+     */
+    static Either<FailedOperation, V1alpha1Repository> checkConnection(
+            Logger logger, String repoURL, String project, Optional<V1alpha1Repository> repository) {
+        return repository
+                .<Either<FailedOperation, V1alpha1Repository>>map(repo -> {
+                    if (repo.getConnectionState().getStatus().equalsIgnoreCase("Successful")) {
+                        logger.info("Repository {} created or updated successfully (project {}).", repoURL, project);
+                        return Either.right(repo);
+                    } else {
+                        String error = String.format(
+                                "Failed to create or update the repository %s. Details: [Connection status: %s. Message: %s]",
+                                repoURL,
+                                repo.getConnectionState().getStatus(),
+                                repo.getConnectionState().getMessage());
+                        logger.error(error);
+                        return Either.left(new FailedOperation(
+                                error,
+                                Collections.singletonList(
+                                        new Problem(repo.getConnectionState().getMessage()))));
+                    }
+                })
+                .orElseGet(() -> {
+                    String error = String.format(
+                            "Repository %s not found after creation or update. This might indicate an internal error.",
+                            repoURL);
+                    logger.error(error);
+                    return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+                });
+    }
+
+    /**
+     * Retrieves a single repository, refreshing its connection state.
+     * <p>
+     * The URL is sent as a single path segment, so the client must encode its slashes.
+     * </p>
+     *
+     * @param repoURL The URL of the Git repository.
+     * @param project The ArgoCD project the repository is scoped to.
+     * @return The repository, or an empty {@link Optional} if it is not registered in ArgoCD.
+     */
+    protected Optional<V1alpha1Repository> findRepository(String repoURL, String project) {
+        try {
+            return Optional.ofNullable(callMetrics.record(
+                    "repository.get", () -> repositoryServiceApi.repositoryServiceGet(repoURL, true, project)));
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Searches a repository in the list of all the repositories registered in ArgoCD.
+     * <p>
+     * The cost of this lookup grows with the number of registered repositories, so it is only
+     * used as a fallback when the lookup by URL is not available.
+     * </p>
+     *
+     * @param repoURL The URL of the Git repository.
+     * @return The repository, or an empty {@link Optional} if it is not registered in ArgoCD.
+     */
+    protected Optional<V1alpha1Repository> findRepositoryInList(String repoURL) {
+        return findInList(
+                callMetrics
+                        .record(
+                                "repository.list",
+                                () -> repositoryServiceApi.repositoryServiceListRepositories(null, true, null))
+                        .getItems(),
+                repoURL);
+    }
+
+    /** Finds a repository by its URL in the list of the repositories registered in ArgoCD. */
+    static Optional<V1alpha1Repository> findInList(List<V1alpha1Repository> repoList, String repoURL) {
+        return repoList.stream()
+                .filter(repo -> repo.getRepo().equalsIgnoreCase(repoURL))
+                .findFirst();
+    }
 }
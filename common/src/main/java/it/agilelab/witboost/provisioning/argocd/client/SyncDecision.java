@@ -0,0 +1,75 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1OperationState;
+
+/**
+ * Whether an explicit sync has to be requested after an application has been created or updated.
+ * <p>
+ * Decisions are counted by the {@value #DECISIONS_METRIC} counter, tagged by {@code decision}.
+ * </p>
+ */
+public enum SyncDecision {
+    /** The application has to be synced explicitly. */
+    REQUIRED,
+    /** The application has an automated sync policy, ArgoCD syncs it by itself. */
+    AUTOMATED,
+    /** A sync operation is already running, a second one would be rejected by ArgoCD. */
+    IN_PROGRESS,
+    /** The application is already Synced to the pinned revision of its desired source. */
+    UP_TO_DATE;
+
+    public static final String DECISIONS_METRIC = "argocd.application.sync.decisions";
+
+    /**
+     * Decides whether the application has to be synced.
+     * <p>
+     * The application is considered up to date only if ArgoCD reports it Synced, its last comparison was made
+     * against the desired source and destination, so that a status computed before an update of the spec is never
+     * taken for the status of the new spec, and the revision it is synced to is the desired target revision itself.
+     * A symbolic target revision ({@code HEAD}, a branch or a tag) is resolved by ArgoCD to a commit, and the Synced
+     * status may have been computed before the symbolic revision moved: such an application is never considered up
+     * to date, only a pinned one (a commit or a chart version) can be.
+     * </p>
+     *
+     * @param desired The spec the application has been created or updated with.
+     * @param application The application returned by ArgoCD, or read from it when the update was skipped.
+     * @return The decision.
+     */
+    public static SyncDecision decide(V1alpha1ApplicationSpec desired, V1alpha1Application application) {
+        if (desired.getSyncPolicy() != null && desired.getSyncPolicy().getAutomated() != null) return AUTOMATED;
+        if (application == null) return REQUIRED;
+
+        V1alpha1ApplicationStatus status = application.getStatus();
+        V1alpha1OperationState operationState = status != null ? status.getOperationState() : null;
+        if (application.getOperation() != null
+                || (operationState != null && "Running".equals(operationState.getPhase()))) {
+            return IN_PROGRESS;
+        }
+
+        if (status == null || status.getSync() == null) return REQUIRED;
+        boolean synced = "Synced".equals(status.getSync().getStatus())
+                && pinnedRevision(desired.getSource(), status.getSync().getRevision());
+        return synced && ApplicationWatcher.comparedToDesired(desired, application) ? UP_TO_DATE : REQUIRED;
+    }
+
+    /** The counter of this decision in the given registry. */
+    Counter counter(MeterRegistry meterRegistry) {
+        return Counter.builder(DECISIONS_METRIC)
+                .description("Decisions on whether to sync an application after creating or updating it")
+                .tag("decision", name().toLowerCase())
+                .register(meterRegistry);
+    }
+
+    /** Whether the revision the application is synced to is the desired target revision itself. */
+    private static boolean pinnedRevision(V1alpha1ApplicationSource desired, String syncedRevision) {
+        return desired != null
+                && desired.getTargetRevision() != null
+                && desired.getTargetRevision().equalsIgnoreCase(syncedRevision);
+    }
+}
@@ -1,5 +1,6 @@
 package it.agilelab.witboost.provisioning.argocd.configuration;
 
+import java.time.Duration;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -10,4 +11,94 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class ArgoCdConfiguration {
     private String token;
     private String basePath;
+    private Provision provision = new Provision();
+    private Repository repository = new Repository();
+    private Project project = new Project();
+    private Http http = new Http();
+    private NonBlocking nonBlocking = new NonBlocking();
+    private Sync sync = new Sync();
+    private Json json = new Json();
+    private Resilience resilience = new Resilience();
+    private RateLimit rateLimit = new RateLimit();
+
+    @Getter
+    @Setter
+    public static class Provision {
+        private int stagePoolSize = 16;
+        private int batchParallelism = 8;
+        private int maxBatchSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Repository {
+        private boolean listLookup = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Project {
+        private Duration batchWindow = Duration.ZERO;
+        private int conflictRetries = 5;
+        private Duration conflictBackoff = Duration.ofMillis(100);
+    }
+
+    @Getter
+    @Setter
+    public static class Http {
+        private int maxConnections = 50;
+        private int maxConnectionsPerRoute = 20;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofSeconds(60);
+        private Duration responseTimeout = Duration.ofSeconds(60);
+        private Duration connectionRequestTimeout = Duration.ofSeconds(10);
+        private Duration keepAlive = Duration.ofMinutes(3);
+        private Duration idleEviction = Duration.ofMinutes(1);
+        private boolean http2 = false;
+    }
+
+    @Getter
+    @Setter
+    public static class NonBlocking {
+        private boolean enabled = false;
+        private int ioThreads = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class Sync {
+        private boolean waitForSync = false;
+        private Duration timeout = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Json {
+        private boolean blackbird = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Resilience {
+        private boolean enabled = false;
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private double backoffMultiplier = 2.0;
+        private double backoffJitter = 0.5;
+        private float failureRateThreshold = 50;
+        private int slidingWindowSize = 20;
+        private int minimumNumberOfCalls = 10;
+        private Duration openStateDuration = Duration.ofSeconds(30);
+        private int maxConcurrentCalls = 25;
+        private Duration maxBulkheadWait = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimit {
+        private boolean enabled = false;
+        private double permitsPerSecond = 50;
+        private int burst = 100;
+        private Duration maxWait = Duration.ofSeconds(30);
+    }
 }
@@ -0,0 +1,102 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openapitools.client.model.ApplicationApplicationSyncRequest;
+import org.openapitools.client.model.ProjectProjectCreateRequest;
+import org.openapitools.client.model.ProjectProjectUpdateRequest;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationList;
+import org.openapitools.client.model.V1alpha1Repository;
+import org.openapitools.client.model.V1alpha1RepositoryList;
+import org.springframework.core.NativeDetector;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Converts the bodies exchanged with ArgoCD.
+ * <p>
+ * The readers and writers of the model types sent to and received from ArgoCD are built once, with their root
+ * serializer and deserializer already resolved, instead of being looked up on every call. Other types fall back
+ * to the default behavior of {@link MappingJackson2HttpMessageConverter}.
+ * </p>
+ */
+class ArgoCdJsonMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    static final List<Class<?>> MODEL_TYPES = List.of(
+            V1alpha1Application.class,
+            V1alpha1ApplicationList.class,
+            ApplicationApplicationSyncRequest.class,
+            V1alpha1AppProject.class,
+            ProjectProjectCreateRequest.class,
+            ProjectProjectUpdateRequest.class,
+            V1alpha1Repository.class,
+            V1alpha1RepositoryList.class);
+
+    private final Map<Class<?>, ObjectReader> readers;
+    private final Map<Class<?>, ObjectWriter> writers;
+
+    ArgoCdJsonMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+        this.readers = MODEL_TYPES.stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), objectMapper::readerFor));
+        this.writers = MODEL_TYPES.stream()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), objectMapper::writerFor));
+    }
+
+    /**
+     * Creates the mapper of the ArgoCD payloads from the application one, which is left untouched.
+     * <p>
+     * Null fields are not serialized, so that the bodies sent to ArgoCD only contain the fields that are set,
+     * and the response fields unknown to the generated models are ignored.
+     * </p>
+     *
+     * @param objectMapper the application mapper.
+     * @param blackbird whether to register the Blackbird module, replacing reflection with generated accessors.
+     * @return the mapper of the ArgoCD payloads.
+     */
+    static ObjectMapper createObjectMapper(ObjectMapper objectMapper, boolean blackbird) {
+        // Blackbird is discovered as well when on the classpath, so it is only registered when enabled
+        List<com.fasterxml.jackson.databind.Module> modules = ObjectMapper.findModules().stream()
+                .filter(module -> !(module instanceof BlackbirdModule))
+                .toList();
+        ObjectMapper argoCdMapper = objectMapper
+                .copy()
+                .registerModules(modules)
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        if (blackbird && blackbirdSupported()) {
+            argoCdMapper.registerModule(new BlackbirdModule());
+        }
+        return argoCdMapper;
+    }
+
+    /** Whether Blackbird can be used: it defines classes at runtime, which a native image does not support. */
+    static boolean blackbirdSupported() {
+        return !NativeDetector.inNativeImage();
+    }
+
+    @Override
+    protected ObjectReader customizeReader(ObjectReader reader, JavaType javaType) {
+        ObjectReader prebuilt = javaType != null ? readers.get(javaType.getRawClass()) : null;
+        return prebuilt != null ? prebuilt : reader;
+    }
+
+    @Override
+    protected ObjectWriter customizeWriter(ObjectWriter writer, JavaType javaType, MediaType mediaType) {
+        ObjectWriter prebuilt = javaType != null ? writers.get(javaType.getRawClass()) : null;
+        return prebuilt != null ? prebuilt : writer;
+    }
+}
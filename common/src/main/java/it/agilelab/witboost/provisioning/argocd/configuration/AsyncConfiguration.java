@@ -0,0 +1,17 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "argocd.async")
+public class AsyncConfiguration {
+    private boolean enabled = false;
+    private int poolSize = 8;
+    private int queueCapacity = 200;
+    private Duration taskTtl = Duration.ofHours(1);
+    private int maxTasks = 1000;
+}
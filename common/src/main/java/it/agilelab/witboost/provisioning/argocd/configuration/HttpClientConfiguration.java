@@ -0,0 +1,122 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.function.ToDoubleFunction;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+/**
+ * Configures the HTTP client used to call ArgoCD.
+ * <p>
+ * By default, connections are pooled and kept alive by Apache HttpClient, so that consecutive calls reuse the
+ * same TLS session instead of performing a new handshake. The pool usage is exposed by the
+ * {@code argocd.http.pool.*} gauges. When {@code argocd.http.http2} is enabled, the JDK HTTP client is used
+ * instead, multiplexing the concurrent calls over a single HTTP/2 connection.
+ * </p>
+ * <p>
+ * In both cases the trust store configured through the {@code javax.net.ssl.*} system properties is honored.
+ * </p>
+ */
+@Configuration
+class HttpClientConfiguration {
+
+    static final String POOL_METRIC_PREFIX = "argocd.http.pool.";
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientConfiguration.class);
+
+    @Bean
+    public ClientHttpRequestFactory argoCdRequestFactory(
+            ArgoCdConfiguration argoCdConfiguration, ObjectProvider<MeterRegistry> meterRegistry) {
+        return createRequestFactory(
+                argoCdConfiguration.getHttp(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    static ClientHttpRequestFactory createRequestFactory(ArgoCdConfiguration.Http http, MeterRegistry meterRegistry) {
+        if (http.isHttp2()) {
+            logger.info("Using an HTTP/2 client for ArgoCD, connection pool metrics are not available");
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(http.getConnectTimeout())
+                    .build();
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(http.getResponseTimeout());
+            return requestFactory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(http.getMaxConnections())
+                .setMaxConnPerRoute(http.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(timeout(http.getConnectTimeout()))
+                        .setSocketTimeout(timeout(http.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .useSystemProperties()
+                .build();
+
+        TimeValue keepAlive = TimeValue.ofMilliseconds(http.getKeepAlive().toMillis());
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout(http.getConnectionRequestTimeout()))
+                        .setResponseTimeout(timeout(http.getResponseTimeout()))
+                        .build())
+                // Honor the Keep-Alive header sent by ArgoCD, but never keep connections longer than configured
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue serverKeepAlive =
+                            DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(serverKeepAlive) && serverKeepAlive.compareTo(keepAlive) < 0
+                            ? serverKeepAlive
+                            : keepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(
+                        TimeValue.ofMilliseconds(http.getIdleEviction().toMillis()))
+                .useSystemProperties()
+                .build();
+
+        registerPoolGauge(meterRegistry, connectionManager, "leased", PoolStats::getLeased);
+        registerPoolGauge(meterRegistry, connectionManager, "available", PoolStats::getAvailable);
+        registerPoolGauge(meterRegistry, connectionManager, "pending", PoolStats::getPending);
+        registerPoolGauge(meterRegistry, connectionManager, "max", PoolStats::getMax);
+
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    private static void registerPoolGauge(
+            MeterRegistry meterRegistry,
+            PoolingHttpClientConnectionManager connectionManager,
+            String name,
+            ToDoubleFunction<PoolStats> value) {
+        Gauge.builder(
+                        POOL_METRIC_PREFIX + name,
+                        connectionManager,
+                        manager -> value.applyAsDouble(manager.getTotalStats()))
+                .description("Connections of the ArgoCD HTTP client pool: " + name)
+                .register(meterRegistry);
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+}
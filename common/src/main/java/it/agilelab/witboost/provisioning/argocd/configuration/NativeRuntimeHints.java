@@ -0,0 +1,76 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Registers the reflection needed by the adapter at runtime, for the native image.
+ * <p>
+ * The types bound by Jackson are not referenced by the bean definitions, so they are registered here: the
+ * ArgoCD models generated by OpenAPI, the descriptor models of the tech adapter framework and the models of the
+ * adapter, including the Lombok-generated accessors of {@link ArgoCDApplicationSpecific} and the fields read by
+ * the bean validation. The packages are scanned when the hints are generated at build time, so that new models
+ * are registered as well.
+ * </p>
+ */
+class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<String> MODEL_PACKAGES = List.of(
+            "org.openapitools.client.model",
+            "com.witboost.provisioning.model",
+            "it.agilelab.witboost.provisioning.argocd.model");
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (String modelPackage : MODEL_PACKAGES) {
+            for (Class<?> type : findTypes(modelPackage, classLoader)) {
+                bindingHints.registerReflectionHints(hints.reflection(), type);
+                hints.reflection().registerType(type, MemberCategory.DECLARED_FIELDS);
+            }
+        }
+        // VirtualThreads invokes the Java 21 API reflectively, since the adapter is compiled for Java 17
+        hints.reflection()
+                .registerType(
+                        Executors.class,
+                        type -> type.withMethod(
+                                "newThreadPerTaskExecutor",
+                                List.of(TypeReference.of(ThreadFactory.class)),
+                                ExecutableMode.INVOKE));
+    }
+
+    /** Finds the top-level and static nested types of a package and of its sub-packages. */
+    static Set<Class<?>> findTypes(String basePackage, ClassLoader classLoader) {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+                return beanDefinition.getMetadata().isIndependent();
+            }
+        };
+        scanner.setResourceLoader(new DefaultResourceLoader(classLoader));
+        scanner.addIncludeFilter((metadataReader, metadataReaderFactory) ->
+                !metadataReader.getClassMetadata().getClassName().endsWith("package-info"));
+
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+            types.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader));
+        }
+        return types;
+    }
+}
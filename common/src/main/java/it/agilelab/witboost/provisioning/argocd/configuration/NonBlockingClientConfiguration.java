@@ -0,0 +1,102 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import it.agilelab.witboost.provisioning.argocd.client.ApplicationWatcher;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdRateLimiter;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdResilience;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncProjectManager;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncRepoManager;
+import it.agilelab.witboost.provisioning.argocd.client.NonBlockingManagers;
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.openapitools.client.async.ApiClient;
+import org.openapitools.client.async.api.ApplicationServiceApi;
+import org.openapitools.client.async.api.ProjectServiceApi;
+import org.openapitools.client.async.api.RepositoryServiceApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Configures the non-blocking ArgoCD client, enabled by {@code argocd.nonBlocking.enabled}.
+ * <p>
+ * The client is based on the JDK HTTP client: requests are sent without holding a thread while waiting for
+ * the response, and the returned futures are completed on a small pool of {@code argocd.nonBlocking.ioThreads}
+ * threads. The connect and response timeouts and the HTTP version are taken from the {@code argocd.http}
+ * settings.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "argocd.nonBlocking", name = "enabled", havingValue = "true")
+class NonBlockingClientConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public NonBlockingManagers nonBlockingManagers(
+            ArgoCdConfiguration argoCdConfiguration,
+            GitConfiguration gitConfiguration,
+            ObjectProvider<ApplicationWatcher> applicationWatcher,
+            ObjectProvider<ArgoCdResilience> argoCdResilience,
+            ObjectProvider<ArgoCdRateLimiter> argoCdRateLimiter,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(
+                argoCdConfiguration.getNonBlocking().getIoThreads(), new CustomizableThreadFactory("argocd-io-"));
+        ApiClient apiClient = createApiClient(
+                argoCdConfiguration, ioExecutor, argoCdResilience.getIfAvailable(), argoCdRateLimiter.getIfAvailable());
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+
+        return new NonBlockingManagers(
+                new AsyncRepoManager(
+                        new RepositoryServiceApi(apiClient),
+                        gitConfiguration,
+                        argoCdConfiguration.getRepository().isListLookup(),
+                        registry),
+                new AsyncApplicationManager(
+                        new ApplicationServiceApi(apiClient),
+                        applicationWatcher.getIfAvailable(),
+                        argoCdConfiguration.getSync().getTimeout(),
+                        registry),
+                new AsyncProjectManager(
+                        new ProjectServiceApi(apiClient),
+                        registry,
+                        argoCdConfiguration.getProject().getBatchWindow(),
+                        argoCdConfiguration.getProject().getConflictRetries(),
+                        argoCdConfiguration.getProject().getConflictBackoff()),
+                ioExecutor);
+    }
+
+    static ApiClient createApiClient(
+            ArgoCdConfiguration argoCdConfiguration,
+            ExecutorService ioExecutor,
+            ArgoCdResilience resilience,
+            ArgoCdRateLimiter rateLimiter) {
+        ArgoCdConfiguration.Http http = argoCdConfiguration.getHttp();
+        ApiClient apiClient = new ApiClient() {
+            @Override
+            public HttpClient getHttpClient() {
+                // Every attempt of a retried call waits for the rate limiter
+                HttpClient httpClient = super.getHttpClient();
+                if (rateLimiter != null) httpClient = rateLimiter.decorate(httpClient);
+                return resilience != null ? resilience.decorate(httpClient) : httpClient;
+            }
+        };
+        apiClient.setHttpClientBuilder(HttpClient.newBuilder()
+                .executor(ioExecutor)
+                .connectTimeout(http.getConnectTimeout())
+                .version(http.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1));
+        apiClient.updateBaseUri(argoCdConfiguration.getBasePath());
+        apiClient.setReadTimeout(http.getResponseTimeout());
+        apiClient.setRequestInterceptor(
+                request -> request.header("Authorization", "Bearer " + argoCdConfiguration.getToken()));
+        // The generated mapper already skips null fields and ignores unknown ones
+        if (argoCdConfiguration.getJson().isBlackbird() && ArgoCdJsonMessageConverter.blackbirdSupported()) {
+            apiClient.getObjectMapper().registerModule(new BlackbirdModule());
+        }
+        return apiClient;
+    }
+}
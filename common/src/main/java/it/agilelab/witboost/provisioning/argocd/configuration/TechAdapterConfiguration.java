@@ -1,40 +1,118 @@
 package it.agilelab.witboost.provisioning.argocd.configuration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.witboost.provisioning.framework.service.ProvisionConfiguration;
 import com.witboost.provisioning.framework.service.validation.ValidationConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import it.agilelab.witboost.provisioning.argocd.client.ApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.ApplicationWatcher;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdRateLimiter;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdResilience;
+import it.agilelab.witboost.provisioning.argocd.client.NonBlockingManagers;
 import it.agilelab.witboost.provisioning.argocd.client.ProjectManager;
 import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
+import it.agilelab.witboost.provisioning.argocd.controller.AsyncProvisionFilter;
 import it.agilelab.witboost.provisioning.argocd.service.ArgocdProvisionService;
 import it.agilelab.witboost.provisioning.argocd.service.ArgocdValidationService;
+import it.agilelab.witboost.provisioning.argocd.service.AsyncArgocdProvisionService;
+import it.agilelab.witboost.provisioning.argocd.service.ProvisionTaskRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.openapitools.client.ApiClient;
 import org.openapitools.client.api.ApplicationServiceApi;
 import org.openapitools.client.api.ProjectServiceApi;
 import org.openapitools.client.api.RepositoryServiceApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.context.annotation.Primary;
-import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.DefaultUriBuilderFactory;
+import org.springframework.web.util.UriTemplateHandler;
 
 @Configuration
-@EnableConfigurationProperties({ArgoCdConfiguration.class, GitConfiguration.class})
+@EnableConfigurationProperties({ArgoCdConfiguration.class, GitConfiguration.class, AsyncConfiguration.class})
+@ImportRuntimeHints(NativeRuntimeHints.class)
 class TechAdapterConfiguration {
 
+    /**
+     * Keeps the configuration eager when {@code spring.main.lazy-initialization} is enabled, so that a wrong
+     * configuration still fails the startup.
+     */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder, ObjectMapper objectMapper) {
-        return builder.messageConverters(customJacksonMessageConverter(objectMapper))
-                .build();
+    static LazyInitializationExcludeFilter eagerBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(
+                ArgoCdConfiguration.class, GitConfiguration.class, AsyncConfiguration.class);
+    }
+
+    @Bean
+    public RestTemplate restTemplate(
+            RestTemplateBuilder builder,
+            ObjectMapper objectMapper,
+            ClientHttpRequestFactory argoCdRequestFactory,
+            ObjectProvider<ArgoCdResilience> argoCdResilience,
+            ObjectProvider<ArgoCdRateLimiter> argoCdRateLimiter,
+            ArgoCdConfiguration argoCdConfiguration) {
+        ObjectMapper argoCdMapper = ArgoCdJsonMessageConverter.createObjectMapper(
+                objectMapper, argoCdConfiguration.getJson().isBlackbird());
+        RestTemplateBuilder argoCdBuilder = builder.requestFactory(() -> argoCdRequestFactory)
+                .uriTemplateHandler(argoCdUriTemplateHandler())
+                .messageConverters(new ArgoCdJsonMessageConverter(argoCdMapper));
+        // With the resilience enabled, the rate limiter is applied by it to every attempt of a retried call
+        ArgoCdResilience resilience = argoCdResilience.getIfAvailable();
+        ArgoCdRateLimiter rateLimiter = argoCdRateLimiter.getIfAvailable();
+        if (resilience != null) {
+            argoCdBuilder = argoCdBuilder.additionalInterceptors(resilience);
+        } else if (rateLimiter != null) {
+            argoCdBuilder = argoCdBuilder.additionalInterceptors(rateLimiter);
+        }
+        return argoCdBuilder.build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "argocd.rateLimit", name = "enabled", havingValue = "true")
+    public ArgoCdRateLimiter argoCdRateLimiter(
+            ArgoCdConfiguration argoCdConfiguration, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ArgoCdRateLimiter(
+                argoCdConfiguration.getRateLimit(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "argocd.resilience", name = "enabled", havingValue = "true")
+    public ArgoCdResilience argoCdResilience(
+            ArgoCdConfiguration argoCdConfiguration,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ObjectProvider<ArgoCdRateLimiter> argoCdRateLimiter) {
+        return new ArgoCdResilience(
+                argoCdConfiguration.getResilience(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                argoCdRateLimiter.stream().toList());
     }
 
-    private MappingJackson2HttpMessageConverter customJacksonMessageConverter(ObjectMapper objectMapper) {
-        objectMapper.findAndRegisterModules();
-        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return new MappingJackson2HttpMessageConverter(objectMapper);
+    /**
+     * Expands the URI templates of the ArgoCD client encoding the whole value of every variable, as the generated
+     * client does by default. The repository URL is sent as a single path segment, so its slashes must be encoded.
+     */
+    static UriTemplateHandler argoCdUriTemplateHandler() {
+        DefaultUriBuilderFactory uriBuilderFactory = new DefaultUriBuilderFactory();
+        uriBuilderFactory.setEncodingMode(DefaultUriBuilderFactory.EncodingMode.VALUES_ONLY);
+        return uriBuilderFactory;
     }
 
     @Bean
@@ -62,32 +140,140 @@ class TechAdapterConfiguration {
     }
 
     @Bean
-    public RepoManager repoManager(RepositoryServiceApi repositoryServiceApi, GitConfiguration gitConfiguration) {
-        return new RepoManager(repositoryServiceApi, gitConfiguration);
+    public RepoManager repoManager(
+            RepositoryServiceApi repositoryServiceApi,
+            GitConfiguration gitConfiguration,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ArgoCdConfiguration argoCdConfiguration) {
+        return new RepoManager(
+                repositoryServiceApi,
+                gitConfiguration,
+                argoCdConfiguration.getRepository().isListLookup(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
     }
 
     @Bean
-    public ApplicationManager applicationManager(ApplicationServiceApi applicationServiceApi) {
-        return new ApplicationManager(applicationServiceApi);
+    @ConditionalOnProperty(prefix = "argocd.sync", name = "waitForSync", havingValue = "true")
+    public ApplicationWatcher applicationWatcher(ArgoCdConfiguration argoCdConfiguration, ObjectMapper objectMapper) {
+        ArgoCdConfiguration.Http http = argoCdConfiguration.getHttp();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(http.getConnectTimeout())
+                .version(http.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .build();
+        return new ApplicationWatcher(
+                httpClient,
+                ArgoCdJsonMessageConverter.createObjectMapper(
+                        objectMapper, argoCdConfiguration.getJson().isBlackbird()),
+                argoCdConfiguration.getBasePath(),
+                argoCdConfiguration.getToken());
     }
 
     @Bean
-    public ProjectManager projectManager(ProjectServiceApi projectServiceApi) {
-        return new ProjectManager(projectServiceApi);
+    public ApplicationManager applicationManager(
+            ApplicationServiceApi applicationServiceApi,
+            ObjectProvider<ApplicationWatcher> applicationWatcher,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ArgoCdConfiguration argoCdConfiguration) {
+        return new ApplicationManager(
+                applicationServiceApi,
+                applicationWatcher.getIfAvailable(),
+                argoCdConfiguration.getSync().getTimeout(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
     }
 
     @Bean
+    public ProjectManager projectManager(
+            ProjectServiceApi projectServiceApi,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ArgoCdConfiguration argoCdConfiguration) {
+        return new ProjectManager(
+                projectServiceApi,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                argoCdConfiguration.getProject().getBatchWindow(),
+                argoCdConfiguration.getProject().getConflictRetries(),
+                argoCdConfiguration.getProject().getConflictBackoff());
+    }
+
+    @Bean(destroyMethod = "shutdown")
     @Primary
     public ArgocdProvisionService argocdProvisionService(
-            RepoManager repoManager, ApplicationManager applicationManager, ProjectManager projectManager) {
-        return new ArgocdProvisionService(repoManager, applicationManager, projectManager);
+            RepoManager repoManager,
+            ApplicationManager applicationManager,
+            ProjectManager projectManager,
+            ObjectProvider<Validator> validator,
+            ObjectProvider<NonBlockingManagers> nonBlockingManagers,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            ArgoCdConfiguration argoCdConfiguration,
+            Environment environment) {
+        int stagePoolSize = argoCdConfiguration.getProvision().getStagePoolSize();
+        // With platform threads, stages fall back to run on the caller's thread when all the stage threads are busy
+        ExecutorService stageExecutor = Threading.VIRTUAL.isActive(environment)
+                ? VirtualThreads.newThreadPerTaskExecutor("argocd-stage-")
+                : new ThreadPoolExecutor(
+                        stagePoolSize,
+                        stagePoolSize,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new SynchronousQueue<>(),
+                        new CustomizableThreadFactory("argocd-stage-"),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+        return new ArgocdProvisionService(
+                repoManager,
+                applicationManager,
+                projectManager,
+                stageExecutor,
+                argoCdConfiguration.getProvision().getBatchParallelism(),
+                argoCdConfiguration.getProvision().getMaxBatchSize(),
+                validator.getIfAvailable(
+                        () -> Validation.buildDefaultValidatorFactory().getValidator()),
+                nonBlockingManagers.getIfAvailable(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    @Bean
+    public ProvisionTaskRegistry provisionTaskRegistry(AsyncConfiguration asyncConfiguration) {
+        return new ProvisionTaskRegistry(asyncConfiguration.getTaskTtl(), asyncConfiguration.getMaxTasks());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public AsyncArgocdProvisionService asyncArgocdProvisionService(
+            ArgocdProvisionService argocdProvisionService,
+            ProvisionTaskRegistry provisionTaskRegistry,
+            AsyncConfiguration asyncConfiguration,
+            Environment environment) {
+        // With virtual threads every task gets its own thread, the tasks in flight are still bounded below
+        ExecutorService executor = Threading.VIRTUAL.isActive(environment)
+                ? VirtualThreads.newThreadPerTaskExecutor("argocd-async-")
+                : new ThreadPoolExecutor(
+                        asyncConfiguration.getPoolSize(),
+                        asyncConfiguration.getPoolSize(),
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(asyncConfiguration.getQueueCapacity()),
+                        new CustomizableThreadFactory("argocd-async-"));
+        return new AsyncArgocdProvisionService(
+                argocdProvisionService,
+                provisionTaskRegistry,
+                executor,
+                asyncConfiguration.getPoolSize() + asyncConfiguration.getQueueCapacity());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "argocd.async", name = "enabled", havingValue = "true")
+    public AsyncProvisionFilter asyncProvisionFilter(
+            ProvisionTaskRegistry provisionTaskRegistry, ObjectMapper objectMapper) {
+        return new AsyncProvisionFilter(provisionTaskRegistry, objectMapper);
     }
 
     @Bean
     @Primary
-    public ProvisionConfiguration provisionConfiguration(ArgocdProvisionService argocdProvisionService) {
+    public ProvisionConfiguration provisionConfiguration(
+            ArgocdProvisionService argocdProvisionService,
+            AsyncArgocdProvisionService asyncArgocdProvisionService,
+            AsyncConfiguration asyncConfiguration) {
         return ProvisionConfiguration.builder()
-                .workloadProvisionService(argocdProvisionService)
+                .workloadProvisionService(
+                        asyncConfiguration.isEnabled() ? asyncArgocdProvisionService : argocdProvisionService)
                 .build();
     }
 
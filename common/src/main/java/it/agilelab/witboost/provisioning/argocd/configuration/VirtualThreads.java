@@ -0,0 +1,46 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+/**
+ * Creates executors running every task on a new virtual thread.
+ * <p>
+ * The adapter is compiled for Java 17, so the Java 21 API is invoked reflectively: these executors are only
+ * available when the application runs on Java 21 or later.
+ * </p>
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /** Whether the running JVM supports virtual threads. */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task, like
+     * {@code Executors.newThreadPerTaskExecutor}.
+     *
+     * @param threadNamePrefix The prefix of the names of the virtual threads.
+     * @return The executor, to be shut down by the caller.
+     * @throws IllegalStateException if the running JVM does not support virtual threads.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix) {
+        if (!isSupported()) {
+            throw new IllegalStateException(String.format(
+                    "Virtual threads require Java 21 or later, the running version is %s", Runtime.version()));
+        }
+        ThreadFactory threadFactory = new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory();
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create a virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package it.agilelab.witboost.provisioning.argocd.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.model.common.FailedOperation;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import it.agilelab.witboost.provisioning.argocd.model.task.TaskStatus;
+import it.agilelab.witboost.provisioning.argocd.service.AsyncArgocdProvisionService;
+import it.agilelab.witboost.provisioning.argocd.service.ProvisionTaskRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * Exposes the asynchronous provisioning tasks through the provisioning interface of the framework.
+ * <p>
+ * When the {@link AsyncArgocdProvisionService} has registered a provisioning or unprovisioning request as a task,
+ * the response of the framework is replaced with {@code 202 Accepted} and the token of the task as a JSON string. The status of the
+ * task is then served by {@code GET /v1/provision/{token}/status} as a {@code ProvisioningStatus}: {@code RUNNING}
+ * while the task runs, then {@code COMPLETED} with the provisioning info or {@code FAILED} with the error. The
+ * start and the end of every step (project, repository, application, sync or delete) are reported in the logs
+ * at the time they happened. The requests
+ * for unknown tokens are left to the framework.
+ * </p>
+ */
+public class AsyncProvisionFilter extends OncePerRequestFilter {
+
+    private static final Set<String> OPERATION_PATHS = Set.of("/v1/provision", "/v1/unprovision");
+    private static final Pattern STATUS_PATH = Pattern.compile("/v1/provision/([^/]+)/status");
+
+    private final ProvisionTaskRegistry taskRegistry;
+    private final ObjectMapper objectMapper;
+
+    public AsyncProvisionFilter(ProvisionTaskRegistry taskRegistry, ObjectMapper objectMapper) {
+        this.taskRegistry = taskRegistry;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        if ("GET".equals(request.getMethod())) {
+            Matcher matcher = STATUS_PATH.matcher(path);
+            Optional<ProvisionTask> task = matcher.matches() ? taskRegistry.get(matcher.group(1)) : Optional.empty();
+            if (task.isPresent()) {
+                response.setStatus(HttpStatus.OK.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                objectMapper.writeValue(response.getOutputStream(), toStatus(task.get()));
+                return;
+            }
+        } else if ("POST".equals(request.getMethod()) && OPERATION_PATHS.contains(path)) {
+            ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+            try {
+                chain.doFilter(request, cachingResponse);
+                if (request.getAttribute(AsyncArgocdProvisionService.TOKEN_ATTRIBUTE) instanceof String token
+                        && cachingResponse.getStatus() == HttpStatus.OK.value()) {
+                    cachingResponse.resetBuffer();
+                    cachingResponse.setStatus(HttpStatus.ACCEPTED.value());
+                    cachingResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    objectMapper.writeValue(cachingResponse.getOutputStream(), token);
+                }
+            } finally {
+                cachingResponse.copyBodyToResponse();
+            }
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private Map<String, Object> toStatus(ProvisionTask task) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("status", task.getStatus().name());
+        status.put("result", result(task));
+        task.getResult().ifPresent(result -> {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("publicInfo", result.getPublicInfo().orElse(Map.of()));
+            info.put("privateInfo", result.getPrivateInfo().orElse(Map.of()));
+            status.put("info", info);
+        });
+        status.put("logs", logs(task));
+        return status;
+    }
+
+    private String result(ProvisionTask task) {
+        if (task.getStatus() == TaskStatus.FAILED) {
+            return task.getFailure().map(FailedOperation::message).orElse("");
+        }
+        return String.format(
+                task.getStatus() == TaskStatus.RUNNING ? "The %s of %s is running" : "The %s of %s has completed",
+                task.getOperation(),
+                task.getComponentName());
+    }
+
+    private List<Map<String, Object>> logs(ProvisionTask task) {
+        List<StepEvent> events = new ArrayList<>();
+        task.getStepStates().forEach((step, state) -> {
+            if (state.startedAt() != null) {
+                events.add(new StepEvent(step, StepStatus.RUNNING, state.startedAt()));
+            }
+            if (state.finishedAt() != null) {
+                events.add(new StepEvent(step, state.status(), state.finishedAt()));
+            }
+        });
+        events.sort(Comparator.comparing(StepEvent::timestamp));
+
+        List<Map<String, Object>> logs = new ArrayList<>();
+        for (StepEvent event : events) {
+            Map<String, Object> log = new LinkedHashMap<>();
+            log.put("timestamp", event.timestamp().toString());
+            log.put("level", event.status() == StepStatus.FAILED ? "ERROR" : "INFO");
+            log.put("message", String.format("%s: %s", event.step(), event.status()));
+            log.put("phase", event.step().name());
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    private record StepEvent(ProvisionStep step, StepStatus status, Instant timestamp) {}
+}
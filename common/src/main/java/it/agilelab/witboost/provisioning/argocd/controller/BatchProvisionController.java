@@ -0,0 +1,67 @@
+package it.agilelab.witboost.provisioning.argocd.controller;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.service.ArgocdProvisionService;
+import jakarta.validation.Valid;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Provisions many ArgoCD applications with a single request.
+ * <p>
+ * The project and repository setup is shared by all the applications of the batch, see
+ * {@link ArgocdProvisionService#provisionBatch(List)}. The response reports the outcome of every
+ * application, in the same order as the request. A batch larger than
+ * {@link ArgocdProvisionService#getMaxBatchSize()} is rejected with {@code 400 Bad Request}.
+ * </p>
+ */
+@RestController
+public class BatchProvisionController {
+
+    private final ArgocdProvisionService argocdProvisionService;
+
+    public BatchProvisionController(ArgocdProvisionService argocdProvisionService) {
+        this.argocdProvisionService = argocdProvisionService;
+    }
+
+    @PostMapping("/v1/argocd/provision/batch")
+    public ResponseEntity<List<Map<String, Object>>> provisionBatch(
+            @RequestBody List<@Valid ArgoCDApplicationSpecific> applications) {
+        if (applications.size() > argocdProvisionService.getMaxBatchSize()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    String.format(
+                            "A batch can provision at most %d applications, %d were requested",
+                            argocdProvisionService.getMaxBatchSize(), applications.size()));
+        }
+        List<Either<FailedOperation, ProvisionInfo>> results = argocdProvisionService.provisionBatch(applications);
+
+        List<Map<String, Object>> response = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            response.add(toResponse(applications.get(i), results.get(i)));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    private Map<String, Object> toResponse(
+            ArgoCDApplicationSpecific application, Either<FailedOperation, ProvisionInfo> result) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("name", application.getName());
+        response.put("project", application.getProject());
+        response.put("status", result.isRight() ? "COMPLETED" : "FAILED");
+        result.peek(info -> response.put("result", info.getPublicInfo()))
+                .peekLeft(failure -> response.put("error", failure.message()));
+        return response;
+    }
+}
@@ -0,0 +1,15 @@
+package it.agilelab.witboost.provisioning.argocd.model.task;
+
+/**
+ * Receives the progress of the single steps of a provisioning operation.
+ * <p>
+ * Implementations must be thread-safe, as independent steps may be reported from different threads.
+ * </p>
+ */
+@FunctionalInterface
+public interface ProvisionProgress {
+
+    ProvisionProgress NOOP = (step, status) -> {};
+
+    void update(ProvisionStep step, StepStatus status);
+}
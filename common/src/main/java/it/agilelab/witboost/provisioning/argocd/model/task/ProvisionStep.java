@@ -0,0 +1,10 @@
+package it.agilelab.witboost.provisioning.argocd.model.task;
+
+/** The ArgoCD steps executed by a provisioning or unprovisioning operation. */
+public enum ProvisionStep {
+    PROJECT,
+    REPOSITORY,
+    APPLICATION,
+    SYNC,
+    DELETE
+}
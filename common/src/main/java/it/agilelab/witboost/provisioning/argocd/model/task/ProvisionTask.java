@@ -0,0 +1,144 @@
+package it.agilelab.witboost.provisioning.argocd.model.task;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The state of an asynchronous provisioning or unprovisioning operation.
+ * <p>
+ * A task is created in {@link TaskStatus#RUNNING} state with all its steps {@link StepStatus#PENDING},
+ * and it is updated by the worker thread through the {@link ProvisionProgress} interface until it is
+ * either completed or failed. The time at which every step starts and finishes is recorded as it happens.
+ * </p>
+ */
+@Getter
+public class ProvisionTask implements ProvisionProgress {
+
+    private final String token;
+    private final String operation;
+    private final String componentName;
+    private final Instant createdAt;
+    private final Map<ProvisionStep, StepState> steps;
+
+    @Getter(AccessLevel.NONE)
+    private final Clock clock;
+
+    @Getter(AccessLevel.NONE)
+    private final Consumer<ProvisionTask> onFinished;
+
+    private volatile TaskStatus status = TaskStatus.RUNNING;
+    private volatile Instant completedAt;
+    private volatile ProvisionInfo result;
+    private volatile FailedOperation failure;
+
+    /**
+     * @param token The token identifying the task.
+     * @param operation The operation performed by the task (e.g. provision, unprovision).
+     * @param componentName The name of the component the task operates on.
+     * @param steps The steps the task will go through.
+     * @param clock The clock used to timestamp the task and its steps.
+     * @param onFinished Notified once, when the task completes or fails.
+     */
+    public ProvisionTask(
+            String token,
+            String operation,
+            String componentName,
+            Collection<ProvisionStep> steps,
+            Clock clock,
+            Consumer<ProvisionTask> onFinished) {
+        this.token = token;
+        this.operation = operation;
+        this.componentName = componentName;
+        this.clock = clock;
+        this.onFinished = onFinished;
+        this.createdAt = clock.instant();
+        EnumMap<ProvisionStep, StepState> initialSteps = new EnumMap<>(ProvisionStep.class);
+        steps.forEach(step -> initialSteps.put(step, new StepState(StepStatus.PENDING, null, null)));
+        this.steps = Collections.synchronizedMap(initialSteps);
+    }
+
+    @Override
+    public void update(ProvisionStep step, StepStatus stepStatus) {
+        Instant now = clock.instant();
+        steps.compute(step, (key, current) -> {
+            Instant startedAt = current != null ? current.startedAt() : null;
+            return switch (stepStatus) {
+                case PENDING -> new StepState(stepStatus, null, null);
+                case RUNNING -> new StepState(stepStatus, now, null);
+                case COMPLETED, FAILED, SKIPPED -> new StepState(stepStatus, startedAt, now);
+            };
+        });
+    }
+
+    /**
+     * Returns a point-in-time copy of the steps and their status.
+     *
+     * @return An ordered copy of the steps map.
+     */
+    public Map<ProvisionStep, StepStatus> getSteps() {
+        EnumMap<ProvisionStep, StepStatus> copy = new EnumMap<>(ProvisionStep.class);
+        synchronized (steps) {
+            steps.forEach((step, state) -> copy.put(step, state.status()));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a point-in-time copy of the steps with their status and timestamps.
+     *
+     * @return An ordered copy of the steps map.
+     */
+    public Map<ProvisionStep, StepState> getStepStates() {
+        synchronized (steps) {
+            return new EnumMap<>(steps);
+        }
+    }
+
+    public void complete(ProvisionInfo provisionInfo) {
+        this.result = provisionInfo;
+        finish(TaskStatus.COMPLETED);
+    }
+
+    public void fail(FailedOperation failedOperation) {
+        this.failure = failedOperation;
+        finish(TaskStatus.FAILED);
+    }
+
+    private void finish(TaskStatus finalStatus) {
+        this.completedAt = clock.instant();
+        this.status = finalStatus;
+        onFinished.accept(this);
+    }
+
+    public Optional<ProvisionInfo> getResult() {
+        return Optional.ofNullable(result);
+    }
+
+    public Optional<FailedOperation> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+
+    public Optional<Instant> getCompletedAt() {
+        return Optional.ofNullable(completedAt);
+    }
+
+    public boolean isFinished() {
+        return status != TaskStatus.RUNNING;
+    }
+
+    /**
+     * The status of a step with the time it started and finished, {@code null} when it has not happened yet.
+     * A skipped step finishes without starting.
+     */
+    public record StepState(StepStatus status, Instant startedAt, Instant finishedAt) {}
+}
@@ -0,0 +1,9 @@
+package it.agilelab.witboost.provisioning.argocd.model.task;
+
+public enum StepStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    SKIPPED
+}
@@ -0,0 +1,7 @@
+package it.agilelab.witboost.provisioning.argocd.model.task;
+
+public enum TaskStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -1,68 +1,357 @@
 package it.agilelab.witboost.provisioning.argocd.service;
 
+import static java.util.stream.Collectors.toList;
+
 import com.witboost.provisioning.framework.service.ProvisionService;
 import com.witboost.provisioning.model.Specific;
 import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
 import com.witboost.provisioning.model.request.ProvisionOperationRequest;
 import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.client.ApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.NonBlockingManagers;
 import it.agilelab.witboost.provisioning.argocd.client.ProjectManager;
 import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
 import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1Repository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
-@Service
 public class ArgocdProvisionService implements ProvisionService {
 
     private final Logger logger = LoggerFactory.getLogger(ArgocdProvisionService.class);
     private final RepoManager repoManager;
     private final ApplicationManager applicationManager;
     private final ProjectManager projectManager;
+    private final Executor stageExecutor;
+    private final int batchParallelism;
+    private final int maxBatchSize;
+    private final Validator validator;
+    private final NonBlockingManagers nonBlocking;
+    private final ProvisionMetrics provisionMetrics;
+    private final InFlightOperations<List<String>, Either<FailedOperation, ProvisionInfo>> provisionsInFlight;
 
+    /**
+     * Creates the service running the independent project and repository setup concurrently.
+     *
+     * @param repoManager The manager of the ArgoCD repositories.
+     * @param applicationManager The manager of the ArgoCD applications.
+     * @param projectManager The manager of the ArgoCD projects.
+     * @param stageExecutor The executor on which the project and repository setup are run.
+     * @param batchParallelism The maximum number of applications created concurrently by a batch provisioning.
+     * @param maxBatchSize The maximum number of applications of a batch provisioning.
+     * @param validator The validator of the applications of a batch provisioning.
+     * @param nonBlocking The managers of the non-blocking client backing {@link #provisionAsync} and
+     *                    {@link #unprovisionAsync}, or {@code null} if it is not enabled.
+     * @param meterRegistry The registry where the {@link ProvisionMetrics} are registered.
+     */
     public ArgocdProvisionService(
-            RepoManager repoManager, ApplicationManager applicationManager, ProjectManager projectManager) {
+            RepoManager repoManager,
+            ApplicationManager applicationManager,
+            ProjectManager projectManager,
+            Executor stageExecutor,
+            int batchParallelism,
+            int maxBatchSize,
+            Validator validator,
+            NonBlockingManagers nonBlocking,
+            MeterRegistry meterRegistry) {
         this.repoManager = repoManager;
         this.applicationManager = applicationManager;
         this.projectManager = projectManager;
+        this.stageExecutor = stageExecutor;
+        this.batchParallelism = batchParallelism;
+        this.maxBatchSize = maxBatchSize;
+        this.validator = validator;
+        this.nonBlocking = nonBlocking;
+        this.provisionMetrics = new ProvisionMetrics(meterRegistry);
+        this.provisionsInFlight = new InFlightOperations<>(provisionMetrics.deduplicated("provision"));
+    }
+
+    /** The maximum number of applications accepted by {@link #provisionBatch}. */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Whether {@link #provisionAsync} and {@link #unprovisionAsync} are backed by the non-blocking client. */
+    public boolean isNonBlocking() {
+        return nonBlocking != null;
     }
 
     @Override
     public Either<FailedOperation, ProvisionInfo> provision(
             ProvisionOperationRequest<?, ? extends Specific> operationRequest) {
+        return provision(operationRequest, ProvisionProgress.NOOP);
+    }
 
+    /**
+     * Provisions the component, reporting the progress of every step to the given {@link ProvisionProgress}.
+     * <p>
+     * If the same application is already being provisioned, e.g. because the request was retried while the first
+     * attempt was still running, no ArgoCD call is made: the request waits for the running provisioning and
+     * returns its outcome.
+     * </p>
+     *
+     * @param operationRequest The provisioning request.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return An {@link Either} containing the {@link ProvisionInfo} on success or a {@link FailedOperation} on failure.
+     */
+    public Either<FailedOperation, ProvisionInfo> provision(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+        return await(provisionsInFlight.run(
+                applicationKey(getArgoCDSpecific(operationRequest)),
+                progress,
+                shared -> CompletableFuture.completedFuture(provisionMetrics.record(
+                        "provision", shared, metered -> provisionComponent(operationRequest, metered)))));
+    }
+
+    private Either<FailedOperation, ProvisionInfo> provisionComponent(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
         ArgoCDApplicationSpecific appSpecific = getArgoCDSpecific(operationRequest);
+        return provisionApplication(
+                appSpecific,
+                operationRequest.getComponent().get().getName(),
+                progress,
+                metered -> setUp(appSpecific, metered));
+    }
 
-        var project = projectManager.createOrUpdateProject(
-                appSpecific.getProject(), appSpecific.getDestination(), appSpecific.getSource());
-        if (project.isLeft()) return Either.left(project.getLeft());
+    /**
+     * Provisions an application once its project and repository are set up.
+     *
+     * @param appSpecific The application to provision.
+     * @param componentName The name of the component, for logging.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @param setup Sets up the project and the repository of the application, reporting to the given listener.
+     */
+    private Either<FailedOperation, ProvisionInfo> provisionApplication(
+            ArgoCDApplicationSpecific appSpecific,
+            String componentName,
+            ProvisionProgress progress,
+            Function<ProvisionProgress, Either<FailedOperation, Void>> setup) {
 
-        var repo = repoManager.createOrUpdateRepository(appSpecific.getSource().getRepoURL(), appSpecific.getProject());
-        if (repo.isLeft()) return Either.left(repo.getLeft());
+        var setupResult = setup.apply(progress);
+        if (setupResult.isLeft()) return Either.left(setupResult.getLeft());
 
-        var application = applicationManager.createOrUpdateApplication(appSpecific);
+        var application = applicationManager.createOrUpdateApplication(appSpecific, progress);
         if (application.isLeft()) return Either.left(application.getLeft());
 
+        ProvisionInfo provisionInfo = buildProvisionInfo(application.get());
+
+        logger.info(String.format("Provisioning of %s completed successfully", componentName));
+        return Either.right(provisionInfo);
+    }
+
+    private Either<FailedOperation, Void> setUp(ArgoCDApplicationSpecific appSpecific, ProvisionProgress progress) {
+        // Project and repository do not depend on each other, so they are set up concurrently
+        var project = runStage(
+                ProvisionStep.PROJECT,
+                progress,
+                () -> projectManager.createOrUpdateProject(
+                        appSpecific.getProject(), appSpecific.getDestination(), appSpecific.getSource()));
+        var repo = runStage(
+                ProvisionStep.REPOSITORY,
+                progress,
+                () -> repoManager.createOrUpdateRepository(
+                        appSpecific.getSource().getRepoURL(), appSpecific.getProject()));
+
+        return mergeFailures(List.of(project.join(), repo.join()));
+    }
+
+    /**
+     * Provisions the component without blocking the caller's thread.
+     * <p>
+     * Project and repository are set up concurrently, and the application is created once both succeeded. No
+     * thread is held while waiting for ArgoCD: the returned future is completed by the threads of the
+     * non-blocking client. If the non-blocking client is not enabled, the provisioning runs on the caller's
+     * thread and the returned future is already completed. Like {@link #provision}, a request for an application
+     * already being provisioned attaches to the running provisioning.
+     * </p>
+     *
+     * @param operationRequest The provisioning request.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return A future completed with the {@link ProvisionInfo} on success or a {@link FailedOperation} on failure.
+     */
+    public CompletableFuture<Either<FailedOperation, ProvisionInfo>> provisionAsync(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+        if (nonBlocking == null) return CompletableFuture.completedFuture(provision(operationRequest, progress));
+        return provisionsInFlight.run(
+                applicationKey(getArgoCDSpecific(operationRequest)),
+                progress,
+                shared -> provisionMetrics.recordAsync(
+                        "provision", shared, metered -> provisionComponentAsync(operationRequest, metered)));
+    }
+
+    private CompletableFuture<Either<FailedOperation, ProvisionInfo>> provisionComponentAsync(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+
+        ArgoCDApplicationSpecific appSpecific = getArgoCDSpecific(operationRequest);
+
+        var project = trackStage(ProvisionStep.PROJECT, progress, () -> nonBlocking
+                .projectManager()
+                .createOrUpdateProject(
+                        appSpecific.getProject(), appSpecific.getDestination(), appSpecific.getSource()));
+        var repo = trackStage(ProvisionStep.REPOSITORY, progress, () -> nonBlocking
+                .repoManager()
+                .createOrUpdateRepository(appSpecific.getSource().getRepoURL(), appSpecific.getProject()));
+
+        return project.thenCombine(repo, (p, r) -> mergeFailures(List.of(p, r)))
+                .<Either<FailedOperation, ProvisionInfo>>thenCompose(setup -> setup.isLeft()
+                        ? CompletableFuture.completedFuture(Either.left(setup.getLeft()))
+                        : nonBlocking
+                                .applicationManager()
+                                .createOrUpdateApplication(appSpecific, progress)
+                                .thenApply(application -> application.map(ArgocdProvisionService::buildProvisionInfo)))
+                .thenApply(result -> {
+                    if (result.isRight()) {
+                        logger.info(String.format(
+                                "Provisioning of %s completed successfully",
+                                operationRequest.getComponent().get().getName()));
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Provisions many applications at once.
+     * <p>
+     * Every application is validated and provisioned through the same path as a single one by {@link #provision}.
+     * Only the project and repository setup is shared across the batch: every distinct
+     * project is created or updated once with all the destinations and source repositories of its applications,
+     * and every distinct repository is registered once per project. The applications are then created with at most
+     * {@code batchParallelism} of them in flight, so that the number of ArgoCD calls for the setup grows with
+     * the number of distinct projects and repositories rather than with the number of applications.
+     * </p>
+     *
+     * @param applications The applications to provision, at most {@link #getMaxBatchSize()}.
+     * @return The outcome of every application, in the same order as the input list.
+     * @throws IllegalArgumentException if the batch has more than {@link #getMaxBatchSize()} applications.
+     */
+    public List<Either<FailedOperation, ProvisionInfo>> provisionBatch(List<ArgoCDApplicationSpecific> applications) {
+        if (applications.size() > maxBatchSize) {
+            throw new IllegalArgumentException(String.format(
+                    "A batch can provision at most %d applications, %d were requested",
+                    maxBatchSize, applications.size()));
+        }
+
+        List<Either<FailedOperation, Void>> validations =
+                applications.stream().map(this::validate).toList();
+        List<ArgoCDApplicationSpecific> valid = new ArrayList<>();
+        for (int i = 0; i < applications.size(); i++) {
+            if (validations.get(i).isRight()) valid.add(applications.get(i));
+        }
+
+        Map<String, CompletableFuture<Either<FailedOperation, V1alpha1AppProject>>> projects = new HashMap<>();
+        valid.stream()
+                .collect(Collectors.groupingBy(ArgoCDApplicationSpecific::getProject, LinkedHashMap::new, toList()))
+                .forEach((project, projectApplications) -> projects.put(
+                        project,
+                        runStage(
+                                ProvisionStep.PROJECT,
+                                ProvisionProgress.NOOP,
+                                () -> projectManager.createOrUpdateProject(project, projectApplications))));
+
+        Map<List<String>, CompletableFuture<Either<FailedOperation, V1alpha1Repository>>> repos = new HashMap<>();
+        valid.forEach(application -> repos.computeIfAbsent(
+                repositoryKey(application),
+                key -> runStage(
+                        ProvisionStep.REPOSITORY,
+                        ProvisionProgress.NOOP,
+                        () -> repoManager.createOrUpdateRepository(
+                                application.getSource().getRepoURL(), application.getProject()))));
+
+        Semaphore permits = new Semaphore(batchParallelism);
+        List<CompletableFuture<Either<FailedOperation, ProvisionInfo>>> results = new ArrayList<>();
+        for (int i = 0; i < applications.size(); i++) {
+            ArgoCDApplicationSpecific application = applications.get(i);
+            if (validations.get(i).isLeft()) {
+                results.add(CompletableFuture.completedFuture(
+                        Either.left(validations.get(i).getLeft())));
+                continue;
+            }
+            var setup = mergeFailures(List.of(
+                    projects.get(application.getProject()).join(),
+                    repos.get(repositoryKey(application)).join()));
+
+            permits.acquireUninterruptibly();
+            results.add(runStage(
+                            ProvisionStep.APPLICATION,
+                            ProvisionProgress.NOOP,
+                            () -> provisionApplication(
+                                    application, application.getName(), ProvisionProgress.NOOP, metered -> setup))
+                    .whenComplete((result, e) -> permits.release()));
+        }
+
+        List<Either<FailedOperation, ProvisionInfo>> outcomes =
+                results.stream().map(CompletableFuture::join).toList();
+        logger.info(String.format(
+                "Batch provisioning of %d applications completed: %d succeeded, %d failed",
+                outcomes.size(),
+                outcomes.stream().filter(Either::isRight).count(),
+                outcomes.stream().filter(Either::isLeft).count()));
+        return outcomes;
+    }
+
+    /** Validates an application of a batch provisioning, as the framework does for a single provisioning. */
+    private Either<FailedOperation, Void> validate(ArgoCDApplicationSpecific application) {
+        Set<ConstraintViolation<ArgoCDApplicationSpecific>> violations =
+                application == null ? Set.of() : validator.validate(application);
+        if (application != null && violations.isEmpty()) return Either.right(null);
+
+        String error = application == null
+                ? "Invalid ArgoCD application: the application is missing"
+                : String.format(
+                        "Invalid ArgoCD application %s: %s",
+                        application.getName(),
+                        violations.stream()
+                                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                                .sorted()
+                                .collect(Collectors.joining(", ")));
+        logger.error(error);
+        return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+    }
+
+    /** Builds the information returned to Witboost about a provisioned application. */
+    static ProvisionInfo buildProvisionInfo(V1alpha1Application application) {
         var info = Map.of(
                 "name",
                 Map.of(
                         "type", "string",
                         "label", "Application name",
-                        "value", application.get().getMetadata().getName()),
+                        "value", application.getMetadata().getName()),
                 "project",
                 Map.of(
                         "type", "string",
                         "label", "Application project",
-                        "value", application.get().getSpec().getProject()),
+                        "value", application.getSpec().getProject()),
                 "repository",
                 Map.of(
                         "type", "string",
                         "label", "Application repository",
-                        "value", application.get().getSpec().getSource().getRepoURL()),
+                        "value", application.getSpec().getSource().getRepoURL()),
                 "health status",
                 Map.of(
                         "type",
@@ -70,15 +359,10 @@ public class ArgocdProvisionService implements ProvisionService {
                         "label",
                         "Application Health Status",
                         "value",
-                        application.get().getStatus() != null
-                                        && application.get().getStatus().getHealth() != null
-                                        && application
-                                                        .get()
-                                                        .getStatus()
-                                                        .getHealth()
-                                                        .getStatus()
-                                                != null
-                                ? application.get().getStatus().getHealth().getStatus()
+                        application.getStatus() != null
+                                        && application.getStatus().getHealth() != null
+                                        && application.getStatus().getHealth().getStatus() != null
+                                ? application.getStatus().getHealth().getStatus()
                                 : "unknown"),
                 "sync status",
                 Map.of(
@@ -87,37 +371,87 @@ public class ArgocdProvisionService implements ProvisionService {
                         "label",
                         "Application Sync Status",
                         "value",
-                        application.get().getStatus() != null
-                                        && application.get().getStatus().getHealth() != null
-                                        && application
-                                                        .get()
-                                                        .getStatus()
-                                                        .getSync()
-                                                        .getStatus()
-                                                != null
-                                ? application.get().getStatus().getSync().getStatus()
+                        application.getStatus() != null
+                                        && application.getStatus().getHealth() != null
+                                        && application.getStatus().getSync().getStatus() != null
+                                ? application.getStatus().getSync().getStatus()
                                 : "unknown"));
 
-        ProvisionInfo provisionInfo = ProvisionInfo.builder()
+        return ProvisionInfo.builder()
                 .privateInfo(Optional.of(info))
                 .publicInfo(Optional.of(info))
                 .build();
-
-        logger.info(String.format(
-                "Provisioning of %s completed successfully",
-                operationRequest.getComponent().get().getName()));
-        return Either.right(provisionInfo);
     }
 
     @Override
     public Either<FailedOperation, ProvisionInfo> unprovision(
             ProvisionOperationRequest<?, ? extends Specific> operationRequest) {
+        return unprovision(operationRequest, ProvisionProgress.NOOP);
+    }
+
+    /**
+     * Unprovisions the component, reporting the progress of the deletion to the given {@link ProvisionProgress}.
+     *
+     * @param operationRequest The unprovisioning request.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return An {@link Either} containing the {@link ProvisionInfo} on success or a {@link FailedOperation} on failure.
+     */
+    public Either<FailedOperation, ProvisionInfo> unprovision(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+        return provisionMetrics.record(
+                "unprovision", progress, metered -> unprovisionComponent(operationRequest, metered));
+    }
+
+    private Either<FailedOperation, ProvisionInfo> unprovisionComponent(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
 
         var appSpecific = getArgoCDSpecific(operationRequest);
 
+        progress.update(ProvisionStep.DELETE, StepStatus.RUNNING);
         var deletedApp = applicationManager.deleteApplication(appSpecific.getName(), appSpecific.getProject());
+        progress.update(ProvisionStep.DELETE, deletedApp.isLeft() ? StepStatus.FAILED : StepStatus.COMPLETED);
         if (deletedApp.isLeft()) return Either.left(deletedApp.getLeft());
 
+        logger.info(String.format(
+                "Unprovisioning of %s completed successfully",
+                operationRequest.getComponent().get().getName()));
+
+        return Either.right(buildUnprovisionInfo(appSpecific));
+    }
+
+    /**
+     * Unprovisions the component without blocking the caller's thread. If the non-blocking client is not
+     * enabled, the unprovisioning runs on the caller's thread and the returned future is already completed.
+     *
+     * @param operationRequest The unprovisioning request.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @return A future completed with the {@link ProvisionInfo} on success or a {@link FailedOperation} on failure.
+     */
+    public CompletableFuture<Either<FailedOperation, ProvisionInfo>> unprovisionAsync(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+        if (nonBlocking == null) return CompletableFuture.completedFuture(unprovision(operationRequest, progress));
+        return provisionMetrics.recordAsync(
+                "unprovision", progress, metered -> unprovisionComponentAsync(operationRequest, metered));
+    }
+
+    private CompletableFuture<Either<FailedOperation, ProvisionInfo>> unprovisionComponentAsync(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest, ProvisionProgress progress) {
+
+        var appSpecific = getArgoCDSpecific(operationRequest);
+
+        return trackStage(ProvisionStep.DELETE, progress, () -> nonBlocking
+                        .applicationManager()
+                        .deleteApplication(appSpecific.getName(), appSpecific.getProject()))
+                .<Either<FailedOperation, ProvisionInfo>>thenApply(deletedApp -> {
+                    if (deletedApp.isLeft()) return Either.left(deletedApp.getLeft());
+                    logger.info(String.format(
+                            "Unprovisioning of %s completed successfully",
+                            operationRequest.getComponent().get().getName()));
+                    return Either.right(buildUnprovisionInfo(appSpecific));
+                });
+    }
+
+    private ProvisionInfo buildUnprovisionInfo(ArgoCDApplicationSpecific appSpecific) {
         var info = Map.of(
                 "result",
                 Map.of(
@@ -128,16 +462,91 @@ public class ArgocdProvisionService implements ProvisionService {
                                         "Application: %s successfully deleted. Project: %s",
                                         appSpecific.getName(), appSpecific.getProject())));
 
-        ProvisionInfo provisionInfo = ProvisionInfo.builder()
+        return ProvisionInfo.builder()
                 .privateInfo(Optional.of(info))
                 .publicInfo(Optional.of(info))
                 .build();
+    }
 
-        logger.info(String.format(
-                "Unprovisioning of %s completed successfully",
-                operationRequest.getComponent().get().getName()));
+    /** Stops the stage executor, if it is owned by this service. */
+    public void shutdown() {
+        if (stageExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
 
-        return Either.right(provisionInfo);
+    private <T> CompletableFuture<Either<FailedOperation, T>> runStage(
+            ProvisionStep step, ProvisionProgress progress, Supplier<Either<FailedOperation, T>> stage) {
+        progress.update(step, StepStatus.RUNNING);
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    Either<FailedOperation, T> result;
+                    try {
+                        result = stage.get();
+                    } catch (Exception e) {
+                        String error = String.format(
+                                "An unexpected error occurred during the %s step. Details: %s",
+                                step.name().toLowerCase(), e.getMessage());
+                        logger.error(error, e);
+                        result = Either.left(
+                                new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
+                    }
+                    progress.update(step, result.isLeft() ? StepStatus.FAILED : StepStatus.COMPLETED);
+                    return result;
+                },
+                stageExecutor);
+    }
+
+    private <T> CompletableFuture<Either<FailedOperation, T>> trackStage(
+            ProvisionStep step,
+            ProvisionProgress progress,
+            Supplier<CompletableFuture<Either<FailedOperation, T>>> stage) {
+        progress.update(step, StepStatus.RUNNING);
+        return stage.get().thenApply(result -> {
+            progress.update(step, result.isLeft() ? StepStatus.FAILED : StepStatus.COMPLETED);
+            return result;
+        });
+    }
+
+    /**
+     * Merges the outcome of concurrent stages.
+     * <p>
+     * A single failure is returned as is, while multiple failures are merged into one {@link FailedOperation}
+     * listing the problems of every failed stage.
+     * </p>
+     */
+    private Either<FailedOperation, Void> mergeFailures(List<Either<FailedOperation, ?>> results) {
+        List<FailedOperation> failures =
+                results.stream().filter(Either::isLeft).map(Either::getLeft).toList();
+
+        if (failures.isEmpty()) return Either.right(null);
+        if (failures.size() == 1) return Either.left(failures.get(0));
+
+        String error = failures.stream().map(FailedOperation::message).collect(Collectors.joining("; "));
+        List<Problem> problems = failures.stream()
+                .flatMap(failure -> failure.problems().stream())
+                .toList();
+        logger.error(error);
+        return Either.left(new FailedOperation(error, problems));
+    }
+
+    private static List<String> repositoryKey(ArgoCDApplicationSpecific application) {
+        return List.of(application.getSource().getRepoURL(), application.getProject());
+    }
+
+    private static List<String> applicationKey(ArgoCDApplicationSpecific application) {
+        return List.of(application.getName(), application.getProject());
+    }
+
+    /** Waits for an operation, possibly run by another request, rethrowing the unexpected errors it raised as is. */
+    private static <T> T await(CompletableFuture<T> operation) {
+        try {
+            return operation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
     }
 
     private ArgoCDApplicationSpecific getArgoCDSpecific(
@@ -0,0 +1,213 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import com.witboost.provisioning.framework.service.ProvisionService;
+import com.witboost.provisioning.model.Specific;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.request.ProvisionOperationRequest;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * A {@link ProvisionService} that runs the ArgoCD operations on a bounded executor.
+ * <p>
+ * Provisioning and unprovisioning requests are registered in the {@link ProvisionTaskRegistry} and
+ * answered immediately with the token of the task. The progress of every step and the final outcome
+ * can then be retrieved through {@link #getTask(String)}.
+ * </p>
+ * <p>
+ * The token is also stored in the {@value #TOKEN_ATTRIBUTE} attribute of the current HTTP request, so that the
+ * {@link it.agilelab.witboost.provisioning.argocd.controller.AsyncProvisionFilter} answers {@code 202 Accepted}
+ * with the token instead of the completed status the framework would report, and serves the status of the task
+ * from {@code GET /v1/provision/{token}/status}.
+ * </p>
+ * <p>
+ * When the {@link ArgocdProvisionService} is backed by the non-blocking ArgoCD client, the tasks do not occupy
+ * a thread of the executor while waiting for ArgoCD: they are only bounded by the maximum number of tasks in
+ * flight.
+ * </p>
+ */
+public class AsyncArgocdProvisionService implements ProvisionService {
+
+    public static final String STATUS_PATH = "/v1/provision/%s/status";
+    public static final String TOKEN_ATTRIBUTE = "argocd.provision.token";
+
+    private static final List<ProvisionStep> PROVISION_STEPS =
+            List.of(ProvisionStep.PROJECT, ProvisionStep.REPOSITORY, ProvisionStep.APPLICATION, ProvisionStep.SYNC);
+    private static final List<ProvisionStep> UNPROVISION_STEPS = List.of(ProvisionStep.DELETE);
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncArgocdProvisionService.class);
+    private final ArgocdProvisionService argocdProvisionService;
+    private final ProvisionTaskRegistry taskRegistry;
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+
+    public AsyncArgocdProvisionService(
+            ArgocdProvisionService argocdProvisionService,
+            ProvisionTaskRegistry taskRegistry,
+            ExecutorService executor) {
+        this(argocdProvisionService, taskRegistry, executor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the service.
+     *
+     * @param argocdProvisionService The service performing the ArgoCD operations.
+     * @param taskRegistry The registry tracking the submitted tasks.
+     * @param executor The executor running the tasks when the non-blocking client is not enabled.
+     * @param maxInFlight The maximum number of tasks running or waiting at the same time, further requests are
+     *                    rejected.
+     */
+    public AsyncArgocdProvisionService(
+            ArgocdProvisionService argocdProvisionService,
+            ProvisionTaskRegistry taskRegistry,
+            ExecutorService executor,
+            int maxInFlight) {
+        this.argocdProvisionService = argocdProvisionService;
+        this.taskRegistry = taskRegistry;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public Either<FailedOperation, ProvisionInfo> provision(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest) {
+        return submit(
+                "provision",
+                operationRequest,
+                PROVISION_STEPS,
+                progress -> argocdProvisionService.isNonBlocking()
+                        ? argocdProvisionService.provisionAsync(operationRequest, progress)
+                        : CompletableFuture.supplyAsync(
+                                () -> argocdProvisionService.provision(operationRequest, progress), executor));
+    }
+
+    @Override
+    public Either<FailedOperation, ProvisionInfo> unprovision(
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest) {
+        return submit(
+                "unprovision",
+                operationRequest,
+                UNPROVISION_STEPS,
+                progress -> argocdProvisionService.isNonBlocking()
+                        ? argocdProvisionService.unprovisionAsync(operationRequest, progress)
+                        : CompletableFuture.supplyAsync(
+                                () -> argocdProvisionService.unprovision(operationRequest, progress), executor));
+    }
+
+    /**
+     * Retrieves an asynchronous task by its token.
+     *
+     * @param token The token returned when the operation was submitted.
+     * @return An {@link Either} containing the {@link ProvisionTask} or a {@link FailedOperation} if no
+     *         task is registered with the given token (never existed or already evicted).
+     */
+    public Either<FailedOperation, ProvisionTask> getTask(String token) {
+        return taskRegistry
+                .get(token)
+                .<Either<FailedOperation, ProvisionTask>>map(Either::right)
+                .orElseGet(() -> {
+                    String error = String.format("No provisioning task found for token %s", token);
+                    logger.warn(error);
+                    return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error))));
+                });
+    }
+
+    /** Stops accepting new tasks; the running ones are left to complete. */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private Either<FailedOperation, ProvisionInfo> submit(
+            String operation,
+            ProvisionOperationRequest<?, ? extends Specific> operationRequest,
+            List<ProvisionStep> steps,
+            Function<ProvisionProgress, CompletableFuture<Either<FailedOperation, ProvisionInfo>>> work) {
+
+        String componentName = operationRequest.getComponent().get().getName();
+        ProvisionTask task = null;
+        try {
+            task = taskRegistry.register(operation, componentName, steps);
+            if (!inFlight.tryAcquire()) throw new RejectedExecutionException("maximum number of tasks in flight");
+            ProvisionTask submitted = task;
+            CompletableFuture<Either<FailedOperation, ProvisionInfo>> result;
+            try {
+                result = work.apply(submitted);
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            result.whenComplete((outcome, failure) -> {
+                inFlight.release();
+                complete(submitted, outcome, failure);
+            });
+        } catch (RejectedExecutionException e) {
+            if (task != null) taskRegistry.remove(task.getToken());
+            String error = String.format(
+                    "Too many operations in progress, the %s of %s has been rejected. Please try again later.",
+                    operation, componentName);
+            logger.error(error, e);
+            return Either.left(new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
+        }
+
+        logger.info("Submitted {} of {} with token {}", operation, componentName, task.getToken());
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(TOKEN_ATTRIBUTE, task.getToken(), RequestAttributes.SCOPE_REQUEST);
+        }
+
+        var info = Map.of(
+                "token",
+                Map.of(
+                        "type", "string",
+                        "label", "Task token",
+                        "value", task.getToken()),
+                "status",
+                Map.of(
+                        "type", "string",
+                        "label", "Task status URL",
+                        "value", String.format(STATUS_PATH, task.getToken())));
+
+        return Either.right(ProvisionInfo.builder()
+                .privateInfo(Optional.of(info))
+                .publicInfo(Optional.of(info))
+                .build());
+    }
+
+    private void complete(ProvisionTask task, Either<FailedOperation, ProvisionInfo> outcome, Throwable failure) {
+        if (failure == null) {
+            outcome.peek(task::complete).peekLeft(task::fail);
+        } else {
+            Throwable e =
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            String error = String.format(
+                    "An unexpected error occurred during the %s of %s. Details: %s",
+                    task.getOperation(), task.getComponentName(), e.getMessage());
+            logger.error(error, e);
+            task.fail(new FailedOperation(error, Collections.singletonList(new Problem(error, e))));
+        }
+        logger.info(
+                "Task {} ({} of {}) finished with status {}",
+                task.getToken(),
+                task.getOperation(),
+                task.getComponentName(),
+                task.getStatus());
+    }
+}
@@ -0,0 +1,101 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import io.micrometer.core.instrument.Counter;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent runs of the same operation.
+ * <p>
+ * While an operation is running for a key, a request for the same key does not run it again: it attaches to the
+ * running one and gets its outcome, and the progress of its steps is reported to the listeners of every attached
+ * request, starting from the last status of the steps already reported. Once the operation completes the key is
+ * released, so that a later request runs the operation again. Attached requests are counted by the given counter.
+ * </p>
+ *
+ * @param <K> The type of the keys identifying the operations.
+ * @param <T> The type of the outcome of the operations.
+ */
+class InFlightOperations<K, T> {
+
+    private final Map<K, Flight<T>> flights = new ConcurrentHashMap<>();
+    private final Counter deduplicated;
+
+    InFlightOperations(Counter deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+
+    /**
+     * Runs the operation, unless it is already running for the same key.
+     *
+     * @param key The key of the operation.
+     * @param progress The listener notified when a step starts, completes or fails.
+     * @param operation The operation, receiving the listener its steps have to be reported to. It is run on the
+     *                  caller's thread.
+     * @return A future completed with the outcome of the running operation.
+     */
+    CompletableFuture<T> run(
+            K key, ProvisionProgress progress, Function<ProvisionProgress, CompletableFuture<T>> operation) {
+        Flight<T> flight = new Flight<>();
+        Flight<T> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            deduplicated.increment();
+            running.progress.attach(progress);
+            return running.result.copy();
+        }
+
+        flight.progress.attach(progress);
+        CompletableFuture<T> result;
+        try {
+            result = operation.apply(flight.progress);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((outcome, failure) -> {
+            // Released before completing, so that the requests following the outcome run the operation again
+            flights.remove(key, flight);
+            if (failure != null) {
+                flight.result.completeExceptionally(failure);
+            } else {
+                flight.result.complete(outcome);
+            }
+        });
+        return flight.result.copy();
+    }
+
+    /** The number of operations running. */
+    int size() {
+        return flights.size();
+    }
+
+    private static final class Flight<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final SharedProgress progress = new SharedProgress();
+    }
+
+    /** Forwards the progress of an operation to the listeners of all the requests attached to it. */
+    private static final class SharedProgress implements ProvisionProgress {
+
+        private final Map<ProvisionStep, StepStatus> statuses = new EnumMap<>(ProvisionStep.class);
+        private final List<ProvisionProgress> listeners = new ArrayList<>();
+
+        @Override
+        public synchronized void update(ProvisionStep step, StepStatus status) {
+            statuses.put(step, status);
+            listeners.forEach(listener -> listener.update(step, status));
+        }
+
+        private synchronized void attach(ProvisionProgress listener) {
+            statuses.forEach(listener::update);
+            listeners.add(listener);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.LongTaskTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Records the end-to-end duration of the provisioning operations and of each of their steps.
+ * <p>
+ * Operations are timed by the {@value #OPERATIONS_METRIC} timer, tagged by {@code operation}
+ * ({@code provision} or {@code unprovision}) and {@code result} ({@code success}, {@code failure}, or
+ * {@code error} if an exception escaped). Every step reported to the {@link ProvisionProgress} is timed from
+ * {@link StepStatus#RUNNING} to its final status by the {@value #STEPS_METRIC} timer, tagged by
+ * {@code operation}, {@code step} and {@code result} (the final status). Operations in flight are tracked by
+ * the {@value #ACTIVE_OPERATIONS_METRIC} long task timer. Requests attached to an identical operation already
+ * in flight, instead of running their own, are counted by the {@value #DEDUPLICATED_METRIC} counter, tagged by
+ * {@code operation}.
+ * </p>
+ */
+public class ProvisionMetrics {
+
+    public static final String OPERATIONS_METRIC = "argocd.provision.operations";
+    public static final String ACTIVE_OPERATIONS_METRIC = "argocd.provision.operations.active";
+    public static final String STEPS_METRIC = "argocd.provision.steps";
+    public static final String DEDUPLICATED_METRIC = "argocd.provision.deduplicated";
+
+    private final MeterRegistry meterRegistry;
+
+    public ProvisionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Runs an operation, recording its duration and the duration of the steps it reports.
+     *
+     * @param operation The name of the operation.
+     * @param progress The listener the steps are forwarded to.
+     * @param work The operation, receiving the listener its steps have to be reported to.
+     * @return The outcome of the operation.
+     */
+    public <T> Either<FailedOperation, T> record(
+            String operation,
+            ProvisionProgress progress,
+            Function<ProvisionProgress, Either<FailedOperation, T>> work) {
+        MeteredProgress metered = new MeteredProgress(operation, progress);
+        Either<FailedOperation, T> result = null;
+        try {
+            result = work.apply(metered);
+            return result;
+        } finally {
+            metered.finish(result);
+        }
+    }
+
+    /**
+     * Runs a non-blocking operation, recording its duration and the duration of the steps it reports once the
+     * returned future completes.
+     *
+     * @param operation The name of the operation.
+     * @param progress The listener the steps are forwarded to.
+     * @param work The operation, receiving the listener its steps have to be reported to.
+     * @return The future of the operation.
+     */
+    public <T> CompletableFuture<Either<FailedOperation, T>> recordAsync(
+            String operation,
+            ProvisionProgress progress,
+            Function<ProvisionProgress, CompletableFuture<Either<FailedOperation, T>>> work) {
+        MeteredProgress metered = new MeteredProgress(operation, progress);
+        CompletableFuture<Either<FailedOperation, T>> result;
+        try {
+            result = work.apply(metered);
+        } catch (RuntimeException e) {
+            metered.finish(null);
+            throw e;
+        }
+        return result.whenComplete((outcome, failure) -> metered.finish(outcome));
+    }
+
+    /**
+     * The counter of the requests attached to an identical operation in flight.
+     *
+     * @param operation The name of the operation.
+     * @return The counter.
+     */
+    public Counter deduplicated(String operation) {
+        return Counter.builder(DEDUPLICATED_METRIC)
+                .description("Provisioning requests attached to an identical operation in flight")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private final class MeteredProgress implements ProvisionProgress {
+
+        private final String operation;
+        private final ProvisionProgress delegate;
+        private final LongTaskTimer.Sample active;
+        private final Timer.Sample sample;
+        private final Map<ProvisionStep, Timer.Sample> runningSteps = new ConcurrentHashMap<>();
+
+        private MeteredProgress(String operation, ProvisionProgress delegate) {
+            this.operation = operation;
+            this.delegate = delegate;
+            this.active = LongTaskTimer.builder(ACTIVE_OPERATIONS_METRIC)
+                    .description("Provisioning operations in flight")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .start();
+            this.sample = Timer.start(meterRegistry);
+        }
+
+        @Override
+        public void update(ProvisionStep step, StepStatus status) {
+            if (status == StepStatus.RUNNING) {
+                runningSteps.put(step, Timer.start(meterRegistry));
+            } else {
+                Timer.Sample stepSample = runningSteps.remove(step);
+                if (stepSample != null) {
+                    stepSample.stop(Timer.builder(STEPS_METRIC)
+                            .description("Duration of the steps of the provisioning operations")
+                            .tag("operation", operation)
+                            .tag("step", step.name().toLowerCase())
+                            .tag("result", status.name().toLowerCase())
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+                }
+            }
+            delegate.update(step, status);
+        }
+
+        private void finish(Either<FailedOperation, ?> outcome) {
+            active.stop();
+            String result = outcome == null ? "error" : outcome.isLeft() ? "failure" : "success";
+            sample.stop(Timer.builder(OPERATIONS_METRIC)
+                    .description("Duration of the provisioning operations")
+                    .tag("operation", operation)
+                    .tag("result", result)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+}
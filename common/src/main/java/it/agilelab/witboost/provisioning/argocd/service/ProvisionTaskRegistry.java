@@ -0,0 +1,88 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * In-memory registry of the asynchronous provisioning tasks.
+ * <p>
+ * Finished tasks are kept for the configured time-to-live so that their outcome can be polled,
+ * then they are evicted. When the registry is full, the oldest finished tasks are evicted first.
+ * The finished tasks are queued in the order they finish, so every eviction only looks at the head
+ * of the queue. Running tasks are never evicted: when they alone fill the registry, new tasks are rejected.
+ * </p>
+ */
+public class ProvisionTaskRegistry {
+
+    private final Map<String, ProvisionTask> tasks = new ConcurrentHashMap<>();
+    private final Queue<ProvisionTask> finished = new ConcurrentLinkedQueue<>();
+    private final Duration taskTtl;
+    private final int maxTasks;
+    private final Clock clock;
+
+    public ProvisionTaskRegistry(Duration taskTtl, int maxTasks) {
+        this(taskTtl, maxTasks, Clock.systemUTC());
+    }
+
+    public ProvisionTaskRegistry(Duration taskTtl, int maxTasks, Clock clock) {
+        this.taskTtl = taskTtl;
+        this.maxTasks = maxTasks;
+        this.clock = clock;
+    }
+
+    /**
+     * Registers a new running task.
+     *
+     * @param operation The operation performed by the task (e.g. provision, unprovision).
+     * @param componentName The name of the component the task operates on.
+     * @param steps The steps the task will go through.
+     * @return The newly registered {@link ProvisionTask}, identified by a random token.
+     * @throws RejectedExecutionException If the registry is full of running tasks.
+     */
+    public synchronized ProvisionTask register(
+            String operation, String componentName, Collection<ProvisionStep> steps) {
+        evict();
+        if (tasks.size() >= maxTasks) {
+            throw new RejectedExecutionException(
+                    String.format("Task registry is full: %d tasks are running", tasks.size()));
+        }
+        ProvisionTask task =
+                new ProvisionTask(UUID.randomUUID().toString(), operation, componentName, steps, clock, finished::add);
+        tasks.put(task.getToken(), task);
+        return task;
+    }
+
+    public Optional<ProvisionTask> get(String token) {
+        return Optional.ofNullable(tasks.get(token));
+    }
+
+    public void remove(String token) {
+        tasks.remove(token);
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    /** Evicts the expired finished tasks and, if still at capacity, the oldest finished one. */
+    void evict() {
+        Instant expiration = clock.instant().minus(taskTtl);
+        ProvisionTask oldest;
+        while ((oldest = finished.peek()) != null
+                && (oldest.getCompletedAt().get().isBefore(expiration) || tasks.size() >= maxTasks)) {
+            finished.poll();
+            tasks.remove(oldest.getToken());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package it.agilelab.witboost.provisioning.argocd;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import it.agilelab.witboost.provisioning.argocd.fake.FakeArgoCd;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the native executable of the adapter against an in-memory ArgoCD, run by the {@code native} Maven profile
+ * after the executable is built.
+ * <p>
+ * Validating and provisioning a component exercises what the native image must keep for reflection: binding the
+ * descriptor to the framework models and to {@code ArgoCDApplicationSpecific}, validating it, and exchanging the
+ * generated ArgoCD models.
+ * </p>
+ */
+class NativeSmokeIT {
+
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private final Path executable = Path.of(System.getProperty("native.executable", "target/argocd-tech-adapter"));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private FakeArgoCd argoCd;
+    private Process adapter;
+    private URI baseUri;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assertTrue(Files.isExecutable(executable), "The native executable must be built first: " + executable);
+        argoCd = FakeArgoCd.start();
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        baseUri = URI.create("http://127.0.0.1:" + port);
+        List<String> command = List.of(
+                executable.toString(),
+                "--server.port=" + port,
+                "--argocd.basePath=" + argoCd.baseUrl(),
+                "--argocd.token=" + argoCd.token());
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.environment().put("ARGOCD_TOKEN", argoCd.token());
+        builder.environment().put("GIT_USERNAME", "native");
+        builder.environment().put("GIT_TOKEN", "native-token");
+        adapter = builder.start();
+        awaitStarted(adapter.getInputStream());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (adapter != null) {
+            adapter.destroy();
+            if (!adapter.waitFor(30, TimeUnit.SECONDS)) adapter.destroyForcibly();
+        }
+        if (argoCd != null) argoCd.close();
+    }
+
+    @Test
+    void testValidateAndProvision() throws Exception {
+        byte[] body = requestBody();
+
+        JsonNode validation = post("/v1/validate", body);
+        assertTrue(validation.path("valid").asBoolean(), validation.toString());
+
+        JsonNode provisioning = post("/v1/provision", body);
+        assertEquals("COMPLETED", provisioning.path("status").asText(), provisioning.toString());
+        assertTrue(argoCd.application("native-smoke-app").isPresent());
+        assertTrue(argoCd.project("default").isPresent());
+    }
+
+    private byte[] requestBody() throws Exception {
+        String descriptor;
+        try (InputStream input = getClass().getResourceAsStream("/descriptors/native-smoke.yaml")) {
+            descriptor = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("descriptorKind", "COMPONENT_DESCRIPTOR");
+        body.put("descriptor", descriptor);
+        body.put("removeData", false);
+        return objectMapper.writeValueAsBytes(body);
+    }
+
+    private JsonNode post(String path, byte[] body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readTree(response.body());
+    }
+
+    /** Waits for the startup log line, then keeps draining the output so that the adapter never blocks on it. */
+    private static void awaitStarted(InputStream output) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(output, StandardCharsets.UTF_8));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        String line;
+        while (System.nanoTime() < deadline && (line = reader.readLine()) != null) {
+            System.out.println(line);
+            if (line.contains("Started Main in")) {
+                Thread drain = new Thread(() -> reader.lines().forEach(System.out::println), "native-adapter-output");
+                drain.setDaemon(true);
+                drain.start();
+                return;
+            }
+        }
+        fail("The native executable did not start");
+    }
+}
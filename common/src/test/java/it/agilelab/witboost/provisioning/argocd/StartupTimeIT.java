@@ -0,0 +1,129 @@
+package it.agilelab.witboost.provisioning.argocd;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Measures the startup time of the packaged adapter, run by the {@code startup} Maven profile after packaging.
+ * <p>
+ * The jar is started with the default options, with lazy initialization, with the bean definitions generated
+ * ahead of time and, last, unpacked with a class data sharing archive recorded by a training run, like the Docker
+ * image does. The median time until the application is started, including the JVM startup, of every variant is
+ * written to {@code target/startup-time.json}, to track the gain across releases.
+ * </p>
+ */
+class StartupTimeIT {
+
+    private static final Pattern STARTED =
+            Pattern.compile("Started \\w+ in [0-9.]+ seconds \\(process running for ([0-9.]+)\\)");
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private final Path jar = Path.of(System.getProperty("startup.jar", "target/argocd-tech-adapter-exec.jar"));
+    private final Path report = Path.of(System.getProperty("startup.report", "target/startup-time.json"));
+    private final int runs = Integer.getInteger("startup.runs", 3);
+    private final String java =
+            Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    @Test
+    void measureStartupTime() throws Exception {
+        assertTrue(Files.exists(jar), "The jar must be packaged before measuring its startup: " + jar);
+        Path work = Files.createDirectories(report.resolveSibling("startup"));
+
+        Path unpacked = work.resolve("application");
+        // Class data sharing needs a classpath of plain jars: the jar is extracted like in the Docker image
+        List<String> extract = List.of("extract", "--force", "--destination", unpacked.toString());
+        run(command(List.of("-Djarmode=tools"), jar, extract));
+        Path unpackedJar = unpacked.resolve(jar.getFileName());
+        Path archive = work.resolve("application.jsa");
+        Files.deleteIfExists(archive);
+        List<String> aot = List.of("-Dspring.aot.enabled=true");
+        List<String> eager = List.of("--server.port=0");
+        List<String> lazy = List.of("--server.port=0", "--spring.main.lazy-initialization=true");
+        // The training run records the classes loaded until the context is refreshed, then exits
+        List<String> training = List.of(
+                "-XX:ArchiveClassesAtExit=" + archive, "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh");
+        run(command(training, unpackedJar, lazy));
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("default", measure(command(List.of(), jar, eager)));
+        results.put("lazy", measure(command(List.of(), jar, lazy)));
+        results.put("aot+lazy", measure(command(aot, jar, lazy)));
+        List<String> cds = List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true");
+        results.put("aot+lazy+cds", measure(command(cds, unpackedJar, lazy)));
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), results);
+        System.out.println("Startup time (seconds): " + results);
+    }
+
+    private List<String> command(List<String> jvmOptions, Path jarToRun, List<String> arguments) {
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.addAll(jvmOptions);
+        command.add("-jar");
+        command.add(jarToRun.toString());
+        command.addAll(arguments);
+        return command;
+    }
+
+    /** Starts the adapter {@code runs} times, reporting the median and every startup time. */
+    private Map<String, Object> measure(List<String> command) throws Exception {
+        List<Double> seconds = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            seconds.add(startupSeconds(command));
+        }
+        List<Double> sorted = seconds.stream().sorted().toList();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("median", sorted.get(sorted.size() / 2));
+        result.put("runs", seconds);
+        return result;
+    }
+
+    private double startupSeconds(List<String> command) throws Exception {
+        Process process = start(command);
+        try (BufferedReader output =
+                new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            String line;
+            while (System.nanoTime() < deadline && (line = output.readLine()) != null) {
+                Matcher started = STARTED.matcher(line);
+                if (started.find()) return Double.parseDouble(started.group(1));
+            }
+            return fail("The adapter did not start: " + String.join(" ", command));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly();
+        }
+    }
+
+    private void run(List<String> command) throws Exception {
+        Process process = start(command);
+        process.getInputStream().transferTo(System.out);
+        assertTrue(process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS), "Timed out: " + String.join(" ", command));
+        assertEquals(0, process.exitValue(), "Failed: " + String.join(" ", command));
+    }
+
+    private Process start(List<String> command) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.directory(new File(System.getProperty("user.dir")));
+        builder.environment().put("ARGOCD_TOKEN", "startup-token");
+        builder.environment().put("GIT_USERNAME", "startup");
+        builder.environment().put("GIT_TOKEN", "startup-token");
+        return builder.start();
+    }
+}
@@ -4,15 +4,21 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.model.application.*;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.openapitools.client.api.ApplicationServiceApi;
 import org.openapitools.client.model.V1alpha1Application;
 import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1ComparedTo;
 import org.openapitools.client.model.V1alpha1HealthStatus;
+import org.openapitools.client.model.V1alpha1OperationState;
 import org.openapitools.client.model.V1alpha1SyncStatus;
 import org.springframework.web.client.HttpClientErrorException;
 
@@ -73,6 +79,159 @@ class ApplicationManagerTest {
                 result.getLeft().message());
     }
 
+    @Test
+    void createOrUpdateApplication_ReturnsSyncedApplication_WhenWaitingForSync() {
+        ApplicationWatcher applicationWatcher = mock(ApplicationWatcher.class);
+        applicationManager = new ApplicationManager(applicationServiceApi, applicationWatcher, Duration.ofMinutes(1));
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application syncedApplication = new V1alpha1Application()
+                .status(new V1alpha1ApplicationStatus()
+                        .health(new V1alpha1HealthStatus().status("Healthy"))
+                        .sync(new V1alpha1SyncStatus().status("Synced")));
+
+        when(applicationServiceApi.applicationServiceCreate(any(), eq(true), eq(true)))
+                .thenReturn(new V1alpha1Application());
+        when(applicationWatcher.waitForSync(
+                        eq("ValidApp"), eq(specific.getProject()), any(), notNull(), eq(Duration.ofMinutes(1))))
+                .thenReturn(CompletableFuture.completedFuture(Either.right(syncedApplication)));
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        assertEquals(syncedApplication, result.get());
+        verify(applicationServiceApi).applicationServiceSync(eq("ValidApp"), any());
+    }
+
+    @Test
+    void createOrUpdateApplication_SkipsUpdateAndSync_WhenDesiredStateIsUnchanged() {
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application live = syncedApplication(specific);
+        when(applicationServiceApi.applicationServiceGet(
+                        eq("ValidApp"), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(live);
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        assertEquals(live, result.get());
+        verify(applicationServiceApi, never()).applicationServiceCreate(any(), anyBoolean(), anyBoolean());
+        verify(applicationServiceApi, never()).applicationServiceSync(any(), any());
+    }
+
+    @Test
+    void createOrUpdateApplication_UpdatesAndSyncs_WhenDesiredStateChanged() {
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application live = ApplicationManager.buildApplicationDetails(specific);
+        specific.setSource(new Source("repoURL", "path", "other-revision"));
+        when(applicationServiceApi.applicationServiceGet(
+                        eq("ValidApp"), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(live);
+        when(applicationServiceApi.applicationServiceCreate(any(), eq(true), eq(true)))
+                .thenReturn(new V1alpha1Application());
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        ArgumentCaptor<V1alpha1Application> sent = ArgumentCaptor.forClass(V1alpha1Application.class);
+        verify(applicationServiceApi).applicationServiceCreate(sent.capture(), eq(true), eq(true));
+        assertNotEquals(
+                live.getMetadata().getAnnotations().get(DesiredState.HASH_ANNOTATION),
+                sent.getValue().getMetadata().getAnnotations().get(DesiredState.HASH_ANNOTATION));
+        verify(applicationServiceApi).applicationServiceSync(eq("ValidApp"), any());
+    }
+
+    @Test
+    void createOrUpdateApplication_UpdatesAndSyncs_WhenTheLiveSpecWasEditedInArgoCd() {
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application live = syncedApplication(specific);
+        live.getSpec().getSource().setTargetRevision("edited-revision");
+        when(applicationServiceApi.applicationServiceGet(
+                        eq("ValidApp"), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(live);
+        when(applicationServiceApi.applicationServiceCreate(any(), eq(true), eq(true)))
+                .thenReturn(new V1alpha1Application());
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        verify(applicationServiceApi).applicationServiceCreate(any(), eq(true), eq(true));
+        verify(applicationServiceApi).applicationServiceSync(eq("ValidApp"), any());
+    }
+
+    @Test
+    void createOrUpdateApplication_SyncsAgain_WhenTheLastSyncFailed() {
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application live = ApplicationManager.buildApplicationDetails(specific)
+                .status(new V1alpha1ApplicationStatus().operationState(new V1alpha1OperationState().phase("Failed")));
+        when(applicationServiceApi.applicationServiceGet(
+                        eq("ValidApp"), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(live);
+        when(applicationServiceApi.applicationServiceCreate(any(), eq(true), eq(true)))
+                .thenReturn(new V1alpha1Application());
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        verify(applicationServiceApi, never()).applicationServiceCreate(any(), anyBoolean(), anyBoolean());
+        verify(applicationServiceApi).applicationServiceSync(eq("ValidApp"), any());
+    }
+
+    @Test
+    void createOrUpdateApplication_DoesNotSync_WhenTheSyncIsAutomated() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        applicationManager = new ApplicationManager(applicationServiceApi, null, null, meterRegistry);
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        specific.setSyncPolicy(new SyncPolicy(new AutomatedSyncPolicy(true, true)));
+        when(applicationServiceApi.applicationServiceCreate(any(), eq(true), eq(true)))
+                .thenReturn(new V1alpha1Application());
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        verify(applicationServiceApi, never()).applicationServiceSync(any(), any());
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(SyncDecision.DECISIONS_METRIC)
+                        .tag("decision", "automated")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    void createOrUpdateApplication_DoesNotWait_WhenAlreadySyncedAndHealthy() {
+        ApplicationWatcher applicationWatcher = mock(ApplicationWatcher.class);
+        applicationManager = new ApplicationManager(applicationServiceApi, applicationWatcher, Duration.ofMinutes(1));
+        ArgoCDApplicationSpecific specific = createValidSpecific();
+        V1alpha1Application live = syncedApplication(specific);
+        when(applicationServiceApi.applicationServiceGet(
+                        eq("ValidApp"), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any()))
+                .thenReturn(live);
+
+        Either<FailedOperation, V1alpha1Application> result = applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(result.isRight());
+        assertEquals(live, result.get());
+        verify(applicationServiceApi, never()).applicationServiceSync(any(), any());
+        verifyNoInteractions(applicationWatcher);
+    }
+
+    @Test
+    void buildApplicationDetails_AnnotatesAStableHashOfTheSpec() {
+        String hash = ApplicationManager.buildApplicationDetails(createValidSpecific())
+                .getMetadata()
+                .getAnnotations()
+                .get(DesiredState.HASH_ANNOTATION);
+
+        assertEquals(64, hash.length());
+        assertEquals(
+                hash,
+                ApplicationManager.buildApplicationDetails(createValidSpecific())
+                        .getMetadata()
+                        .getAnnotations()
+                        .get(DesiredState.HASH_ANNOTATION));
+    }
+
     @Test
     void deleteApplication_Success_WhenApiCallSucceeds() {
         String appName = "ValidApp";
@@ -166,6 +325,18 @@ class ApplicationManagerTest {
                         eq(appName), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), eq(List.of(project)));
     }
 
+    private static V1alpha1Application syncedApplication(ArgoCDApplicationSpecific specific) {
+        V1alpha1Application application = ApplicationManager.buildApplicationDetails(specific);
+        return application.status(new V1alpha1ApplicationStatus()
+                .health(new V1alpha1HealthStatus().status("Healthy"))
+                .sync(new V1alpha1SyncStatus()
+                        .status("Synced")
+                        .revision(specific.getSource().getTargetRevision())
+                        .comparedTo(new V1alpha1ComparedTo()
+                                .source(application.getSpec().getSource())
+                                .destination(application.getSpec().getDestination()))));
+    }
+
     private ArgoCDApplicationSpecific createValidSpecific() {
         ArgoCDApplicationSpecific specific = new ArgoCDApplicationSpecific();
         specific.setName("ValidApp");
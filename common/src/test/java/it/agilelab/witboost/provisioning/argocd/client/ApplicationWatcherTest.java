@@ -0,0 +1,250 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.vavr.control.Either;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1HealthStatus;
+import org.openapitools.client.model.V1alpha1Operation;
+import org.openapitools.client.model.V1alpha1OperationState;
+import org.openapitools.client.model.V1alpha1RevisionHistory;
+import org.openapitools.client.model.V1alpha1SyncStatus;
+
+class ApplicationWatcherTest {
+
+    private static final OffsetDateTime PREVIOUS_SYNC_STARTED_AT = OffsetDateTime.parse("2024-05-02T10:00:00Z");
+    private static final OffsetDateTime SYNC_STARTED_AT = PREVIOUS_SYNC_STARTED_AT.plusMinutes(1);
+    private static final ApplicationWatcher.SyncRequest SYNC_REQUEST =
+            new ApplicationWatcher.SyncRequest(PREVIOUS_SYNC_STARTED_AT, 3L);
+    private static final V1alpha1ApplicationSpec DESIRED = new V1alpha1ApplicationSpec()
+            .source(new V1alpha1ApplicationSource()
+                    .repoURL("https://example.com/repo.git")
+                    .path("chart")
+                    .targetRevision("v2"))
+            .destination(new V1alpha1ApplicationDestination()
+                    .server("https://kubernetes.default.svc")
+                    .namespace("default"));
+
+    private static final String PROGRESSING = event("OutOfSync", "Progressing", "Running", "", "v2", SYNC_STARTED_AT);
+    private static final String SYNCED =
+            event("Synced", "Healthy", "Succeeded", "successfully synced", "v2", SYNC_STARTED_AT);
+
+    private final AtomicReference<String> query = new AtomicReference<>();
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private volatile List<String> events;
+    private ApplicationWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverExecutor);
+        server.createContext(ApplicationWatcher.WATCH_PATH, exchange -> {
+            query.set(exchange.getRequestURI().getQuery());
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            for (String event : events) {
+                body.write((event + "\n").getBytes(StandardCharsets.UTF_8));
+                body.flush();
+            }
+            // Like ArgoCD, the stream stays open waiting for further changes
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        ObjectMapper objectMapper =
+                new ObjectMapper().findAndRegisterModules().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        watcher = new ApplicationWatcher(
+                HttpClient.newHttpClient(),
+                objectMapper,
+                "http://127.0.0.1:" + server.getAddress().getPort(),
+                "token");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void testWaitForSync_Success_WhenApplicationBecomesSyncedAndHealthy() {
+        events = List.of(PROGRESSING, SYNCED);
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, SYNC_REQUEST, Duration.ofSeconds(5))
+                .join();
+
+        assertTrue(result.isRight());
+        assertEquals("Healthy", result.get().getStatus().getHealth().getStatus());
+        assertEquals("Synced", result.get().getStatus().getSync().getStatus());
+        assertEquals("name=app&projects=project", query.get());
+    }
+
+    @Test
+    void testWaitForSync_Error_WhenSyncOperationFails() {
+        events = List.of(
+                PROGRESSING,
+                event("OutOfSync", "Degraded", "Failed", "one or more objects failed to apply", "v2", SYNC_STARTED_AT));
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, SYNC_REQUEST, Duration.ofSeconds(5))
+                .join();
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "The synchronization of the application app failed. Details: Failed: one or more objects failed to apply",
+                result.getLeft().message());
+    }
+
+    @Test
+    void testWaitForSync_Error_WhenTimeoutExpires() {
+        events = List.of(PROGRESSING);
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, SYNC_REQUEST, Duration.ofMillis(500))
+                .join();
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "The application app was not Synced and Healthy after PT0.5S. Sync status: OutOfSync. Health status: Progressing",
+                result.getLeft().message());
+    }
+
+    @Test
+    void testWaitForSync_IgnoresTheStaleStateOfThePreviousSpecAndSync() {
+        events = List.of(
+                // The current state sent first: Synced and Healthy, but compared to the previous spec
+                event("Synced", "Healthy", "Succeeded", "successfully synced", "v1", PREVIOUS_SYNC_STARTED_AT),
+                // Compared to the desired spec, but still reporting the operation ArgoCD reported before the sync
+                event("Synced", "Healthy", "Succeeded", "successfully synced", "v2", PREVIOUS_SYNC_STARTED_AT),
+                event("OutOfSync", "Degraded", "Failed", "a previous failure", "v2", PREVIOUS_SYNC_STARTED_AT),
+                PROGRESSING,
+                SYNCED);
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, SYNC_REQUEST, Duration.ofSeconds(5))
+                .join();
+
+        assertTrue(result.isRight());
+        assertEquals(
+                SYNC_STARTED_AT, result.get().getStatus().getOperationState().getStartedAt());
+    }
+
+    @Test
+    void testWaitForSync_RecognizesTheRequestedSyncSeenRunning_WhenItStartedWithinTheSameSecond() {
+        String previous =
+                event("Synced", "Healthy", "Succeeded", "successfully synced", "v2", PREVIOUS_SYNC_STARTED_AT);
+        events = List.of(
+                previous,
+                running(event("OutOfSync", "Progressing", "Running", "", "v2", PREVIOUS_SYNC_STARTED_AT)),
+                previous);
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, SYNC_REQUEST, Duration.ofSeconds(5))
+                .join();
+
+        assertTrue(result.isRight());
+    }
+
+    @Test
+    void testWaitForSync_IgnoresTheStateOfThePreviousSpec_WhenNoSyncWasRequested() {
+        events = List.of(
+                event("Synced", "Healthy", "Succeeded", "successfully synced", "v1", SYNC_STARTED_AT),
+                event("Synced", "Healthy", "Succeeded", "successfully synced", "v2", SYNC_STARTED_AT));
+
+        Either<FailedOperation, V1alpha1Application> result = watcher.waitForSync(
+                        "app", "project", DESIRED, null, Duration.ofSeconds(5))
+                .join();
+
+        assertTrue(result.isRight());
+        assertEquals(
+                "v2",
+                result.get().getStatus().getSync().getComparedTo().getSource().getTargetRevision());
+    }
+
+    @Test
+    void testSyncRequest_ComparesTheOperationsReportedByArgoCd() {
+        ApplicationWatcher.SyncRequest neverSynced = ApplicationWatcher.SyncRequest.after(new V1alpha1Application());
+
+        assertNull(neverSynced.previousStartedAt());
+        assertTrue(neverSynced.startedBy(startedAt(PREVIOUS_SYNC_STARTED_AT)));
+        assertFalse(SYNC_REQUEST.startedBy(startedAt(PREVIOUS_SYNC_STARTED_AT)));
+        assertTrue(SYNC_REQUEST.startedBy(startedAt(SYNC_STARTED_AT)));
+    }
+
+    @Test
+    void testSyncRequest_ComparesTheHistory_WhenTheOperationsStartedWithinTheSameSecond() {
+        V1alpha1Application deployed = startedAt(PREVIOUS_SYNC_STARTED_AT);
+        deployed.getStatus().addHistoryItem(new V1alpha1RevisionHistory().id(3L));
+
+        assertEquals(3L, ApplicationWatcher.SyncRequest.after(deployed).previousHistoryId());
+        assertFalse(SYNC_REQUEST.startedBy(deployed));
+        deployed.getStatus().addHistoryItem(new V1alpha1RevisionHistory().id(4L));
+        assertTrue(SYNC_REQUEST.startedBy(deployed));
+    }
+
+    @Test
+    void testWaitForSync_IgnoresCompletedStateWhileOperationIsPending() {
+        V1alpha1Application application = new V1alpha1Application()
+                .operation(new V1alpha1Operation())
+                .status(new V1alpha1ApplicationStatus()
+                        .sync(new V1alpha1SyncStatus().status("Synced"))
+                        .health(new V1alpha1HealthStatus().status("Healthy")));
+
+        assertFalse(ApplicationWatcher.isSyncedAndHealthy(application));
+        assertTrue(ApplicationWatcher.operationFailure(application).isEmpty());
+    }
+
+    private static V1alpha1Application startedAt(OffsetDateTime startedAt) {
+        return new V1alpha1Application()
+                .status(new V1alpha1ApplicationStatus()
+                        .operationState(new V1alpha1OperationState().startedAt(startedAt)));
+    }
+
+    /** The event with the sync operation still pending, as ArgoCD reports it until the operation completes. */
+    private static String running(String event) {
+        return event.replace("\"application\":{", "\"application\":{\"operation\":{\"sync\":{}},");
+    }
+
+    private static String event(
+            String sync, String health, String phase, String message, String comparedTo, OffsetDateTime startedAt) {
+        return String.format(
+                "{\"result\":{\"type\":\"MODIFIED\",\"application\":{\"metadata\":{\"name\":\"app\"},"
+                        + "\"status\":{\"sync\":{\"status\":\"%s\",\"comparedTo\":{"
+                        + "\"source\":{\"repoURL\":\"https://example.com/repo.git\",\"path\":\"chart\","
+                        + "\"targetRevision\":\"%s\"},"
+                        + "\"destination\":{\"server\":\"https://kubernetes.default.svc\",\"namespace\":\"default\"}}},"
+                        + "\"health\":{\"status\":\"%s\"},"
+                        + "\"operationState\":{\"phase\":\"%s\",\"message\":\"%s\",\"startedAt\":\"%s\"}}}}}",
+                sync, comparedTo, health, phase, message, startedAt);
+    }
+}
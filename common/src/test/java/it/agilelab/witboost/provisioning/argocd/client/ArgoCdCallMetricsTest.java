@@ -0,0 +1,89 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.async.ApiException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+class ArgoCdCallMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ArgoCdCallMetrics callMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        callMetrics = new ArgoCdCallMetrics(meterRegistry);
+    }
+
+    @Test
+    void record_TimesSuccessfulCalls() {
+        String result = callMetrics.record("application.get", () -> "application");
+
+        assertEquals("application", result);
+        assertEquals(1, calls("application.get", "success"));
+        assertEquals(
+                0,
+                meterRegistry
+                        .get(ArgoCdCallMetrics.ACTIVE_CALLS_METRIC)
+                        .tag("operation", "application.get")
+                        .longTaskTimer()
+                        .activeTasks());
+    }
+
+    @Test
+    void record_ClassifiesFailedCallsByStatus() {
+        HttpClientErrorException notFound = HttpClientErrorException.create(
+                HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+
+        assertThrows(
+                HttpClientErrorException.class,
+                () -> callMetrics.record("project.get", () -> {
+                    throw notFound;
+                }));
+        assertThrows(
+                IllegalStateException.class,
+                () -> callMetrics.record("repository.list", () -> {
+                    throw new IllegalStateException("connection reset");
+                }));
+
+        assertEquals(1, calls("project.get", "not_found"));
+        assertEquals(1, calls("repository.list", "error"));
+    }
+
+    @Test
+    void recordAsync_TimesTheCallOnceTheFutureCompletes() {
+        CompletableFuture<Object> pending = new CompletableFuture<>();
+
+        CompletableFuture<Object> result = callMetrics.recordAsync("project.update", () -> pending);
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(ArgoCdCallMetrics.ACTIVE_CALLS_METRIC)
+                        .tag("operation", "project.update")
+                        .longTaskTimer()
+                        .activeTasks());
+
+        pending.completeExceptionally(new ApiException(409, "Conflict"));
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(1, calls("project.update", "conflict"));
+    }
+
+    private long calls(String operation, String result) {
+        return meterRegistry
+                .get(ArgoCdCallMetrics.CALLS_METRIC)
+                .tag("operation", operation)
+                .tag("result", result)
+                .timer()
+                .count();
+    }
+}
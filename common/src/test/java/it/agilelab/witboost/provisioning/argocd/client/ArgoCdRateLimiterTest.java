@@ -0,0 +1,117 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdRateLimiter.Priority;
+import it.agilelab.witboost.provisioning.argocd.configuration.ArgoCdConfiguration;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ArgoCdRateLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ArgoCdRateLimiter rateLimiter;
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.shutdown();
+    }
+
+    @Test
+    void priority_ReadsAndDeletesGoFirst() {
+        rateLimiter = rateLimiter(10, 1, Duration.ofSeconds(5));
+
+        assertEquals(Priority.HIGH, ArgoCdRateLimiter.priority("GET"));
+        assertEquals(Priority.HIGH, ArgoCdRateLimiter.priority("DELETE"));
+        assertEquals(Priority.LOW, ArgoCdRateLimiter.priority("POST"));
+        assertEquals(Priority.LOW, ArgoCdRateLimiter.priority("PUT"));
+    }
+
+    @Test
+    void acquire_QueuesTheCallsExceedingTheBurst() {
+        rateLimiter = rateLimiter(0.5, 2, Duration.ofSeconds(5));
+
+        assertTrue(rateLimiter.acquire(Priority.LOW).isDone());
+        assertTrue(rateLimiter.acquire(Priority.LOW).isDone());
+        CompletableFuture<Void> queued = rateLimiter.acquire(Priority.LOW);
+
+        assertFalse(queued.isDone());
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(ArgoCdRateLimiter.QUEUE_METRIC)
+                        .tag("priority", "low")
+                        .gauge()
+                        .value());
+    }
+
+    @Test
+    void acquire_ServesHighPriorityCallsFirst() {
+        rateLimiter = rateLimiter(20, 1, Duration.ofSeconds(5));
+        List<Priority> served = new CopyOnWriteArrayList<>();
+
+        rateLimiter.acquire(Priority.LOW).join();
+        CompletableFuture<Void> first = rateLimiter.acquire(Priority.LOW).thenRun(() -> served.add(Priority.LOW));
+        CompletableFuture<Void> second = rateLimiter.acquire(Priority.LOW).thenRun(() -> served.add(Priority.LOW));
+        CompletableFuture<Void> third = rateLimiter.acquire(Priority.HIGH).thenRun(() -> served.add(Priority.HIGH));
+        CompletableFuture.allOf(first, second, third).join();
+
+        assertEquals(List.of(Priority.HIGH, Priority.LOW, Priority.LOW), served);
+        assertEquals(
+                3,
+                meterRegistry
+                        .get(ArgoCdRateLimiter.WAIT_METRIC)
+                        .tags("priority", "low", "result", "acquired")
+                        .timer()
+                        .count());
+    }
+
+    @Test
+    void acquire_CancelsTheTimeoutOfTheGrantedCalls() {
+        rateLimiter = rateLimiter(20, 1, Duration.ofSeconds(5));
+
+        rateLimiter.acquire(Priority.LOW).join();
+        rateLimiter.acquire(Priority.LOW).join();
+
+        assertEquals(0, rateLimiter.scheduledTasks());
+    }
+
+    @Test
+    void acquire_FailsTheCallsWaitingForTooLong() {
+        rateLimiter = rateLimiter(0.1, 1, Duration.ofMillis(50));
+
+        rateLimiter.acquire(Priority.HIGH).join();
+        CompletableFuture<Void> queued = rateLimiter.acquire(Priority.HIGH);
+
+        CompletionException exception = assertThrows(CompletionException.class, queued::join);
+        assertInstanceOf(ArgoCdRateLimiter.WaitTimeoutException.class, exception.getCause());
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(ArgoCdRateLimiter.WAIT_METRIC)
+                        .tags("priority", "high", "result", "timeout")
+                        .timer()
+                        .count());
+        assertEquals(
+                0,
+                meterRegistry
+                        .get(ArgoCdRateLimiter.QUEUE_METRIC)
+                        .tag("priority", "high")
+                        .gauge()
+                        .value());
+    }
+
+    private ArgoCdRateLimiter rateLimiter(double permitsPerSecond, int burst, Duration maxWait) {
+        ArgoCdConfiguration.RateLimit configuration = new ArgoCdConfiguration.RateLimit();
+        configuration.setPermitsPerSecond(permitsPerSecond);
+        configuration.setBurst(burst);
+        configuration.setMaxWait(maxWait);
+        return new ArgoCdRateLimiter(configuration, meterRegistry);
+    }
+}
@@ -0,0 +1,173 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.configuration.ArgoCdConfiguration;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+class ArgoCdResilienceTest {
+
+    private static final URI APPLICATION_URI = URI.create("https://argocd/api/v1/applications/name");
+
+    private final ClientHttpRequestExecution execution = mock(ClientHttpRequestExecution.class);
+    private SimpleMeterRegistry meterRegistry;
+    private ArgoCdResilience resilience;
+
+    @BeforeEach
+    void setUp() {
+        ArgoCdConfiguration.Resilience configuration = new ArgoCdConfiguration.Resilience();
+        configuration.setInitialBackoff(Duration.ofMillis(1));
+        configuration.setSlidingWindowSize(3);
+        configuration.setMinimumNumberOfCalls(3);
+        meterRegistry = new SimpleMeterRegistry();
+        resilience = new ArgoCdResilience(configuration, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resilience.shutdown();
+    }
+
+    @Test
+    void api_GroupsCallsByResource() {
+        assertEquals("application", ArgoCdResilience.api(APPLICATION_URI));
+        assertEquals("project", ArgoCdResilience.api(URI.create("https://argocd/api/v1/projects")));
+        assertEquals("repository", ArgoCdResilience.api(URI.create("https://argocd/api/v1/repositories/repo")));
+        assertEquals("other", ArgoCdResilience.api(URI.create("https://argocd/api/version")));
+    }
+
+    @Test
+    void isIdempotent_OnlyForReadsUpdatesDeletesAndUpserts() {
+        assertTrue(ArgoCdResilience.isIdempotent("GET", APPLICATION_URI));
+        assertTrue(ArgoCdResilience.isIdempotent("DELETE", APPLICATION_URI));
+        assertTrue(ArgoCdResilience.isIdempotent(
+                "POST", URI.create("https://argocd/api/v1/applications?upsert=true&validate=true")));
+        assertFalse(ArgoCdResilience.isIdempotent("POST", URI.create("https://argocd/api/v1/applications/name/sync")));
+    }
+
+    @Test
+    void intercept_RetriesTransientResponses() throws IOException {
+        HttpRequest request = request(HttpMethod.GET, APPLICATION_URI);
+        byte[] body = new byte[0];
+        ClientHttpResponse unavailable = response(HttpStatus.SERVICE_UNAVAILABLE);
+        ClientHttpResponse ok = response(HttpStatus.OK);
+        when(execution.execute(request, body)).thenReturn(unavailable, ok);
+
+        assertSame(ok, resilience.intercept(request, body, execution));
+        verify(unavailable).close();
+        verify(execution, times(2)).execute(request, body);
+    }
+
+    @Test
+    void intercept_DoesNotResendNonIdempotentCallsAfterTheyReachedArgoCd() throws IOException {
+        HttpRequest request = request(HttpMethod.POST, URI.create("https://argocd/api/v1/applications/name/sync"));
+        byte[] body = new byte[0];
+        when(execution.execute(request, body)).thenThrow(new SocketTimeoutException("Read timed out"));
+
+        assertThrows(SocketTimeoutException.class, () -> resilience.intercept(request, body, execution));
+        verify(execution, times(1)).execute(request, body);
+    }
+
+    @Test
+    void intercept_ResendsNonIdempotentCallsWhenTheConnectionFailed() throws IOException {
+        HttpRequest request = request(HttpMethod.POST, URI.create("https://argocd/api/v1/applications/name/sync"));
+        byte[] body = new byte[0];
+        ClientHttpResponse ok = response(HttpStatus.OK);
+        when(execution.execute(request, body))
+                .thenThrow(new ConnectException("Connection refused"))
+                .thenReturn(ok);
+
+        assertSame(ok, resilience.intercept(request, body, execution));
+        verify(execution, times(2)).execute(request, body);
+    }
+
+    @Test
+    void intercept_FailsFastOnceTheCircuitIsOpen() throws IOException {
+        HttpRequest request = request(HttpMethod.GET, APPLICATION_URI);
+        byte[] body = new byte[0];
+        when(execution.execute(request, body)).thenThrow(new ConnectException("Connection refused"));
+
+        assertThrows(ConnectException.class, () -> resilience.intercept(request, body, execution));
+
+        assertEquals(
+                CircuitBreaker.State.OPEN,
+                resilience.circuitBreaker("application").getState());
+        assertThrows(CallNotPermittedException.class, () -> resilience.intercept(request, body, execution));
+        verify(execution, times(3)).execute(request, body);
+        assertEquals(
+                CircuitBreaker.State.CLOSED,
+                resilience.circuitBreaker("project").getState());
+        assertNotNull(meterRegistry
+                .find("resilience4j.circuitbreaker.state")
+                .tag("name", "application")
+                .gauge());
+    }
+
+    @Test
+    void intercept_EveryAttemptWaitsForTheRateLimiter() {
+        ArgoCdConfiguration.Resilience configuration = new ArgoCdConfiguration.Resilience();
+        configuration.setInitialBackoff(Duration.ofMillis(1));
+        ArgoCdRateLimiter rateLimiter = new ArgoCdRateLimiter(new ArgoCdConfiguration.RateLimit(), meterRegistry);
+        ArgoCdResilience limitedResilience = new ArgoCdResilience(configuration, meterRegistry, List.of(rateLimiter));
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(limitedResilience);
+        MockRestServiceServer server =
+                MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(ExpectedCount.times(2), requestTo(APPLICATION_URI))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo(APPLICATION_URI)).andRespond(withSuccess());
+
+        try {
+            restTemplate.getForEntity(APPLICATION_URI, String.class);
+        } finally {
+            limitedResilience.shutdown();
+            rateLimiter.shutdown();
+        }
+
+        server.verify();
+        assertEquals(
+                3,
+                meterRegistry
+                        .get(ArgoCdRateLimiter.WAIT_METRIC)
+                        .tag("priority", "high")
+                        .tag("result", "acquired")
+                        .timer()
+                        .count());
+    }
+
+    private static HttpRequest request(HttpMethod method, URI uri) {
+        HttpRequest request = mock(HttpRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getURI()).thenReturn(uri);
+        return request;
+    }
+
+    private static ClientHttpResponse response(HttpStatus status) throws IOException {
+        ClientHttpResponse response = mock(ClientHttpResponse.class);
+        when(response.getStatusCode()).thenReturn(status);
+        return response;
+    }
+}
@@ -0,0 +1,106 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Checks that the operations and the models generated from the ArgoCD specification, listed by the
+ * {@code argocd.operations} and {@code argocd.models} properties of the pom, are consistent: every listed operation
+ * exists, and exactly the models needed by the operations of the adapter are generated.
+ */
+class ArgoCdSpecificationTest {
+
+    /** Operations called without the generated client, whose models are generated nonetheless. */
+    private static final List<String> DIRECT_OPERATIONS = List.of(
+            // ApplicationWatcher reads the watch stream itself
+            "ApplicationService_Watch");
+
+    private static final String REF_PREFIX = "#/definitions/";
+
+    private final JsonNode specification;
+    private final Map<String, JsonNode> operations = new HashMap<>();
+    private final Set<String> generatedOperations;
+    private final Set<String> generatedModels;
+
+    ArgoCdSpecificationTest() throws Exception {
+        try (InputStream input = getClass().getResourceAsStream("/argocd-specification.json")) {
+            specification = new ObjectMapper().readTree(input);
+        }
+        specification
+                .path("paths")
+                .forEach(path -> path.forEach(operation -> {
+                    if (operation.has("operationId"))
+                        operations.put(operation.get("operationId").asText(), operation);
+                }));
+
+        Document pom = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder()
+                .parse(Path.of("pom.xml").toFile());
+        generatedOperations = split(property(pom, "argocd.operations"), "\\|");
+        generatedModels = split(property(pom, "argocd.models"), ",");
+    }
+
+    @Test
+    void testGeneratedOperationsExist() {
+        Set<String> unknown = new TreeSet<>(generatedOperations);
+        unknown.removeAll(operations.keySet());
+
+        assertEquals(Set.of(), unknown, "Operations of argocd.operations missing from the ArgoCD specification");
+    }
+
+    @Test
+    void testGeneratedModelsMatchTheOperations() {
+        Set<String> needed = new TreeSet<>();
+        Stream.concat(generatedOperations.stream(), DIRECT_OPERATIONS.stream())
+                .filter(operations::containsKey)
+                .forEach(operationId -> addReferencedModels(operations.get(operationId), needed));
+
+        Set<String> missing = new TreeSet<>(needed);
+        missing.removeAll(generatedModels);
+        Set<String> unused = new TreeSet<>(generatedModels);
+        unused.removeAll(needed);
+
+        assertEquals(Set.of(), missing, "Models needed by the ArgoCD operations, to be added to argocd.models");
+        assertEquals(Set.of(), unused, "Models no operation needs, to be removed from argocd.models");
+    }
+
+    /** Adds the models referenced by a node of the specification and, transitively, by those models. */
+    private void addReferencedModels(JsonNode node, Set<String> models) {
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            JsonNode current = pending.pop();
+            String ref = current.path("$ref").asText("");
+            if (ref.startsWith(REF_PREFIX)) {
+                String model = ref.substring(REF_PREFIX.length());
+                if (models.add(model))
+                    pending.push(specification.path("definitions").path(model));
+            }
+            current.forEach(pending::push);
+        }
+    }
+
+    private static String property(Document pom, String name) {
+        return pom.getElementsByTagName(name).item(0).getTextContent();
+    }
+
+    private static Set<String> split(String list, String separator) {
+        return new TreeSet<>(Arrays.asList(list.trim().split(separator)));
+    }
+}
@@ -0,0 +1,173 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openapitools.client.async.ApiException;
+import org.openapitools.client.async.api.ProjectServiceApi;
+import org.openapitools.client.model.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AsyncProjectManagerTest {
+
+    @Mock
+    private ProjectServiceApi projectServiceApi;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncProjectManager projectManager;
+    private Destination destination;
+    private Source source;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        projectManager =
+                new AsyncProjectManager(projectServiceApi, meterRegistry, Duration.ZERO, 2, Duration.ofMillis(1));
+
+        destination = new Destination();
+        destination.setServer("https://kubernetes.default.svc");
+        destination.setNamespace("default");
+        source = new Source();
+        source.setRepoURL("https://github.com/test-repo.git");
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_CreatesMissingProject() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenReturn(CompletableFuture.failedFuture(new ApiException(404, "Not Found")));
+        when(projectServiceApi.projectServiceCreate(any()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation
+                        .getArgument(0, ProjectProjectCreateRequest.class)
+                        .getProject()));
+
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager
+                .createOrUpdateProject("test-project", destination, source)
+                .join();
+
+        assertTrue(result.isRight());
+        assertEquals(
+                "https://github.com/test-repo.git",
+                result.get().getSpec().getSourceRepos().get(0));
+        verify(projectServiceApi, never()).projectServiceUpdate(anyString(), any());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_SkipsUnchangedProject() throws Exception {
+        V1alpha1AppProject existingProject = existingProject("1");
+        existingProject.getSpec().addSourceReposItem("https://github.com/test-repo.git");
+        existingProject
+                .getSpec()
+                .addDestinationsItem(new V1alpha1ApplicationDestination()
+                        .server("https://kubernetes.default.svc")
+                        .namespace("default"));
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenReturn(CompletableFuture.completedFuture(existingProject));
+
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager
+                .createOrUpdateProject("test-project", destination, source)
+                .join();
+
+        assertTrue(result.isRight());
+        verify(projectServiceApi, never()).projectServiceUpdate(anyString(), any());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_WRITES_METRIC)
+                        .tag("result", "skipped")
+                        .counter()
+                        .count());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_RetriesOnConflict() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenReturn(CompletableFuture.completedFuture(existingProject("1")))
+                .thenReturn(CompletableFuture.completedFuture(existingProject("2")));
+        when(projectServiceApi.projectServiceUpdate(anyString(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ApiException(409, "Conflict")))
+                .thenReturn(CompletableFuture.completedFuture(existingProject("3")));
+
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager
+                .createOrUpdateProject("test-project", destination, source)
+                .join();
+
+        assertTrue(result.isRight());
+        ArgumentCaptor<ProjectProjectUpdateRequest> updates =
+                ArgumentCaptor.forClass(ProjectProjectUpdateRequest.class);
+        verify(projectServiceApi, times(2)).projectServiceUpdate(eq("test-project"), updates.capture());
+        assertEquals(
+                "2", updates.getAllValues().get(1).getProject().getMetadata().getResourceVersion());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_Error_WhenConflictRetriesAreExhausted() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(existingProject("1")));
+        when(projectServiceApi.projectServiceUpdate(anyString(), any()))
+                .thenAnswer(invocation -> CompletableFuture.failedFuture(new ApiException(409, "Conflict")));
+
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager
+                .createOrUpdateProject("test-project", destination, source)
+                .join();
+
+        assertTrue(result.isLeft());
+        assertTrue(
+                result.getLeft()
+                        .message()
+                        .startsWith(
+                                "Failed to update the project test-project after 2 retries, as it keeps being modified concurrently."));
+        verify(projectServiceApi, times(3)).projectServiceUpdate(anyString(), any());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_CoalescesConcurrentMutations() throws Exception {
+        CompletableFuture<V1alpha1AppProject> firstRead = new CompletableFuture<>();
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenReturn(firstRead)
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(existingProject("2")));
+        when(projectServiceApi.projectServiceUpdate(anyString(), any()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation
+                        .getArgument(1, ProjectProjectUpdateRequest.class)
+                        .getProject()));
+
+        List<CompletableFuture<Either<FailedOperation, V1alpha1AppProject>>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Source repository = new Source();
+            repository.setRepoURL("https://github.com/test-repo-" + i + ".git");
+            results.add(projectManager.createOrUpdateProject("test-project", destination, repository));
+        }
+        firstRead.complete(existingProject("1"));
+
+        results.forEach(result -> assertTrue(result.join().isRight()));
+        ArgumentCaptor<ProjectProjectUpdateRequest> updates =
+                ArgumentCaptor.forClass(ProjectProjectUpdateRequest.class);
+        verify(projectServiceApi, times(2)).projectServiceUpdate(eq("test-project"), updates.capture());
+        assertEquals(
+                List.of("https://github.com/test-repo-1.git", "https://github.com/test-repo-2.git"),
+                updates.getAllValues().get(1).getProject().getSpec().getSourceRepos());
+        assertEquals(0, projectManager.queuedProjects());
+    }
+
+    private V1alpha1AppProject existingProject(String resourceVersion) {
+        return new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name("test-project").resourceVersion(resourceVersion))
+                .spec(new V1alpha1AppProjectSpec()
+                        .sourceRepos(new ArrayList<>())
+                        .destinations(new ArrayList<>()));
+    }
+}
@@ -4,15 +4,26 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
 import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
 import it.agilelab.witboost.provisioning.argocd.model.application.Source;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openapitools.client.api.ProjectServiceApi;
@@ -20,6 +31,7 @@ import org.openapitools.client.model.*;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 
 @ExtendWith(MockitoExtension.class)
 public class ProjectManagerTest {
@@ -27,13 +39,16 @@ public class ProjectManagerTest {
     @Mock
     private ProjectServiceApi projectServiceApi;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private ProjectManager projectManager;
 
     private ArgoCDApplicationSpecific applicationSpecific;
 
     @BeforeEach
     public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        projectManager = new ProjectManager(projectServiceApi, meterRegistry);
+
         applicationSpecific = new ArgoCDApplicationSpecific();
         applicationSpecific.setProject("test-project");
 
@@ -196,6 +211,29 @@ public class ProjectManagerTest {
 
         when(projectServiceApi.projectServiceGet(anyString())).thenReturn(existingProject);
 
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+
+        assertTrue(result.isRight());
+        assertEquals(1, result.get().getSpec().getDestinations().size());
+        assertEquals(1, result.get().getSpec().getSourceRepos().size());
+        verify(projectServiceApi, times(1)).projectServiceGet("test-project");
+        verify(projectServiceApi, never()).projectServiceUpdate(anyString(), any());
+        assertEquals(1.0, writes("skipped"));
+        assertEquals(0.0, writes("performed"));
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_SourceRepoMissing() throws Exception {
+        V1alpha1AppProject existingProject = new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name("test-project"))
+                .spec(new V1alpha1AppProjectSpec()
+                        .addSourceReposItem("https://github.com/another-repo.git")
+                        .addDestinationsItem(new V1alpha1ApplicationDestination()
+                                .server("https://kubernetes.default.svc")
+                                .namespace("default")));
+
+        when(projectServiceApi.projectServiceGet(anyString())).thenReturn(existingProject);
         when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenReturn(existingProject);
 
         Either<FailedOperation, V1alpha1AppProject> result = projectManager.createOrUpdateProject(
@@ -203,8 +241,10 @@ public class ProjectManagerTest {
 
         assertTrue(result.isRight());
         assertEquals(1, result.get().getSpec().getDestinations().size());
-        verify(projectServiceApi, times(1)).projectServiceGet("test-project");
+        assertEquals(2, result.get().getSpec().getSourceRepos().size());
         verify(projectServiceApi, times(1)).projectServiceUpdate(anyString(), any());
+        assertEquals(0.0, writes("skipped"));
+        assertEquals(1.0, writes("performed"));
     }
 
     @Test
@@ -244,4 +284,276 @@ public class ProjectManagerTest {
         verify(projectServiceApi, times(0)).projectServiceCreate(any());
         verify(projectServiceApi, times(0)).projectServiceUpdate(anyString(), any());
     }
+
+    @Test
+    public void testCreateOrUpdateProject_CoalescesConcurrentMutations() throws Exception {
+        int requests = 8;
+        V1alpha1AppProject existingProject = new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name("test-project"))
+                .spec(new V1alpha1AppProjectSpec()
+                        .addDestinationsItem(new V1alpha1ApplicationDestination()
+                                .server("https://kubernetes.default.svc")
+                                .namespace("default")));
+        when(projectServiceApi.projectServiceGet("test-project")).thenReturn(existingProject);
+        when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenReturn(existingProject);
+        ProjectManager batchingProjectManager =
+                new ProjectManager(projectServiceApi, meterRegistry, Duration.ofMillis(500));
+
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Either<FailedOperation, V1alpha1AppProject>>> results = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            Source source = new Source();
+            source.setRepoURL(String.format("https://github.com/test-repo-%d.git", i));
+            results.add(executor.submit(() -> {
+                start.await();
+                return batchingProjectManager.createOrUpdateProject(
+                        "test-project", applicationSpecific.getDestination(), source);
+            }));
+        }
+        start.countDown();
+
+        for (Future<Either<FailedOperation, V1alpha1AppProject>> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS).isRight());
+        }
+        executor.shutdown();
+
+        assertEquals(requests, existingProject.getSpec().getSourceRepos().size());
+        assertEquals(1, existingProject.getSpec().getDestinations().size());
+        verify(projectServiceApi, times(1)).projectServiceGet("test-project");
+        verify(projectServiceApi, times(1)).projectServiceUpdate(anyString(), any());
+        assertEquals(
+                requests,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_BATCH_SIZE_METRIC)
+                        .summary()
+                        .totalAmount());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_CreateNewProjectFromBatch() throws Exception {
+        HttpClientErrorException exception = HttpClientErrorException.create(
+                HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+        when(projectServiceApi.projectServiceGet("test-project")).thenThrow(exception);
+        when(projectServiceApi.projectServiceCreate(any()))
+                .thenAnswer(invocation ->
+                        invocation.<ProjectProjectCreateRequest>getArgument(0).getProject());
+
+        Source anotherSource = new Source();
+        anotherSource.setRepoURL("https://github.com/another-repo.git");
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager.applyBatch(
+                "test-project",
+                List.of(
+                        new ProjectWriter.Mutation(
+                                applicationSpecific.getDestination(), applicationSpecific.getSource()),
+                        new ProjectWriter.Mutation(applicationSpecific.getDestination(), anotherSource)));
+
+        assertTrue(result.isRight());
+        assertEquals(
+                List.of("https://github.com/test-repo.git", "https://github.com/another-repo.git"),
+                result.get().getSpec().getSourceRepos());
+        assertEquals(1, result.get().getSpec().getDestinations().size());
+        verify(projectServiceApi, times(1)).projectServiceCreate(any());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_DropsTheQueueOfTheProject() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project")).thenReturn(existingProject("1"));
+        when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenReturn(existingProject("2"));
+
+        projectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+        projectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+
+        assertEquals(0, projectManager.queuedProjects());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_FailsTheWaiters_WhenTheLeaderThrowsAnError() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(projectServiceApi.projectServiceGet("test-project")).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            throw new AssertionError("unexpected error");
+        });
+
+        CompletableFuture<Throwable> leaderFailure = new CompletableFuture<>();
+        CompletableFuture<Throwable> waiterFailure = new CompletableFuture<>();
+        Thread leader = new Thread(() -> createOrUpdateProject(leaderFailure));
+        leader.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        Thread waiter = new Thread(() -> createOrUpdateProject(waiterFailure));
+        waiter.start();
+        // The waiter parks once its mutation is queued behind the running batch
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (CompletableFuture<Throwable> outcome : List.of(leaderFailure, waiterFailure)) {
+            Throwable failure = outcome.get(5, TimeUnit.SECONDS);
+            assertInstanceOf(CompletionException.class, failure);
+            assertInstanceOf(AssertionError.class, failure.getCause());
+        }
+        leader.join();
+        waiter.join();
+        assertEquals(0, projectManager.queuedProjects());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_RetriesOnConflict() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenReturn(existingProject("1"))
+                .thenReturn(existingProject("2"));
+        HttpClientErrorException conflict = HttpClientErrorException.create(
+                HttpStatus.CONFLICT, "Conflict", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+        when(projectServiceApi.projectServiceUpdate(anyString(), any()))
+                .thenThrow(conflict)
+                .thenReturn(existingProject("3"));
+        ProjectManager retryingProjectManager =
+                new ProjectManager(projectServiceApi, meterRegistry, Duration.ZERO, 2, Duration.ZERO);
+
+        Either<FailedOperation, V1alpha1AppProject> result = retryingProjectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+
+        assertTrue(result.isRight());
+        ArgumentCaptor<ProjectProjectUpdateRequest> request =
+                ArgumentCaptor.forClass(ProjectProjectUpdateRequest.class);
+        verify(projectServiceApi, times(2)).projectServiceGet("test-project");
+        verify(projectServiceApi, times(2)).projectServiceUpdate(anyString(), request.capture());
+        assertEquals(
+                List.of("1", "2"),
+                request.getAllValues().stream()
+                        .map(r -> r.getProject().getMetadata().getResourceVersion())
+                        .toList());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_CONFLICTS_METRIC)
+                        .counter()
+                        .count());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_RETRIES_METRIC)
+                        .tag("outcome", "success")
+                        .summary()
+                        .max());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_ConflictRetriesExhausted() throws Exception {
+        when(projectServiceApi.projectServiceGet("test-project")).thenAnswer(invocation -> existingProject("1"));
+        HttpServerErrorException conflict = HttpServerErrorException.create(
+                HttpStatus.INTERNAL_SERVER_ERROR,
+                "Internal Server Error",
+                new HttpHeaders(),
+                "Operation cannot be fulfilled: the object has been modified".getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8);
+        when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenThrow(conflict);
+        ProjectManager retryingProjectManager =
+                new ProjectManager(projectServiceApi, meterRegistry, Duration.ZERO, 2, Duration.ZERO);
+
+        Either<FailedOperation, V1alpha1AppProject> result = retryingProjectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+
+        assertTrue(result.isLeft());
+        assertTrue(result.getLeft().message().startsWith("Failed to update the project test-project after 2 retries"));
+        verify(projectServiceApi, times(3)).projectServiceGet("test-project");
+        verify(projectServiceApi, times(3)).projectServiceUpdate(anyString(), any());
+        assertEquals(0.0, writes("performed"));
+        assertEquals(
+                3.0,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_CONFLICTS_METRIC)
+                        .counter()
+                        .count());
+        assertEquals(
+                2.0,
+                meterRegistry
+                        .get(ProjectManager.PROJECT_RETRIES_METRIC)
+                        .tag("outcome", "failure")
+                        .summary()
+                        .max());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_RetriesAsAnUpdate_WhenTheProjectWasCreatedConcurrently() throws Exception {
+        HttpClientErrorException notFound = HttpClientErrorException.create(
+                HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+        when(projectServiceApi.projectServiceGet("test-project"))
+                .thenThrow(notFound)
+                .thenReturn(existingProject("1"));
+        HttpClientErrorException invalidArgument = HttpClientErrorException.create(
+                HttpStatus.BAD_REQUEST,
+                "Bad Request",
+                new HttpHeaders(),
+                "{\"error\":\"existing project spec is different, use upsert flag to force update\",\"code\":3}"
+                        .getBytes(StandardCharsets.UTF_8),
+                StandardCharsets.UTF_8);
+        when(projectServiceApi.projectServiceCreate(any())).thenThrow(invalidArgument);
+        when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenReturn(existingProject("2"));
+        ProjectManager retryingProjectManager =
+                new ProjectManager(projectServiceApi, meterRegistry, Duration.ZERO, 2, Duration.ZERO);
+
+        Either<FailedOperation, V1alpha1AppProject> result = retryingProjectManager.createOrUpdateProject(
+                "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+
+        assertTrue(result.isRight());
+        verify(projectServiceApi, times(1)).projectServiceCreate(any());
+        verify(projectServiceApi, times(1)).projectServiceUpdate(anyString(), any());
+        assertEquals(0, retryingProjectManager.queuedProjects());
+    }
+
+    @Test
+    public void testCreateOrUpdateProject_ManyApplications() throws Exception {
+        V1alpha1AppProject existingProject = existingProject("1");
+        when(projectServiceApi.projectServiceGet("test-project")).thenReturn(existingProject);
+        when(projectServiceApi.projectServiceUpdate(anyString(), any())).thenReturn(existingProject);
+        ArgoCDApplicationSpecific anotherApplication = new ArgoCDApplicationSpecific();
+        anotherApplication.setProject("test-project");
+        Destination anotherDestination = new Destination();
+        anotherDestination.setServer("https://kubernetes.default.svc");
+        anotherDestination.setNamespace("another-namespace");
+        anotherApplication.setDestination(anotherDestination);
+        anotherApplication.setSource(new Source("path", "https://github.com/another-repo.git", "HEAD"));
+
+        Either<FailedOperation, V1alpha1AppProject> result = projectManager.createOrUpdateProject(
+                "test-project", List.of(applicationSpecific, anotherApplication, applicationSpecific));
+
+        assertTrue(result.isRight());
+        assertEquals(2, result.get().getSpec().getDestinations().size());
+        assertEquals(2, result.get().getSpec().getSourceRepos().size());
+        verify(projectServiceApi, times(1)).projectServiceGet("test-project");
+        verify(projectServiceApi, times(1)).projectServiceUpdate(anyString(), any());
+    }
+
+    private V1alpha1AppProject existingProject(String resourceVersion) {
+        return new V1alpha1AppProject()
+                .metadata(new V1ObjectMeta().name("test-project").resourceVersion(resourceVersion))
+                .spec(new V1alpha1AppProjectSpec()
+                        .addDestinationsItem(new V1alpha1ApplicationDestination()
+                                .server("https://kubernetes.default.svc")
+                                .namespace("default")));
+    }
+
+    private void createOrUpdateProject(CompletableFuture<Throwable> failure) {
+        try {
+            projectManager.createOrUpdateProject(
+                    "test-project", applicationSpecific.getDestination(), applicationSpecific.getSource());
+            failure.complete(null);
+        } catch (Throwable e) {
+            failure.complete(e);
+        }
+    }
+
+    private double writes(String result) {
+        return meterRegistry
+                .get(ProjectManager.PROJECT_WRITES_METRIC)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
 }
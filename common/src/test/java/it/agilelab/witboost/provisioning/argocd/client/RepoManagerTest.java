@@ -6,6 +6,7 @@ import static org.mockito.Mockito.*;
 import com.witboost.provisioning.model.common.FailedOperation;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.configuration.GitConfiguration;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,25 +15,30 @@ import org.openapitools.client.api.RepositoryServiceApi;
 import org.openapitools.client.model.V1alpha1ConnectionState;
 import org.openapitools.client.model.V1alpha1Repository;
 import org.openapitools.client.model.V1alpha1RepositoryList;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
 
 class RepoManagerTest {
 
     private RepositoryServiceApi repositoryServiceApi;
     private GitConfiguration gitConfiguration;
     private RepoManager repoManager;
+    private RepoManager listLookupRepoManager;
 
     @BeforeEach
     void setUp() {
         repositoryServiceApi = Mockito.mock(RepositoryServiceApi.class);
         gitConfiguration = Mockito.mock(GitConfiguration.class);
         repoManager = new RepoManager(repositoryServiceApi, gitConfiguration);
+        listLookupRepoManager = new RepoManager(repositoryServiceApi, gitConfiguration, true);
 
         when(gitConfiguration.getToken()).thenReturn("mockToken");
         when(gitConfiguration.getUsername()).thenReturn("mockUser");
     }
 
     @Test
-    void createOrUpdateRepository_Success_WhenApiCallSucceeds() {
+    void createOrUpdateRepository_Success_WhenApiCallSucceeds_ListLookup() {
         String repoURL = "https://example.com/repo.git";
         String project = "ValidProject";
 
@@ -46,7 +52,8 @@ class RepoManagerTest {
         when(repositoryServiceApi.repositoryServiceListRepositories(null, true, null))
                 .thenReturn(repositoryList);
 
-        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+        Either<FailedOperation, V1alpha1Repository> result =
+                listLookupRepoManager.createOrUpdateRepository(repoURL, project);
 
         assertTrue(result.isRight());
         assertEquals(repoURL, result.get().getRepo());
@@ -71,7 +78,7 @@ class RepoManagerTest {
     }
 
     @Test
-    void createOrUpdateRepository_Error_WhenRepositoryNotFound() {
+    void createOrUpdateRepository_Error_WhenRepositoryNotFound_ListLookup() {
         String repoURL = "https://example.com/repo.git";
         String project = "ValidProject";
 
@@ -80,7 +87,8 @@ class RepoManagerTest {
         when(repositoryServiceApi.repositoryServiceListRepositories(null, true, null))
                 .thenReturn(emptyList);
 
-        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+        Either<FailedOperation, V1alpha1Repository> result =
+                listLookupRepoManager.createOrUpdateRepository(repoURL, project);
 
         assertTrue(result.isLeft());
         assertNotNull(result.getLeft());
@@ -90,7 +98,7 @@ class RepoManagerTest {
     }
 
     @Test
-    void createOrUpdateRepository_Error_WhenConnectionStateFails() {
+    void createOrUpdateRepository_Error_WhenConnectionStateFails_ListLookup() {
         String repoURL = "https://example.com/repo.git";
         String project = "ValidProject";
 
@@ -104,7 +112,8 @@ class RepoManagerTest {
         when(repositoryServiceApi.repositoryServiceListRepositories(null, true, null))
                 .thenReturn(repositoryList);
 
-        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+        Either<FailedOperation, V1alpha1Repository> result =
+                listLookupRepoManager.createOrUpdateRepository(repoURL, project);
 
         assertTrue(result.isLeft());
         assertNotNull(result.getLeft());
@@ -112,4 +121,59 @@ class RepoManagerTest {
                 "Failed to create or update the repository https://example.com/repo.git. Details: [Connection status: Failed. Message: Error message]",
                 result.getLeft().message());
     }
+
+    @Test
+    void createOrUpdateRepository_Success_WhenRepositoryFoundByUrl() {
+        String repoURL = "https://example.com/repo.git";
+        String project = "ValidProject";
+
+        V1alpha1Repository repository = new V1alpha1Repository().repo(repoURL).type("git");
+        repository.setConnectionState(
+                new V1alpha1ConnectionState().status("Successful").message("TestMessage"));
+
+        when(repositoryServiceApi.repositoryServiceGet(repoURL, true, project)).thenReturn(repository);
+
+        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+
+        assertTrue(result.isRight());
+        assertEquals(repoURL, result.get().getRepo());
+        verify(repositoryServiceApi).repositoryServiceGet(repoURL, true, project);
+        verify(repositoryServiceApi, never()).repositoryServiceListRepositories(any(), any(), any());
+    }
+
+    @Test
+    void createOrUpdateRepository_Error_WhenRepositoryNotFoundByUrl() {
+        String repoURL = "https://example.com/repo.git";
+        String project = "ValidProject";
+
+        when(repositoryServiceApi.repositoryServiceGet(repoURL, true, project))
+                .thenThrow(HttpClientErrorException.create(
+                        HttpStatus.NOT_FOUND, "Not Found", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8));
+
+        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Repository https://example.com/repo.git not found after creation or update. This might indicate an internal error.",
+                result.getLeft().message());
+    }
+
+    @Test
+    void createOrUpdateRepository_Error_WhenConnectionStateFailsByUrl() {
+        String repoURL = "https://example.com/repo.git";
+        String project = "ValidProject";
+
+        V1alpha1Repository repository = new V1alpha1Repository().repo(repoURL).type("git");
+        repository.setConnectionState(
+                new V1alpha1ConnectionState().status("Failed").message("Error message"));
+
+        when(repositoryServiceApi.repositoryServiceGet(repoURL, true, project)).thenReturn(repository);
+
+        Either<FailedOperation, V1alpha1Repository> result = repoManager.createOrUpdateRepository(repoURL, project);
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Failed to create or update the repository https://example.com/repo.git. Details: [Connection status: Failed. Message: Error message]",
+                result.getLeft().message());
+    }
 }
@@ -0,0 +1,91 @@
+package it.agilelab.witboost.provisioning.argocd.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationDestination;
+import org.openapitools.client.model.V1alpha1ApplicationSource;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.openapitools.client.model.V1alpha1ApplicationStatus;
+import org.openapitools.client.model.V1alpha1ComparedTo;
+import org.openapitools.client.model.V1alpha1Operation;
+import org.openapitools.client.model.V1alpha1OperationState;
+import org.openapitools.client.model.V1alpha1SyncPolicy;
+import org.openapitools.client.model.V1alpha1SyncPolicyAutomated;
+import org.openapitools.client.model.V1alpha1SyncStatus;
+
+class SyncDecisionTest {
+
+    private static final String COMMIT = "4e1243bd22c66e76c2ba9eddc1f91394e57f9f83";
+
+    @Test
+    void decide_Automated_WhenTheSyncPolicyIsAutomated() {
+        V1alpha1ApplicationSpec spec =
+                spec("HEAD").syncPolicy(new V1alpha1SyncPolicy().automated(new V1alpha1SyncPolicyAutomated()));
+
+        assertEquals(SyncDecision.AUTOMATED, SyncDecision.decide(spec, new V1alpha1Application()));
+    }
+
+    @Test
+    void decide_InProgress_WhenAnOperationIsRunning() {
+        V1alpha1Application requested = new V1alpha1Application().operation(new V1alpha1Operation());
+        V1alpha1Application running = new V1alpha1Application()
+                .status(new V1alpha1ApplicationStatus().operationState(new V1alpha1OperationState().phase("Running")));
+
+        assertEquals(SyncDecision.IN_PROGRESS, SyncDecision.decide(spec("HEAD"), requested));
+        assertEquals(SyncDecision.IN_PROGRESS, SyncDecision.decide(spec("HEAD"), running));
+    }
+
+    @Test
+    void decide_UpToDate_WhenSyncedToTheDesiredPinnedRevision() {
+        assertEquals(SyncDecision.UP_TO_DATE, SyncDecision.decide(spec(COMMIT), synced(spec(COMMIT), COMMIT)));
+        assertEquals(SyncDecision.UP_TO_DATE, SyncDecision.decide(spec("1.2.0"), synced(spec("1.2.0"), "1.2.0")));
+    }
+
+    @Test
+    void decide_Required_WhenSyncedAgainstAnotherSource() {
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec(COMMIT), synced(spec("v1"), COMMIT)));
+    }
+
+    @Test
+    void decide_Required_WhenTheTargetRevisionIsSymbolic() {
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec("HEAD"), synced(spec("HEAD"), COMMIT)));
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec("main"), synced(spec("main"), COMMIT)));
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec("v1.2.0"), synced(spec("v1.2.0"), COMMIT)));
+    }
+
+    @Test
+    void decide_Required_WhenOutOfSyncOrUnknown() {
+        V1alpha1Application outOfSync = synced(spec(COMMIT), COMMIT);
+        outOfSync.getStatus().getSync().setStatus("OutOfSync");
+
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec(COMMIT), outOfSync));
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec("HEAD"), new V1alpha1Application()));
+        assertEquals(SyncDecision.REQUIRED, SyncDecision.decide(spec("HEAD"), null));
+    }
+
+    private static V1alpha1ApplicationSpec spec(String targetRevision) {
+        return new V1alpha1ApplicationSpec()
+                .project("project")
+                .source(new V1alpha1ApplicationSource()
+                        .repoURL("https://gitlab.com/repository.git")
+                        .path("manifests")
+                        .targetRevision(targetRevision))
+                .destination(new V1alpha1ApplicationDestination()
+                        .server("https://kubernetes.default.svc")
+                        .namespace("namespace"));
+    }
+
+    private static V1alpha1Application synced(V1alpha1ApplicationSpec comparedTo, String revision) {
+        return new V1alpha1Application()
+                .spec(comparedTo)
+                .status(new V1alpha1ApplicationStatus()
+                        .sync(new V1alpha1SyncStatus()
+                                .status("Synced")
+                                .revision(revision)
+                                .comparedTo(new V1alpha1ComparedTo()
+                                        .source(comparedTo.getSource())
+                                        .destination(comparedTo.getDestination()))));
+    }
+}
@@ -0,0 +1,73 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.model.V1ObjectMeta;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+class ArgoCdJsonMessageConverterTest {
+
+    @Test
+    void write_SkipsNullFields() throws Exception {
+        ArgoCdJsonMessageConverter converter = converter(false);
+        V1alpha1Application application = new V1alpha1Application()
+                .metadata(new V1ObjectMeta().name("app"))
+                .spec(new V1alpha1ApplicationSpec().project("project"));
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(application, V1alpha1Application.class, MediaType.APPLICATION_JSON, output);
+
+        String body = output.getBodyAsString(StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"name\":\"app\""));
+        assertTrue(body.contains("\"project\":\"project\""));
+        assertFalse(body.contains("null"));
+    }
+
+    @Test
+    void read_IgnoresUnknownFields() throws Exception {
+        ArgoCdJsonMessageConverter converter = converter(true);
+        String body = "{\"metadata\":{\"name\":\"app\",\"futureField\":1},\"spec\":{\"project\":\"project\"},"
+                + "\"futureSection\":{\"items\":[1,2,3]}}";
+
+        Object application = converter.read(
+                V1alpha1Application.class, null, new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8)));
+
+        V1alpha1Application read = assertInstanceOf(V1alpha1Application.class, application);
+        assertEquals("app", read.getMetadata().getName());
+        assertEquals("project", read.getSpec().getProject());
+    }
+
+    @Test
+    void createObjectMapper_LeavesTheApplicationMapperUntouched() {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        ObjectMapper argoCdMapper = ArgoCdJsonMessageConverter.createObjectMapper(objectMapper, true);
+
+        assertNotSame(objectMapper, argoCdMapper);
+        assertTrue(objectMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        assertFalse(argoCdMapper.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        assertTrue(objectMapper.getRegisteredModuleIds().isEmpty());
+        assertTrue(argoCdMapper.getRegisteredModuleIds().contains(new BlackbirdModule().getTypeId()));
+    }
+
+    @Test
+    void createObjectMapper_RegistersBlackbirdOnlyWhenEnabled() {
+        ObjectMapper argoCdMapper = ArgoCdJsonMessageConverter.createObjectMapper(new ObjectMapper(), false);
+
+        assertFalse(argoCdMapper.getRegisteredModuleIds().contains(new BlackbirdModule().getTypeId()));
+    }
+
+    private static ArgoCdJsonMessageConverter converter(boolean blackbird) {
+        return new ArgoCdJsonMessageConverter(
+                ArgoCdJsonMessageConverter.createObjectMapper(new ObjectMapper(), blackbird));
+    }
+}
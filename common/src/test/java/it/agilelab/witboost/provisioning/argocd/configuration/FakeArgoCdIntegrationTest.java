@@ -0,0 +1,167 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.model.common.FailedOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.client.ApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.ApplicationWatcher;
+import it.agilelab.witboost.provisioning.argocd.client.ArgoCdResilience;
+import it.agilelab.witboost.provisioning.argocd.client.ProjectManager;
+import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
+import it.agilelab.witboost.provisioning.argocd.fake.Endpoint;
+import it.agilelab.witboost.provisioning.argocd.fake.FakeArgoCd;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
+import it.agilelab.witboost.provisioning.argocd.model.application.Source;
+import it.agilelab.witboost.provisioning.argocd.model.application.SyncPolicy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.ApiClient;
+import org.openapitools.client.api.ApplicationServiceApi;
+import org.openapitools.client.api.ProjectServiceApi;
+import org.openapitools.client.api.RepositoryServiceApi;
+import org.openapitools.client.model.V1alpha1AppProject;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1Repository;
+import org.springframework.web.client.RestTemplate;
+
+/** Runs the managers, with the client and the resilience of the adapter, against an in-memory ArgoCD. */
+class FakeArgoCdIntegrationTest {
+
+    private static final String REPO_URL = "https://gitlab.com/org/repo.git";
+    private static final String COMMIT = "4e1243bd22c66e76c2ba9eddc1f91394e57f9f83";
+
+    private FakeArgoCd argoCd;
+    private ArgoCdResilience resilience;
+    private ProjectManager projectManager;
+    private RepoManager repoManager;
+    private ApplicationManager applicationManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        argoCd = FakeArgoCd.start().syncDuration(Duration.ofMillis(100));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        ArgoCdConfiguration.Resilience configuration = new ArgoCdConfiguration.Resilience();
+        configuration.setInitialBackoff(Duration.ofMillis(1));
+        resilience = new ArgoCdResilience(configuration, meterRegistry);
+
+        ObjectMapper argoCdMapper = ArgoCdJsonMessageConverter.createObjectMapper(new ObjectMapper(), false);
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setUriTemplateHandler(TechAdapterConfiguration.argoCdUriTemplateHandler());
+        restTemplate.getMessageConverters().add(0, new ArgoCdJsonMessageConverter(argoCdMapper));
+        restTemplate.getInterceptors().add(resilience);
+        ApiClient apiClient = new ApiClient(restTemplate);
+        apiClient.addDefaultHeader("Authorization", "Bearer " + argoCd.token());
+        apiClient.addDefaultHeader("Content-Type", "application/json");
+        apiClient.setBasePath(argoCd.baseUrl());
+
+        GitConfiguration gitConfiguration = new GitConfiguration();
+        gitConfiguration.setUsername("user");
+        gitConfiguration.setToken("token");
+        ApplicationWatcher watcher =
+                new ApplicationWatcher(HttpClient.newHttpClient(), argoCdMapper, argoCd.baseUrl(), argoCd.token());
+
+        projectManager = new ProjectManager(
+                new ProjectServiceApi(apiClient), meterRegistry, Duration.ZERO, 3, Duration.ofMillis(10));
+        repoManager = new RepoManager(new RepositoryServiceApi(apiClient), gitConfiguration, false, meterRegistry);
+        applicationManager = new ApplicationManager(
+                new ApplicationServiceApi(apiClient), watcher, Duration.ofSeconds(10), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resilience.shutdown();
+        argoCd.close();
+    }
+
+    @Test
+    void testProvisioning_WaitsForTheSyncAndSkipsUnchangedApplications() {
+        ArgoCDApplicationSpecific specific = specific();
+        specific.setSource(new Source(REPO_URL, "app", COMMIT));
+
+        Either<FailedOperation, V1alpha1AppProject> project = projectManager.createOrUpdateProject(
+                specific.getProject(), specific.getDestination(), specific.getSource());
+        Either<FailedOperation, V1alpha1Repository> repository =
+                repoManager.createOrUpdateRepository(REPO_URL, specific.getProject());
+        Either<FailedOperation, V1alpha1Application> application =
+                applicationManager.createOrUpdateApplication(specific);
+
+        assertTrue(project.isRight());
+        assertTrue(repository.isRight());
+        assertTrue(application.isRight());
+        assertEquals("Synced", application.get().getStatus().getSync().getStatus());
+        assertEquals("Healthy", application.get().getStatus().getHealth().getStatus());
+        JsonNode stored = argoCd.application(specific.getName()).orElseThrow();
+        assertFalse(stored.at("/metadata/annotations").isEmpty());
+        assertFalse(argoCd.repository(REPO_URL).orElseThrow().has("password"));
+
+        assertTrue(applicationManager.createOrUpdateApplication(specific).isRight());
+        assertEquals(1, argoCd.requests(Endpoint.APPLICATION_CREATE));
+        assertEquals(1, argoCd.requests(Endpoint.APPLICATION_SYNC));
+    }
+
+    @Test
+    void testProvisioning_SyncsUnchangedApplicationsAgain_WhenTheTargetRevisionIsABranch() {
+        ArgoCDApplicationSpecific specific = specific();
+        assertTrue(projectManager
+                .createOrUpdateProject(specific.getProject(), specific.getDestination(), specific.getSource())
+                .isRight());
+
+        assertTrue(applicationManager.createOrUpdateApplication(specific).isRight());
+        assertTrue(applicationManager.createOrUpdateApplication(specific).isRight());
+
+        assertEquals(1, argoCd.requests(Endpoint.APPLICATION_CREATE));
+        assertEquals(2, argoCd.requests(Endpoint.APPLICATION_SYNC));
+    }
+
+    @Test
+    void testRepository_IsFoundByItsUrlWithSlashes() {
+        String repoURL = "https://gitlab.com/group/subgroup/repo.git";
+
+        Either<FailedOperation, V1alpha1Repository> repository =
+                repoManager.createOrUpdateRepository(repoURL, "my-project");
+
+        assertTrue(repository.isRight());
+        assertEquals(repoURL, repository.get().getRepo());
+        assertEquals(1, argoCd.requests(Endpoint.REPOSITORY_GET));
+    }
+
+    @Test
+    void testProvisioning_RetriesTheFailedReads() {
+        argoCd.behavior(Endpoint.REPOSITORY_GET).errorRate(1);
+
+        Either<FailedOperation, V1alpha1Repository> repository =
+                repoManager.createOrUpdateRepository(REPO_URL, "my-project");
+
+        assertTrue(repository.isLeft());
+        assertEquals(3, argoCd.requests(Endpoint.REPOSITORY_GET));
+        assertEquals(1, argoCd.requests(Endpoint.REPOSITORY_CREATE));
+    }
+
+    @Test
+    void testProvisioning_FailsWhenTheProjectDoesNotExist() {
+        Either<FailedOperation, V1alpha1Application> application =
+                applicationManager.createOrUpdateApplication(specific());
+
+        assertTrue(application.isLeft());
+        assertTrue(argoCd.application("my-app").isEmpty());
+    }
+
+    private static ArgoCDApplicationSpecific specific() {
+        ArgoCDApplicationSpecific specific = new ArgoCDApplicationSpecific();
+        specific.setName("my-app");
+        specific.setProject("my-project");
+        specific.setDestination(new Destination("https://kubernetes.default.svc", "default"));
+        specific.setSource(new Source(REPO_URL, "app", "main"));
+        specific.setSyncPolicy(new SyncPolicy(null));
+        return specific;
+    }
+}
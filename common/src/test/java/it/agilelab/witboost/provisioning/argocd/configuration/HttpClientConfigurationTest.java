@@ -0,0 +1,57 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+@SpringBootTest
+class HttpClientConfigurationTest {
+
+    @Autowired
+    private ClientHttpRequestFactory argoCdRequestFactory;
+
+    @Test
+    void testPooledRequestFactoryByDefault() {
+        assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, argoCdRequestFactory);
+    }
+
+    @Test
+    void testPoolMetricsRegistered() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ArgoCdConfiguration.Http http = new ArgoCdConfiguration.Http();
+        http.setMaxConnections(42);
+
+        ClientHttpRequestFactory requestFactory = HttpClientConfiguration.createRequestFactory(http, meterRegistry);
+
+        assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, requestFactory);
+        assertEquals(
+                42.0,
+                meterRegistry
+                        .get(HttpClientConfiguration.POOL_METRIC_PREFIX + "max")
+                        .gauge()
+                        .value());
+        assertEquals(
+                0.0,
+                meterRegistry
+                        .get(HttpClientConfiguration.POOL_METRIC_PREFIX + "leased")
+                        .gauge()
+                        .value());
+    }
+
+    @Test
+    void testHttp2RequestFactory() {
+        ArgoCdConfiguration.Http http = new ArgoCdConfiguration.Http();
+        http.setHttp2(true);
+
+        ClientHttpRequestFactory requestFactory =
+                HttpClientConfiguration.createRequestFactory(http, new SimpleMeterRegistry());
+
+        assertInstanceOf(JdkClientHttpRequestFactory.class, requestFactory);
+    }
+}
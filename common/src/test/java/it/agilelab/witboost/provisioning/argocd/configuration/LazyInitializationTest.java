@@ -0,0 +1,33 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "spring.main.lazy-initialization=true")
+class LazyInitializationTest {
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Test
+    void testConfigurationStaysEager() {
+        for (String name : beanFactory.getBeanNamesForType(ArgoCdConfiguration.class)) {
+            assertTrue(beanFactory.containsSingleton(name), name);
+        }
+    }
+
+    @Test
+    void testClientsCreatedOnFirstUse() {
+        String[] names = beanFactory.getBeanNamesForType(RepoManager.class);
+
+        assertEquals(1, names.length);
+        assertFalse(beanFactory.containsSingleton(names[0]));
+        assertNotNull(beanFactory.getBean(RepoManager.class));
+        assertTrue(beanFactory.containsSingleton(names[0]));
+    }
+}
@@ -0,0 +1,64 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.model.Specific;
+import com.witboost.provisioning.model.Workload;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.model.application.SyncPolicy;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.openapitools.client.model.V1alpha1Application;
+import org.openapitools.client.model.V1alpha1ApplicationSpec;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    NativeRuntimeHintsTest() {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testArgoCdModelsRegistered() {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onType(V1alpha1Application.class)
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(V1alpha1Application.class, "getSpec")
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(V1alpha1ApplicationSpec.class, "setProject")
+                .test(hints));
+    }
+
+    @Test
+    void testDescriptorModelsRegistered() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Workload.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Specific.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(ArgoCDApplicationSpecific.class, "setSyncPolicy")
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onField(ArgoCDApplicationSpecific.class, "destination")
+                .test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(SyncPolicy.class).test(hints));
+    }
+
+    @Test
+    void testVirtualThreadExecutorRegistered() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Executors.class).test(hints));
+    }
+
+    @Test
+    void testFindTypes_SkipsAnonymousClasses() {
+        assertTrue(
+                NativeRuntimeHints.findTypes(
+                                "it.agilelab.witboost.provisioning.argocd.model",
+                                getClass().getClassLoader())
+                        .stream()
+                        .noneMatch(Class::isAnonymousClass));
+    }
+}
@@ -0,0 +1,126 @@
+package it.agilelab.witboost.provisioning.argocd.configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.openapitools.client.ApiClient;
+import org.openapitools.client.api.RepositoryServiceApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestTemplate;
+
+class VirtualThreadsTest {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final List<String> CHECKED_PACKAGES = List.of(
+            "ch.qos.logback",
+            "org.slf4j",
+            "org.apache.hc",
+            "org.springframework.web",
+            "org.openapitools",
+            "it.agilelab");
+
+    private final Logger logger = LoggerFactory.getLogger(VirtualThreadsTest.class);
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void testUnsupportedBeforeJava21() {
+        assertFalse(VirtualThreads.isSupported());
+        assertThrows(IllegalStateException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+    }
+
+    /**
+     * Calls a stubbed ArgoCD through the pooled client from many virtual threads, logging along the way, and
+     * checks that JFR reports no virtual thread pinned to its carrier by the logging or client code.
+     */
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void testLoggingAndClientDoNotPinCarrierThreads() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.createContext("/", exchange -> {
+            byte[] body = "{\"repo\":\"https://gitlab.com/repo.git\",\"connectionState\":{\"status\":\"Successful\"}}"
+                    .getBytes(StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        ArgoCdConfiguration.Http http = new ArgoCdConfiguration.Http();
+        http.setMaxConnections(4);
+        http.setMaxConnectionsPerRoute(4);
+        ApiClient apiClient = new ApiClient(
+                new RestTemplate(HttpClientConfiguration.createRequestFactory(http, new SimpleMeterRegistry())));
+        apiClient.setBasePath("http://127.0.0.1:" + server.getAddress().getPort());
+        GitConfiguration gitConfiguration = new GitConfiguration();
+        gitConfiguration.setUsername("user");
+        gitConfiguration.setToken("token");
+        RepoManager repoManager = new RepoManager(new RepositoryServiceApi(apiClient), gitConfiguration);
+
+        Path dump = Files.createTempFile("pinning", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+
+            // More threads than pooled connections, so that virtual threads park while waiting for a lease
+            ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("pinning-");
+            List<Future<?>> calls = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                int call = i;
+                calls.add(executor.submit(() -> {
+                    logger.info("Creating the repository, call {}", call);
+                    assertTrue(repoManager
+                            .createOrUpdateRepository("https://gitlab.com/repo.git", "project")
+                            .isRight());
+                }));
+            }
+            for (Future<?> call : calls) call.get();
+            executor.shutdown();
+
+            recording.stop();
+            recording.dump(dump);
+        } finally {
+            server.stop(0);
+        }
+
+        List<String> pinned = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+            if (!event.getEventType().getName().equals(PINNED_EVENT) || event.getStackTrace() == null) continue;
+            event.getStackTrace().getFrames().stream()
+                    .map(RecordedFrame::getMethod)
+                    .map(method -> method.getType().getName() + "." + method.getName())
+                    .filter(frame -> CHECKED_PACKAGES.stream().anyMatch(frame::startsWith))
+                    .findFirst()
+                    .ifPresent(pinned::add);
+        }
+        Files.deleteIfExists(dump);
+
+        assertEquals(List.of(), pinned, "Virtual threads pinned by the logging or client code");
+    }
+}
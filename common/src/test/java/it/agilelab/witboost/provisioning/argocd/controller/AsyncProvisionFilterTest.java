@@ -0,0 +1,137 @@
+package it.agilelab.witboost.provisioning.argocd.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import it.agilelab.witboost.provisioning.argocd.service.AsyncArgocdProvisionService;
+import it.agilelab.witboost.provisioning.argocd.service.ProvisionTaskRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class AsyncProvisionFilterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProvisionTaskRegistry registry = new ProvisionTaskRegistry(Duration.ofMinutes(10), 100);
+    private final AsyncProvisionFilter filter = new AsyncProvisionFilter(registry, objectMapper);
+
+    @Test
+    void provision_AnswersTheTokenWhenATaskIsSubmitted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/provision");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            req.setAttribute(AsyncArgocdProvisionService.TOKEN_ATTRIBUTE, "token");
+            res.setContentType("application/json");
+            res.getWriter().write("{\"status\":\"COMPLETED\",\"result\":\"\"}");
+        });
+
+        assertEquals(202, response.getStatus());
+        assertEquals("application/json", response.getContentType());
+        assertEquals("\"token\"", response.getContentAsString());
+    }
+
+    @Test
+    void provision_LeavesTheResponseOfTheFramework_WhenNoTaskIsSubmitted() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/unprovision");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> {
+            ((HttpServletResponse) res).setStatus(400);
+            res.getWriter().write("{\"errors\":[\"invalid descriptor\"]}");
+        });
+
+        assertEquals(400, response.getStatus());
+        assertEquals("{\"errors\":[\"invalid descriptor\"]}", response.getContentAsString());
+    }
+
+    @Test
+    void status_ReportsTheRunningTaskAndItsSteps() throws Exception {
+        ProvisionTask task =
+                registry.register("provision", "component", List.of(ProvisionStep.PROJECT, ProvisionStep.SYNC));
+        task.update(ProvisionStep.PROJECT, StepStatus.RUNNING);
+        task.update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+        task.update(ProvisionStep.SYNC, StepStatus.RUNNING);
+
+        JsonNode status = status(task.getToken());
+
+        assertEquals("RUNNING", status.get("status").asText());
+        assertEquals(
+                "The provision of component is running", status.get("result").asText());
+        assertFalse(status.has("info"));
+        assertEquals("PROJECT: RUNNING", status.at("/logs/0/message").asText());
+        assertEquals("PROJECT", status.at("/logs/0/phase").asText());
+        assertEquals("PROJECT: COMPLETED", status.at("/logs/1/message").asText());
+        assertEquals("SYNC: RUNNING", status.at("/logs/2/message").asText());
+        assertEquals(3, status.get("logs").size());
+    }
+
+    @Test
+    void status_ReportsTheInfoOfTheCompletedTask() throws Exception {
+        ProvisionTask task = registry.register("provision", "component", List.of(ProvisionStep.SYNC));
+        task.complete(ProvisionInfo.builder()
+                .publicInfo(Optional.of(Map.of("url", "https://argocd/applications/component")))
+                .build());
+
+        JsonNode status = status(task.getToken());
+
+        assertEquals("COMPLETED", status.get("status").asText());
+        assertEquals(
+                "https://argocd/applications/component",
+                status.at("/info/publicInfo/url").asText());
+        assertTrue(status.at("/info/privateInfo").isEmpty());
+    }
+
+    @Test
+    void status_ReportsTheErrorOfTheFailedTask() throws Exception {
+        ProvisionTask task = registry.register("unprovision", "component", List.of(ProvisionStep.DELETE));
+        task.update(ProvisionStep.DELETE, StepStatus.RUNNING);
+        task.update(ProvisionStep.DELETE, StepStatus.FAILED);
+        task.fail(new FailedOperation("Deletion failed", List.of(new Problem("Deletion error"))));
+
+        JsonNode status = status(task.getToken());
+
+        assertEquals("FAILED", status.get("status").asText());
+        assertEquals("Deletion failed", status.get("result").asText());
+        assertEquals("INFO", status.at("/logs/0/level").asText());
+        assertEquals("ERROR", status.at("/logs/1/level").asText());
+    }
+
+    @Test
+    void status_IsLeftToTheFramework_WhenTheTokenIsUnknown() throws Exception {
+        AtomicBoolean forwarded = new AtomicBoolean();
+        FilterChain chain = (req, res) -> forwarded.set(true);
+
+        filter.doFilter(
+                new MockHttpServletRequest("GET", "/v1/provision/unknown/status"),
+                new MockHttpServletResponse(),
+                chain);
+
+        assertTrue(forwarded.get());
+    }
+
+    private JsonNode status(String token) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(
+                new MockHttpServletRequest("GET", "/v1/provision/" + token + "/status"),
+                response,
+                (req, res) -> fail("The status of a known task must not reach the framework"));
+
+        assertEquals(200, response.getStatus());
+        return objectMapper.readTree(response.getContentAsString());
+    }
+}
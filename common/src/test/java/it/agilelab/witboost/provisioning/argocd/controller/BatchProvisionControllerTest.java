@@ -0,0 +1,58 @@
+package it.agilelab.witboost.provisioning.argocd.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
+import it.agilelab.witboost.provisioning.argocd.service.ArgocdProvisionService;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class BatchProvisionControllerTest {
+
+    private final ArgocdProvisionService argocdProvisionService = mock(ArgocdProvisionService.class);
+    private final BatchProvisionController controller = new BatchProvisionController(argocdProvisionService);
+
+    @Test
+    void provisionBatch_ReportsTheOutcomeOfEveryApplication() {
+        List<ArgoCDApplicationSpecific> applications = List.of(application("app-1"), application("app-2"));
+        when(argocdProvisionService.getMaxBatchSize()).thenReturn(2);
+        when(argocdProvisionService.provisionBatch(applications))
+                .thenReturn(List.of(
+                        Either.left(new FailedOperation("Project creation failed", List.of(new Problem("error")))),
+                        Either.left(new FailedOperation("Application creation failed", List.of()))));
+
+        List<Map<String, Object>> response =
+                controller.provisionBatch(applications).getBody();
+
+        assertEquals("app-1", response.get(0).get("name"));
+        assertEquals("FAILED", response.get(0).get("status"));
+        assertEquals("Project creation failed", response.get(0).get("error"));
+        assertEquals("Application creation failed", response.get(1).get("error"));
+    }
+
+    @Test
+    void provisionBatch_RejectsBatchesLargerThanTheMaximum() {
+        when(argocdProvisionService.getMaxBatchSize()).thenReturn(1);
+
+        ResponseStatusException exception = assertThrows(
+                ResponseStatusException.class,
+                () -> controller.provisionBatch(List.of(application("app-1"), application("app-2"))));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+        verify(argocdProvisionService, never()).provisionBatch(any());
+    }
+
+    private ArgoCDApplicationSpecific application(String name) {
+        ArgoCDApplicationSpecific application = new ArgoCDApplicationSpecific();
+        application.setName(name);
+        application.setProject("project");
+        return application;
+    }
+}
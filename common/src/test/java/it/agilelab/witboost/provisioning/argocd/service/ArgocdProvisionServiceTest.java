@@ -2,6 +2,8 @@ package it.agilelab.witboost.provisioning.argocd.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -11,17 +13,37 @@ import com.witboost.provisioning.model.common.FailedOperation;
 import com.witboost.provisioning.model.common.Problem;
 import com.witboost.provisioning.model.request.ProvisionOperationRequest;
 import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.vavr.control.Either;
 import it.agilelab.witboost.provisioning.argocd.client.ApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncApplicationManager;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncProjectManager;
+import it.agilelab.witboost.provisioning.argocd.client.AsyncRepoManager;
+import it.agilelab.witboost.provisioning.argocd.client.NonBlockingManagers;
 import it.agilelab.witboost.provisioning.argocd.client.ProjectManager;
 import it.agilelab.witboost.provisioning.argocd.client.RepoManager;
 import it.agilelab.witboost.provisioning.argocd.model.application.ArgoCDApplicationSpecific;
 import it.agilelab.witboost.provisioning.argocd.model.application.Destination;
 import it.agilelab.witboost.provisioning.argocd.model.application.Source;
 import it.agilelab.witboost.provisioning.argocd.model.application.SyncPolicy;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -54,7 +76,7 @@ public class ArgocdProvisionServiceTest {
 
     @BeforeEach
     public void setUp() {
-        argocdProvisionService = new ArgocdProvisionService(repoManager, applicationManager, projectManager);
+        argocdProvisionService = service().build();
 
         workload = new Workload<>();
         workload.setName("workloadName");
@@ -91,7 +113,7 @@ public class ArgocdProvisionServiceTest {
                         .health(new V1alpha1HealthStatus().status("Healthy"))
                         .sync(new V1alpha1SyncStatus().status("Synced")));
 
-        when(applicationManager.createOrUpdateApplication(any())).thenReturn(Either.right(newApplication));
+        when(applicationManager.createOrUpdateApplication(any(), any())).thenReturn(Either.right(newApplication));
 
         Either<FailedOperation, ProvisionInfo> result = argocdProvisionService.provision(operationRequest);
 
@@ -114,7 +136,7 @@ public class ArgocdProvisionServiceTest {
                         .health(new V1alpha1HealthStatus().status(null))
                         .sync(new V1alpha1SyncStatus().status(null)));
 
-        when(applicationManager.createOrUpdateApplication(any())).thenReturn(Either.right(newApplication));
+        when(applicationManager.createOrUpdateApplication(any(), any())).thenReturn(Either.right(newApplication));
 
         Either<FailedOperation, ProvisionInfo> result = argocdProvisionService.provision(operationRequest);
 
@@ -128,6 +150,7 @@ public class ArgocdProvisionServiceTest {
         when(projectManager.createOrUpdateProject(any(), any(), any()))
                 .thenReturn(Either.left(new FailedOperation(
                         "Project creation failed", Collections.singletonList(new Problem("Project error")))));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
 
         Either<FailedOperation, ProvisionInfo> result = argocdProvisionService.provision(operationRequest);
 
@@ -149,6 +172,104 @@ public class ArgocdProvisionServiceTest {
         assertEquals("Repo creation failed", result.getLeft().message());
     }
 
+    @Test
+    public void testProvisionFailure_ProjectAndRepositoryErrors() {
+        when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+        when(projectManager.createOrUpdateProject(any(), any(), any()))
+                .thenReturn(Either.left(new FailedOperation(
+                        "Project creation failed", Collections.singletonList(new Problem("Project error")))));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString()))
+                .thenReturn(Either.left(new FailedOperation(
+                        "Repo creation failed", Collections.singletonList(new Problem("Repo error")))));
+
+        Either<FailedOperation, ProvisionInfo> result = argocdProvisionService.provision(operationRequest);
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Project creation failed; Repo creation failed",
+                result.getLeft().message());
+        assertEquals(2, result.getLeft().problems().size());
+        verify(applicationManager, never()).createOrUpdateApplication(any(), any());
+    }
+
+    @Test
+    public void testProvision_RunsProjectAndRepositoryConcurrently() {
+        ExecutorService stageExecutor = Executors.newFixedThreadPool(2);
+        argocdProvisionService = service().stageExecutor(stageExecutor).build();
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+        when(projectManager.createOrUpdateProject(any(), any(), any())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS)
+                    ? Either.right(null)
+                    : Either.left(new FailedOperation("Not concurrent", Collections.emptyList()));
+        });
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            return bothStarted.await(5, TimeUnit.SECONDS)
+                    ? Either.right(null)
+                    : Either.left(new FailedOperation("Not concurrent", Collections.emptyList()));
+        });
+        when(applicationManager.createOrUpdateApplication(any(), any()))
+                .thenReturn(Either.left(new FailedOperation(
+                        "Application creation failed", Collections.singletonList(new Problem("Application error")))));
+
+        Either<FailedOperation, ProvisionInfo> result = argocdProvisionService.provision(operationRequest);
+        argocdProvisionService.shutdown();
+
+        assertTrue(result.isLeft());
+        assertEquals("Application creation failed", result.getLeft().message());
+    }
+
+    @Test
+    public void testProvision_AttachesDuplicateRequestsToTheRunningOne() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        argocdProvisionService =
+                new ServiceBuilder().meterRegistry(meterRegistry).build();
+        CountDownLatch applicationStarted = new CountDownLatch(1);
+        CountDownLatch applicationReleased = new CountDownLatch(1);
+
+        when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+        when(projectManager.createOrUpdateProject(any(), any(), any())).thenReturn(Either.right(null));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
+        when(applicationManager.createOrUpdateApplication(any(), any())).thenAnswer(invocation -> {
+            applicationStarted.countDown();
+            applicationReleased.await(5, TimeUnit.SECONDS);
+            return Either.right(new V1alpha1Application()
+                    .metadata(new V1ObjectMeta().name("application"))
+                    .spec(new V1alpha1ApplicationSpec()
+                            .project("project")
+                            .source(new V1alpha1ApplicationSource().repoURL("https://fake-url.com"))));
+        });
+        ProvisionProgress duplicateProgress = mock(ProvisionProgress.class);
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+
+        Future<Either<FailedOperation, ProvisionInfo>> first =
+                requests.submit(() -> argocdProvisionService.provision(operationRequest));
+        assertTrue(applicationStarted.await(5, TimeUnit.SECONDS));
+        Future<Either<FailedOperation, ProvisionInfo>> duplicate =
+                requests.submit(() -> argocdProvisionService.provision(operationRequest, duplicateProgress));
+        Counter deduplicated = meterRegistry
+                .get(ProvisionMetrics.DEDUPLICATED_METRIC)
+                .tag("operation", "provision")
+                .counter();
+        for (int i = 0; i < 500 && deduplicated.count() == 0; i++) Thread.sleep(10);
+        applicationReleased.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        assertEquals(1, deduplicated.count());
+        verify(projectManager, times(1)).createOrUpdateProject(any(), any(), any());
+        verify(applicationManager, times(1)).createOrUpdateApplication(any(), any());
+        verify(duplicateProgress).update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+        verify(duplicateProgress).update(ProvisionStep.REPOSITORY, StepStatus.COMPLETED);
+
+        // Once completed, the same application is provisioned again
+        assertTrue(argocdProvisionService.provision(operationRequest).isRight());
+        verify(applicationManager, times(2)).createOrUpdateApplication(any(), any());
+        requests.shutdown();
+    }
+
     @Test
     public void testProvisionFailure_ApplicationError() {
 
@@ -156,7 +277,7 @@ public class ArgocdProvisionServiceTest {
         when(projectManager.createOrUpdateProject(any(), any(), any())).thenReturn(Either.right(null));
         when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
 
-        when(applicationManager.createOrUpdateApplication(any()))
+        when(applicationManager.createOrUpdateApplication(any(), any()))
                 .thenReturn(Either.left(new FailedOperation(
                         "Application creation failed", Collections.singletonList(new Problem("Application error")))));
 
@@ -195,4 +316,230 @@ public class ArgocdProvisionServiceTest {
         assertTrue(result.isLeft());
         assertEquals("Deletion failed", result.getLeft().message());
     }
+
+    @Test
+    public void testProvisionBatch_DeduplicatesProjectAndRepositorySetup() {
+        List<ArgoCDApplicationSpecific> applications = List.of(
+                batchApplication("app-1", "project-a", "https://gitlab.com/repo-1.git"),
+                batchApplication("app-2", "project-a", "https://gitlab.com/repo-1.git"),
+                batchApplication("app-3", "project-b", "https://gitlab.com/repo-1.git"),
+                batchApplication("app-4", "project-b", "https://gitlab.com/repo-2.git"));
+        when(projectManager.createOrUpdateProject(anyString(), anyList())).thenReturn(Either.right(null));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
+        when(applicationManager.createOrUpdateApplication(any(), any())).thenAnswer(invocation -> {
+            ArgoCDApplicationSpecific application = invocation.getArgument(0);
+            return Either.right(new V1alpha1Application()
+                    .metadata(new V1ObjectMeta().name(application.getName()))
+                    .spec(new V1alpha1ApplicationSpec()
+                            .project(application.getProject())
+                            .source(new V1alpha1ApplicationSource()
+                                    .repoURL(application.getSource().getRepoURL()))));
+        });
+
+        List<Either<FailedOperation, ProvisionInfo>> results = argocdProvisionService.provisionBatch(applications);
+
+        assertEquals(4, results.size());
+        assertTrue(results.stream().allMatch(Either::isRight));
+        assertTrue(((Map) results.get(3).get().getPublicInfo().get())
+                .get("name")
+                .toString()
+                .contains("app-4"));
+        verify(projectManager).createOrUpdateProject("project-a", applications.subList(0, 2));
+        verify(projectManager).createOrUpdateProject("project-b", applications.subList(2, 4));
+        verify(repoManager).createOrUpdateRepository("https://gitlab.com/repo-1.git", "project-a");
+        verify(repoManager).createOrUpdateRepository("https://gitlab.com/repo-1.git", "project-b");
+        verify(repoManager).createOrUpdateRepository("https://gitlab.com/repo-2.git", "project-b");
+        verify(repoManager, times(3)).createOrUpdateRepository(anyString(), anyString());
+        verify(applicationManager, times(4)).createOrUpdateApplication(any(), any());
+    }
+
+    @Test
+    public void testProvisionBatch_SetupFailureOnlyAffectsItsApplications() {
+        List<ArgoCDApplicationSpecific> applications = List.of(
+                batchApplication("app-1", "project-a", "https://gitlab.com/repo-1.git"),
+                batchApplication("app-2", "project-b", "https://gitlab.com/repo-1.git"));
+        when(projectManager.createOrUpdateProject(eq("project-a"), anyList()))
+                .thenReturn(Either.left(new FailedOperation(
+                        "Project creation failed", Collections.singletonList(new Problem("Project error")))));
+        when(projectManager.createOrUpdateProject(eq("project-b"), anyList())).thenReturn(Either.right(null));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
+        when(applicationManager.createOrUpdateApplication(any(), any()))
+                .thenReturn(Either.right(new V1alpha1Application()
+                        .metadata(new V1ObjectMeta().name("app-2"))
+                        .spec(new V1alpha1ApplicationSpec()
+                                .project("project-b")
+                                .source(new V1alpha1ApplicationSource().repoURL("https://gitlab.com/repo-1.git")))));
+
+        List<Either<FailedOperation, ProvisionInfo>> results = argocdProvisionService.provisionBatch(applications);
+
+        assertTrue(results.get(0).isLeft());
+        assertEquals("Project creation failed", results.get(0).getLeft().message());
+        assertTrue(results.get(1).isRight());
+        verify(applicationManager, times(1)).createOrUpdateApplication(any(), any());
+    }
+
+    @Test
+    public void testProvisionBatch_ProvisionsEveryApplicationLikeASingleOne() {
+        ArgoCDApplicationSpecific invalid = batchApplication("app-2", "project-a", "https://gitlab.com/repo-1.git");
+        invalid.setSource(null);
+        List<ArgoCDApplicationSpecific> applications = List.of(
+                batchApplication("app-1", "project-a", "https://gitlab.com/repo-1.git"),
+                invalid,
+                batchApplication("app-3", "project-a", "https://gitlab.com/repo-1.git"));
+        when(projectManager.createOrUpdateProject(anyString(), anyList())).thenReturn(Either.right(null));
+        when(repoManager.createOrUpdateRepository(anyString(), anyString())).thenReturn(Either.right(null));
+        when(applicationManager.createOrUpdateApplication(any(), any()))
+                .thenReturn(Either.right(new V1alpha1Application()
+                        .metadata(new V1ObjectMeta().name("application"))
+                        .spec(new V1alpha1ApplicationSpec()
+                                .project("project-a")
+                                .source(new V1alpha1ApplicationSource().repoURL("https://gitlab.com/repo-1.git")))));
+
+        List<Either<FailedOperation, ProvisionInfo>> results = argocdProvisionService.provisionBatch(applications);
+
+        assertTrue(results.get(0).isRight());
+        assertTrue(results.get(1).isLeft());
+        assertEquals(
+                "Invalid ArgoCD application app-2: source must not be null",
+                results.get(1).getLeft().message());
+        assertTrue(results.get(2).isRight());
+        verify(projectManager).createOrUpdateProject("project-a", List.of(applications.get(0), applications.get(2)));
+        verify(applicationManager, times(2)).createOrUpdateApplication(any(), any());
+    }
+
+    @Test
+    public void testProvisionBatch_RejectsBatchesLargerThanTheMaximum() {
+        argocdProvisionService = service().maxBatchSize(1).build();
+        List<ArgoCDApplicationSpecific> applications = List.of(
+                batchApplication("app-1", "project-a", "https://gitlab.com/repo-1.git"),
+                batchApplication("app-2", "project-a", "https://gitlab.com/repo-1.git"));
+
+        IllegalArgumentException exception =
+                assertThrows(IllegalArgumentException.class, () -> argocdProvisionService.provisionBatch(applications));
+
+        assertEquals("A batch can provision at most 1 applications, 2 were requested", exception.getMessage());
+        verifyNoInteractions(projectManager, repoManager, applicationManager);
+    }
+
+    @Test
+    public void testProvisionAsync_UsesNonBlockingManagers() {
+        AsyncRepoManager asyncRepoManager = mock(AsyncRepoManager.class);
+        AsyncApplicationManager asyncApplicationManager = mock(AsyncApplicationManager.class);
+        AsyncProjectManager asyncProjectManager = mock(AsyncProjectManager.class);
+        ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+        NonBlockingManagers nonBlocking =
+                new NonBlockingManagers(asyncRepoManager, asyncApplicationManager, asyncProjectManager, ioExecutor);
+        argocdProvisionService = service().nonBlocking(nonBlocking).build();
+
+        when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+        when(asyncProjectManager.createOrUpdateProject(any(), any(), any()))
+                .thenReturn(CompletableFuture.supplyAsync(() -> Either.right(null), ioExecutor));
+        when(asyncRepoManager.createOrUpdateRepository(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(Either.right(null)));
+        when(asyncApplicationManager.createOrUpdateApplication(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Either.right(new V1alpha1Application()
+                        .metadata(new V1ObjectMeta().name("application"))
+                        .spec(new V1alpha1ApplicationSpec()
+                                .project("project")
+                                .source(new V1alpha1ApplicationSource().repoURL("https://fake-url.com"))))));
+        ProvisionProgress progress = mock(ProvisionProgress.class);
+
+        Either<FailedOperation, ProvisionInfo> result = argocdProvisionService
+                .provisionAsync(operationRequest, progress)
+                .join();
+        nonBlocking.shutdown();
+
+        assertTrue(argocdProvisionService.isNonBlocking());
+        assertTrue(result.isRight());
+        verify(progress).update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+        verify(progress).update(ProvisionStep.REPOSITORY, StepStatus.COMPLETED);
+        verifyNoInteractions(projectManager, repoManager, applicationManager);
+    }
+
+    @Test
+    public void testProvisionAsync_ProjectErrorSkipsApplication() {
+        AsyncRepoManager asyncRepoManager = mock(AsyncRepoManager.class);
+        AsyncApplicationManager asyncApplicationManager = mock(AsyncApplicationManager.class);
+        AsyncProjectManager asyncProjectManager = mock(AsyncProjectManager.class);
+        argocdProvisionService = service()
+                .nonBlocking(new NonBlockingManagers(
+                        asyncRepoManager, asyncApplicationManager, asyncProjectManager, mock(ExecutorService.class)))
+                .build();
+
+        when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+        when(asyncProjectManager.createOrUpdateProject(any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Either.left(new FailedOperation(
+                        "Project creation failed", Collections.singletonList(new Problem("Project error"))))));
+        when(asyncRepoManager.createOrUpdateRepository(anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(Either.right(null)));
+
+        Either<FailedOperation, ProvisionInfo> result = argocdProvisionService
+                .provisionAsync(operationRequest, ProvisionProgress.NOOP)
+                .join();
+
+        assertTrue(result.isLeft());
+        assertEquals("Project creation failed", result.getLeft().message());
+        verifyNoInteractions(asyncApplicationManager);
+    }
+
+    private ArgoCDApplicationSpecific batchApplication(String name, String project, String repoURL) {
+        ArgoCDApplicationSpecific application = new ArgoCDApplicationSpecific();
+        application.setName(name);
+        application.setProject(project);
+        Destination destination = new Destination();
+        destination.setNamespace(name);
+        destination.setServer("https://kubernetes.default.svc");
+        application.setDestination(destination);
+        application.setSource(new Source("folderPath", repoURL, "HEAD"));
+        application.setSyncPolicy(new SyncPolicy());
+        return application;
+    }
+
+    private ServiceBuilder service() {
+        return new ServiceBuilder();
+    }
+
+    /** Builds the service under test around the mocked managers, with defaults for everything else. */
+    private class ServiceBuilder {
+
+        private Executor stageExecutor = Runnable::run;
+        private int batchParallelism = 8;
+        private int maxBatchSize = 100;
+        private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        private NonBlockingManagers nonBlocking;
+        private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        ServiceBuilder stageExecutor(Executor stageExecutor) {
+            this.stageExecutor = stageExecutor;
+            return this;
+        }
+
+        ServiceBuilder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        ServiceBuilder nonBlocking(NonBlockingManagers nonBlocking) {
+            this.nonBlocking = nonBlocking;
+            return this;
+        }
+
+        ServiceBuilder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        ArgocdProvisionService build() {
+            return new ArgocdProvisionService(
+                    repoManager,
+                    applicationManager,
+                    projectManager,
+                    stageExecutor,
+                    batchParallelism,
+                    maxBatchSize,
+                    validator,
+                    nonBlocking,
+                    meterRegistry);
+        }
+    }
 }
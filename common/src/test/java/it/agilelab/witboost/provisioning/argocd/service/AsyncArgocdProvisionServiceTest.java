@@ -0,0 +1,171 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.witboost.provisioning.model.Specific;
+import com.witboost.provisioning.model.Workload;
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import com.witboost.provisioning.model.request.ProvisionOperationRequest;
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import it.agilelab.witboost.provisioning.argocd.model.task.TaskStatus;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncArgocdProvisionServiceTest {
+
+    @Mock
+    private ArgocdProvisionService argocdProvisionService;
+
+    @Mock
+    private ProvisionOperationRequest<?, ? extends Specific> operationRequest;
+
+    private ProvisionTaskRegistry registry;
+    private ExecutorService executor;
+    private AsyncArgocdProvisionService asyncService;
+
+    @BeforeEach
+    void setUp() {
+        Workload workload = new Workload<>();
+        workload.setName("workloadName");
+        lenient().when(operationRequest.getComponent()).thenReturn(Optional.of(workload));
+
+        registry = new ProvisionTaskRegistry(Duration.ofMinutes(10), 100);
+        executor = Executors.newSingleThreadExecutor();
+        asyncService = new AsyncArgocdProvisionService(argocdProvisionService, registry, executor);
+    }
+
+    @Test
+    void provision_ReturnsTokenAndCompletesTaskInBackground() throws Exception {
+        ProvisionInfo provisionInfo = ProvisionInfo.builder().build();
+        when(argocdProvisionService.provision(any(), any())).thenAnswer(invocation -> {
+            ProvisionProgress progress = invocation.getArgument(1);
+            progress.update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+            progress.update(ProvisionStep.REPOSITORY, StepStatus.COMPLETED);
+            progress.update(ProvisionStep.APPLICATION, StepStatus.COMPLETED);
+            progress.update(ProvisionStep.SYNC, StepStatus.COMPLETED);
+            return Either.right(provisionInfo);
+        });
+
+        Either<FailedOperation, ProvisionInfo> result = asyncService.provision(operationRequest);
+        awaitTasks();
+
+        assertTrue(result.isRight());
+        String token = tokenOf(result.get());
+        ProvisionTask task = asyncService.getTask(token).get();
+        assertEquals(TaskStatus.COMPLETED, task.getStatus());
+        assertEquals("provision", task.getOperation());
+        assertEquals("workloadName", task.getComponentName());
+        assertEquals(StepStatus.COMPLETED, task.getSteps().get(ProvisionStep.SYNC));
+        assertEquals(Optional.of(provisionInfo), task.getResult());
+    }
+
+    @Test
+    void unprovision_TracksFailure() throws Exception {
+        FailedOperation failure =
+                new FailedOperation("Deletion failed", Collections.singletonList(new Problem("Deletion error")));
+        when(argocdProvisionService.unprovision(any(), any())).thenAnswer(invocation -> {
+            ProvisionProgress progress = invocation.getArgument(1);
+            progress.update(ProvisionStep.DELETE, StepStatus.FAILED);
+            return Either.left(failure);
+        });
+
+        Either<FailedOperation, ProvisionInfo> result = asyncService.unprovision(operationRequest);
+        awaitTasks();
+
+        ProvisionTask task = asyncService.getTask(tokenOf(result.get())).get();
+        assertEquals(TaskStatus.FAILED, task.getStatus());
+        assertEquals(StepStatus.FAILED, task.getSteps().get(ProvisionStep.DELETE));
+        assertEquals("Deletion failed", task.getFailure().get().message());
+    }
+
+    @Test
+    void provision_Error_WhenExecutorIsSaturated() {
+        ExecutorService saturated = mock(ExecutorService.class);
+        doThrow(new RejectedExecutionException("queue full")).when(saturated).execute(any());
+        asyncService = new AsyncArgocdProvisionService(argocdProvisionService, registry, saturated);
+
+        Either<FailedOperation, ProvisionInfo> result = asyncService.provision(operationRequest);
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Too many operations in progress, the provision of workloadName has been rejected. Please try again later.",
+                result.getLeft().message());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void provision_Error_WhenTheRegistryIsFullOfRunningTasks() {
+        registry = new ProvisionTaskRegistry(Duration.ofMinutes(10), 1);
+        registry.register("provision", "running", List.of(ProvisionStep.PROJECT));
+        asyncService = new AsyncArgocdProvisionService(argocdProvisionService, registry, executor);
+
+        Either<FailedOperation, ProvisionInfo> result = asyncService.provision(operationRequest);
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "Too many operations in progress, the provision of workloadName has been rejected. Please try again later.",
+                result.getLeft().message());
+        assertEquals(1, registry.size());
+        verifyNoInteractions(argocdProvisionService);
+    }
+
+    @Test
+    void provision_StoresTheTokenInTheCurrentRequest() throws Exception {
+        when(argocdProvisionService.provision(any(), any()))
+                .thenReturn(Either.right(ProvisionInfo.builder().build()));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/provision");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            Either<FailedOperation, ProvisionInfo> result = asyncService.provision(operationRequest);
+            awaitTasks();
+
+            assertEquals(tokenOf(result.get()), request.getAttribute(AsyncArgocdProvisionService.TOKEN_ATTRIBUTE));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    @Test
+    void getTask_Error_WhenTokenIsUnknown() {
+        Either<FailedOperation, ProvisionTask> result = asyncService.getTask("unknown");
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                "No provisioning task found for token unknown", result.getLeft().message());
+    }
+
+    private void awaitTasks() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private String tokenOf(ProvisionInfo provisionInfo) {
+        Map<String, Map<String, String>> info = (Map<String, Map<String, String>>)
+                provisionInfo.getPrivateInfo().get();
+        return info.get("token").get("value");
+    }
+}
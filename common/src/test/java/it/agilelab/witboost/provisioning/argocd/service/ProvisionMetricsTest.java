@@ -0,0 +1,95 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.witboost.provisioning.model.common.FailedOperation;
+import com.witboost.provisioning.model.common.Problem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.control.Either;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionProgress;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProvisionMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProvisionMetrics provisionMetrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        provisionMetrics = new ProvisionMetrics(meterRegistry);
+    }
+
+    @Test
+    void record_TimesTheOperationAndItsSteps() {
+        List<String> forwarded = new ArrayList<>();
+        ProvisionProgress progress = (step, status) -> forwarded.add(step + ":" + status);
+
+        Either<FailedOperation, String> result = provisionMetrics.record("provision", progress, metered -> {
+            metered.update(ProvisionStep.PROJECT, StepStatus.RUNNING);
+            metered.update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+            metered.update(ProvisionStep.APPLICATION, StepStatus.RUNNING);
+            metered.update(ProvisionStep.APPLICATION, StepStatus.FAILED);
+            return Either.left(new FailedOperation("error", List.of(new Problem("error"))));
+        });
+
+        assertTrue(result.isLeft());
+        assertEquals(
+                List.of("PROJECT:RUNNING", "PROJECT:COMPLETED", "APPLICATION:RUNNING", "APPLICATION:FAILED"),
+                forwarded);
+        assertEquals(1, steps("project", "completed"));
+        assertEquals(1, steps("application", "failed"));
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(ProvisionMetrics.OPERATIONS_METRIC)
+                        .tag("operation", "provision")
+                        .tag("result", "failure")
+                        .timer()
+                        .count());
+    }
+
+    @Test
+    void recordAsync_TracksTheOperationUntilTheFutureCompletes() {
+        CompletableFuture<Either<FailedOperation, String>> pending = new CompletableFuture<>();
+
+        provisionMetrics.recordAsync("unprovision", ProvisionProgress.NOOP, metered -> pending);
+        assertEquals(1, activeOperations("unprovision"));
+
+        pending.complete(Either.right("deleted"));
+
+        assertEquals(0, activeOperations("unprovision"));
+        assertEquals(
+                1,
+                meterRegistry
+                        .get(ProvisionMetrics.OPERATIONS_METRIC)
+                        .tag("operation", "unprovision")
+                        .tag("result", "success")
+                        .timer()
+                        .count());
+    }
+
+    private long steps(String step, String result) {
+        return meterRegistry
+                .get(ProvisionMetrics.STEPS_METRIC)
+                .tag("operation", "provision")
+                .tag("step", step)
+                .tag("result", result)
+                .timer()
+                .count();
+    }
+
+    private int activeOperations(String operation) {
+        return meterRegistry
+                .get(ProvisionMetrics.ACTIVE_OPERATIONS_METRIC)
+                .tag("operation", operation)
+                .longTaskTimer()
+                .activeTasks();
+    }
+}
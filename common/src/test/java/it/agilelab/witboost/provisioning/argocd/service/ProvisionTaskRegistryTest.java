@@ -0,0 +1,107 @@
+package it.agilelab.witboost.provisioning.argocd.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.witboost.provisioning.model.status.ProvisionInfo;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionStep;
+import it.agilelab.witboost.provisioning.argocd.model.task.ProvisionTask;
+import it.agilelab.witboost.provisioning.argocd.model.task.StepStatus;
+import it.agilelab.witboost.provisioning.argocd.model.task.TaskStatus;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProvisionTaskRegistryTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T10:00:00Z");
+
+    private Clock clock;
+    private ProvisionTaskRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(START);
+        registry = new ProvisionTaskRegistry(Duration.ofMinutes(10), 3, clock);
+    }
+
+    @Test
+    void register_CreatesRunningTaskWithPendingSteps() {
+        ProvisionTask task =
+                registry.register("provision", "component", List.of(ProvisionStep.PROJECT, ProvisionStep.SYNC));
+
+        assertEquals(TaskStatus.RUNNING, task.getStatus());
+        assertEquals(StepStatus.PENDING, task.getSteps().get(ProvisionStep.PROJECT));
+        assertEquals(StepStatus.PENDING, task.getSteps().get(ProvisionStep.SYNC));
+        assertTrue(registry.get(task.getToken()).isPresent());
+    }
+
+    @Test
+    void register_EvictsExpiredFinishedTasks() {
+        ProvisionTask finished = registry.register("provision", "finished", List.of(ProvisionStep.PROJECT));
+        ProvisionTask running = registry.register("provision", "running", List.of(ProvisionStep.PROJECT));
+        finished.complete(ProvisionInfo.builder().build());
+
+        when(clock.instant()).thenReturn(START.plus(Duration.ofMinutes(11)));
+        registry.register("provision", "new", List.of(ProvisionStep.PROJECT));
+
+        assertTrue(registry.get(finished.getToken()).isEmpty());
+        assertTrue(registry.get(running.getToken()).isPresent());
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void register_EvictsOldestFinishedTasksWhenFull() {
+        ProvisionTask oldest = registry.register("provision", "oldest", List.of(ProvisionStep.PROJECT));
+        ProvisionTask newest = registry.register("provision", "newest", List.of(ProvisionStep.PROJECT));
+        ProvisionTask running = registry.register("provision", "running", List.of(ProvisionStep.PROJECT));
+        oldest.complete(ProvisionInfo.builder().build());
+        when(clock.instant()).thenReturn(START.plusSeconds(1));
+        newest.complete(ProvisionInfo.builder().build());
+
+        registry.register("provision", "new", List.of(ProvisionStep.PROJECT));
+
+        assertTrue(registry.get(oldest.getToken()).isEmpty());
+        assertTrue(registry.get(newest.getToken()).isPresent());
+        assertTrue(registry.get(running.getToken()).isPresent());
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void register_Rejects_WhenFullOfRunningTasks() {
+        for (int i = 0; i < 3; i++) {
+            registry.register("provision", "running-" + i, List.of(ProvisionStep.PROJECT));
+        }
+
+        assertThrows(
+                RejectedExecutionException.class,
+                () -> registry.register("provision", "new", List.of(ProvisionStep.PROJECT)));
+        assertEquals(3, registry.size());
+    }
+
+    @Test
+    void update_RecordsWhenEveryStepStartsAndFinishes() {
+        ProvisionTask task =
+                registry.register("provision", "component", List.of(ProvisionStep.PROJECT, ProvisionStep.SYNC));
+
+        when(clock.instant()).thenReturn(START.plusSeconds(1));
+        task.update(ProvisionStep.PROJECT, StepStatus.RUNNING);
+        when(clock.instant()).thenReturn(START.plusSeconds(3));
+        task.update(ProvisionStep.PROJECT, StepStatus.COMPLETED);
+        task.update(ProvisionStep.SYNC, StepStatus.SKIPPED);
+
+        Map<ProvisionStep, ProvisionTask.StepState> steps = task.getStepStates();
+        assertEquals(
+                new ProvisionTask.StepState(StepStatus.COMPLETED, START.plusSeconds(1), START.plusSeconds(3)),
+                steps.get(ProvisionStep.PROJECT));
+        assertEquals(
+                new ProvisionTask.StepState(StepStatus.SKIPPED, null, START.plusSeconds(3)),
+                steps.get(ProvisionStep.SYNC));
+    }
+}
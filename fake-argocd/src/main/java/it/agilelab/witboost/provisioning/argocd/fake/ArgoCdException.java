@@ -0,0 +1,40 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+/**
+ * An error answered by {@link FakeArgoCd}, with the HTTP status and the gRPC code ArgoCD would answer it with.
+ */
+final class ArgoCdException extends RuntimeException {
+
+    static final int INVALID_ARGUMENT = 3;
+    static final int NOT_FOUND = 5;
+    static final int ALREADY_EXISTS = 6;
+    static final int FAILED_PRECONDITION = 9;
+    static final int ABORTED = 10;
+    static final int UNAVAILABLE = 14;
+    static final int UNAUTHENTICATED = 16;
+
+    private final int status;
+    private final int code;
+
+    ArgoCdException(int status, int code, String message) {
+        super(message);
+        this.status = status;
+        this.code = code;
+    }
+
+    static ArgoCdException notFound(String kind, String name) {
+        return new ArgoCdException(404, NOT_FOUND, String.format("%s.argoproj.io \"%s\" not found", kind, name));
+    }
+
+    static ArgoCdException invalidArgument(String message) {
+        return new ArgoCdException(400, INVALID_ARGUMENT, message);
+    }
+
+    int status() {
+        return status;
+    }
+
+    int code() {
+        return code;
+    }
+}
@@ -0,0 +1,439 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The in-memory applications, projects and repositories of {@link FakeArgoCd}.
+ * <p>
+ * Every write bumps a global {@code resourceVersion}, like the Kubernetes API server backing ArgoCD. A sync marks
+ * the application as being synced and, after the configured sync duration, as Synced and Healthy against its
+ * current source and destination; every change of an application is published to the watch streams.
+ * </p>
+ */
+final class ArgoCdState {
+
+    static final String CONFLICT_MESSAGE = "Operation cannot be fulfilled on appprojects.argoproj.io \"%s\": the object"
+            + " has been modified; please apply your changes to the latest version and try again";
+    private static final List<String> REPOSITORY_SECRETS =
+            List.of("password", "sshPrivateKey", "tlsClientCertKey", "githubAppPrivateKey", "bearerToken");
+
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, ObjectNode> applications = new LinkedHashMap<>();
+    private final Map<String, ObjectNode> projects = new LinkedHashMap<>();
+    private final Map<String, ObjectNode> repositories = new LinkedHashMap<>();
+    private final Map<String, String> runningSyncs = new HashMap<>();
+    private final List<Consumer<ObjectNode>> watchers = new CopyOnWriteArrayList<>();
+    private volatile Duration syncDuration = Duration.ZERO;
+    private long resourceVersion;
+
+    ArgoCdState(ObjectMapper objectMapper, ScheduledExecutorService scheduler) {
+        this.objectMapper = objectMapper;
+        this.scheduler = scheduler;
+    }
+
+    void syncDuration(Duration syncDuration) {
+        this.syncDuration = syncDuration;
+    }
+
+    synchronized void clear() {
+        applications.clear();
+        runningSyncs.clear();
+        projects.clear();
+        repositories.clear();
+    }
+
+    // Applications
+
+    synchronized ObjectNode listApplications(String name, List<String> projectNames) {
+        return list(
+                applications,
+                application -> (name == null || name.equals(name(application)))
+                        && (projectNames.isEmpty() || projectNames.contains(project(application))));
+    }
+
+    synchronized ObjectNode getApplication(String name) {
+        return existing(applications, "applications", name).deepCopy();
+    }
+
+    synchronized Optional<JsonNode> findApplication(String name) {
+        return Optional.ofNullable(applications.get(name)).map(ObjectNode::deepCopy);
+    }
+
+    synchronized ObjectNode createApplication(ObjectNode application, boolean upsert) {
+        String name = requiredName(application);
+        String project = project(application);
+        if (!projects.containsKey(project)) {
+            throw ArgoCdException.invalidArgument(String.format(
+                    "application references project %s which does not exist", project.isEmpty() ? "''" : project));
+        }
+
+        ObjectNode existing = applications.get(name);
+        if (existing != null) {
+            if (sameDesiredState(existing, application)) return existing.deepCopy();
+            if (!upsert) {
+                throw ArgoCdException.invalidArgument(
+                        "existing application spec is different, use upsert flag to force update");
+            }
+            return updateApplication(name, application);
+        }
+
+        ObjectNode created = application.deepCopy();
+        created.remove("operation");
+        initMetadata(created);
+        ObjectNode status = created.putObject("status");
+        status.putObject("sync").put("status", "OutOfSync");
+        status.putObject("health").put("status", "Missing");
+        applications.put(name, created);
+        publish("ADDED", created);
+        return created.deepCopy();
+    }
+
+    synchronized ObjectNode updateApplication(String name, ObjectNode application) {
+        ObjectNode existing = existing(applications, "applications", name);
+        existing.set("spec", application.path("spec").deepCopy());
+        copyLabelsAndAnnotations(application, existing);
+        bump(existing);
+        publish("MODIFIED", existing);
+        return existing.deepCopy();
+    }
+
+    synchronized ObjectNode deleteApplication(String name) {
+        ObjectNode deleted = existing(applications, "applications", name);
+        applications.remove(name);
+        runningSyncs.remove(name);
+        bump(deleted);
+        publish("DELETED", deleted);
+        return objectMapper.createObjectNode();
+    }
+
+    synchronized ObjectNode syncApplication(String name, JsonNode request) {
+        ObjectNode application = existing(applications, "applications", name);
+        if (application.hasNonNull("operation")) {
+            throw new ArgoCdException(
+                    400, ArgoCdException.FAILED_PRECONDITION, "another operation is already in progress");
+        }
+        String revision = request.path("revision").asText(null);
+        String operationId = UUID.randomUUID().toString();
+        ObjectNode operation = application.putObject("operation");
+        operation.putObject("sync").put("revision", revision);
+        operation.putObject("initiatedBy").put("username", "admin");
+        runningSyncs.put(name, operationId);
+        object(application, "status")
+                .putObject("operationState")
+                .put("phase", "Running")
+                .put("message", "waiting for the sync to complete")
+                .put("startedAt", now());
+        bump(application);
+        publish("MODIFIED", application);
+
+        scheduler.schedule(() -> completeSync(name, operationId), syncDuration.toNanos(), TimeUnit.NANOSECONDS);
+        return application.deepCopy();
+    }
+
+    private synchronized void completeSync(String name, String operationId) {
+        ObjectNode application = applications.get(name);
+        if (application == null || !runningSyncs.remove(name, operationId)) return;
+
+        application.remove("operation");
+        JsonNode spec = application.path("spec");
+        ObjectNode status = object(application, "status");
+        ObjectNode sync = status.putObject("sync");
+        sync.put("status", "Synced");
+        sync.put("revision", revision(spec.path("source").path("targetRevision").asText("HEAD")));
+        ObjectNode comparedTo = sync.putObject("comparedTo");
+        comparedTo.set("source", spec.path("source").deepCopy());
+        comparedTo.set("destination", spec.path("destination").deepCopy());
+        status.putObject("health").put("status", "Healthy");
+        ObjectNode operationState = object(status, "operationState");
+        operationState.put("phase", "Succeeded");
+        operationState.put("message", "successfully synced (all tasks run)");
+        operationState.put("finishedAt", now());
+        ArrayNode history = status.has("history") ? (ArrayNode) status.get("history") : status.putArray("history");
+        ObjectNode deployment = history.addObject()
+                .put("id", history.size() - 1)
+                .put("revision", sync.path("revision").asText())
+                .put("deployStartedAt", operationState.path("startedAt").asText())
+                .put("deployedAt", operationState.path("finishedAt").asText());
+        deployment.set("source", spec.path("source").deepCopy());
+        bump(application);
+        publish("MODIFIED", application);
+    }
+
+    /**
+     * Subscribes to the changes of the applications, receiving first an {@code ADDED} event for every application
+     * already existing.
+     *
+     * @param name The name of the application to watch, or {@code null} to watch all of them.
+     * @param projectNames The projects of the applications to watch, or an empty list to watch all of them.
+     * @param listener The listener receiving the events, wrapped in a {@code result} field like in ArgoCD.
+     * @return The subscription, closed to stop receiving events.
+     */
+    synchronized AutoCloseable watch(String name, List<String> projectNames, Consumer<ObjectNode> listener) {
+        Predicate<JsonNode> matches = application -> (name == null || name.equals(name(application)))
+                && (projectNames.isEmpty() || projectNames.contains(project(application)));
+        applications.values().stream()
+                .filter(matches)
+                .forEach(application -> listener.accept(event("ADDED", application)));
+        Consumer<ObjectNode> watcher = event -> {
+            if (matches.test(event.path("result").path("application"))) listener.accept(event);
+        };
+        watchers.add(watcher);
+        return () -> watchers.remove(watcher);
+    }
+
+    // Projects
+
+    synchronized ObjectNode listProjects() {
+        return list(projects, project -> true);
+    }
+
+    synchronized ObjectNode getProject(String name) {
+        return existing(projects, "appprojects", name).deepCopy();
+    }
+
+    synchronized Optional<JsonNode> findProject(String name) {
+        return Optional.ofNullable(projects.get(name)).map(ObjectNode::deepCopy);
+    }
+
+    synchronized ObjectNode createProject(JsonNode request) {
+        ObjectNode project = requiredObject(request, "project");
+        String name = requiredName(project);
+        ObjectNode existing = projects.get(name);
+        if (existing != null) {
+            if (existing.path("spec").equals(project.path("spec"))) return existing.deepCopy();
+            if (!request.path("upsert").asBoolean(false)) {
+                throw new ArgoCdException(
+                        409,
+                        ArgoCdException.ALREADY_EXISTS,
+                        "existing project spec is different, use upsert flag to force update");
+            }
+            existing.set("spec", project.path("spec").deepCopy());
+            bump(existing);
+            return existing.deepCopy();
+        }
+
+        ObjectNode created = project.deepCopy();
+        initMetadata(created);
+        projects.put(name, created);
+        return created.deepCopy();
+    }
+
+    synchronized ObjectNode updateProject(String name, JsonNode request) {
+        ObjectNode project = requiredObject(request, "project");
+        ObjectNode existing = existing(projects, "appprojects", name);
+        String expectedVersion =
+                project.path("metadata").path("resourceVersion").asText("");
+        if (!expectedVersion.isEmpty()
+                && !expectedVersion.equals(
+                        existing.path("metadata").path("resourceVersion").asText())) {
+            throw new ArgoCdException(409, ArgoCdException.ABORTED, String.format(CONFLICT_MESSAGE, name));
+        }
+        existing.set("spec", project.path("spec").deepCopy());
+        copyLabelsAndAnnotations(project, existing);
+        bump(existing);
+        return existing.deepCopy();
+    }
+
+    synchronized ObjectNode deleteProject(String name) {
+        existing(projects, "appprojects", name);
+        long references = applications.values().stream()
+                .filter(application -> name.equals(project(application)))
+                .count();
+        if (references > 0) {
+            throw new ArgoCdException(
+                    400,
+                    ArgoCdException.FAILED_PRECONDITION,
+                    String.format("project is referenced by %d applications", references));
+        }
+        projects.remove(name);
+        return objectMapper.createObjectNode();
+    }
+
+    // Repositories
+
+    synchronized ObjectNode listRepositories(String repo) {
+        ObjectNode list = list(repositories, repository -> repo == null || repo.equals(repoUrl(repository)));
+        list.get("items").forEach(repository -> ((ObjectNode) repository).remove(REPOSITORY_SECRETS));
+        return list;
+    }
+
+    synchronized ObjectNode getRepository(String repo) {
+        ObjectNode repository = repositories.get(repo);
+        if (repository == null) {
+            throw new ArgoCdException(404, ArgoCdException.NOT_FOUND, String.format("repo '%s' not found", repo));
+        }
+        return withoutSecrets(repository);
+    }
+
+    synchronized Optional<JsonNode> findRepository(String repo) {
+        return Optional.ofNullable(repositories.get(repo)).map(ArgoCdState::withoutSecrets);
+    }
+
+    synchronized ObjectNode createRepository(ObjectNode repository, boolean upsert) {
+        String repo = repoUrl(repository);
+        if (repo.isEmpty()) throw ArgoCdException.invalidArgument("repo URL is required");
+        ObjectNode created = repository.deepCopy();
+        created.putObject("connectionState")
+                .put("status", "Successful")
+                .put("message", "")
+                .put("attemptedAt", now());
+
+        ObjectNode existing = repositories.get(repo);
+        if (existing != null && !upsert && !sameRepository(existing, created)) {
+            throw ArgoCdException.invalidArgument(
+                    "existing repository spec is different; use upsert flag to force update");
+        }
+        repositories.put(repo, created);
+        return withoutSecrets(created);
+    }
+
+    synchronized ObjectNode updateRepository(String repo, ObjectNode repository) {
+        if (!repositories.containsKey(repo)) {
+            throw new ArgoCdException(404, ArgoCdException.NOT_FOUND, String.format("repo '%s' not found", repo));
+        }
+        return createRepository(repository, true);
+    }
+
+    synchronized ObjectNode deleteRepository(String repo) {
+        getRepository(repo);
+        repositories.remove(repo);
+        return objectMapper.createObjectNode();
+    }
+
+    // Helpers
+
+    private ObjectNode list(Map<String, ObjectNode> resources, Predicate<JsonNode> filter) {
+        ObjectNode list = objectMapper.createObjectNode();
+        list.putObject("metadata").put("resourceVersion", Long.toString(resourceVersion));
+        ArrayNode items = list.putArray("items");
+        resources.values().stream().filter(filter).forEach(resource -> items.add(resource.deepCopy()));
+        return list;
+    }
+
+    private void initMetadata(ObjectNode resource) {
+        ObjectNode metadata = object(resource, "metadata");
+        metadata.put("namespace", "argocd");
+        metadata.put("uid", UUID.randomUUID().toString());
+        metadata.put("creationTimestamp", now());
+        metadata.put("generation", 0);
+        bump(resource);
+    }
+
+    private void bump(ObjectNode resource) {
+        ObjectNode metadata = object(resource, "metadata");
+        metadata.put("resourceVersion", Long.toString(++resourceVersion));
+        metadata.put("generation", metadata.path("generation").asLong() + 1);
+    }
+
+    private void publish(String type, ObjectNode application) {
+        ObjectNode event = event(type, application);
+        watchers.forEach(watcher -> watcher.accept(event.deepCopy()));
+    }
+
+    private ObjectNode event(String type, JsonNode application) {
+        ObjectNode event = objectMapper.createObjectNode();
+        ObjectNode result = event.putObject("result");
+        result.put("type", type);
+        result.set("application", application.deepCopy());
+        return event;
+    }
+
+    private static ObjectNode existing(Map<String, ObjectNode> resources, String kind, String name) {
+        ObjectNode resource = resources.get(name);
+        if (resource == null) throw ArgoCdException.notFound(kind, name);
+        return resource;
+    }
+
+    private static boolean sameDesiredState(JsonNode existing, JsonNode desired) {
+        return existing.path("spec").equals(desired.path("spec"))
+                && existing.path("metadata")
+                        .path("labels")
+                        .equals(desired.path("metadata").path("labels"))
+                && existing.path("metadata")
+                        .path("annotations")
+                        .equals(desired.path("metadata").path("annotations"));
+    }
+
+    private static boolean sameRepository(ObjectNode existing, ObjectNode desired) {
+        ObjectNode left = existing.deepCopy();
+        ObjectNode right = desired.deepCopy();
+        left.remove("connectionState");
+        right.remove("connectionState");
+        return left.equals(right);
+    }
+
+    private static void copyLabelsAndAnnotations(JsonNode from, ObjectNode to) {
+        ObjectNode metadata = object(to, "metadata");
+        for (String field : List.of("labels", "annotations")) {
+            JsonNode value = from.path("metadata").path(field);
+            if (value.isMissingNode() || value.isNull()) {
+                metadata.remove(field);
+            } else {
+                metadata.set(field, value.deepCopy());
+            }
+        }
+    }
+
+    private static ObjectNode withoutSecrets(ObjectNode repository) {
+        ObjectNode copy = repository.deepCopy();
+        copy.remove(REPOSITORY_SECRETS);
+        return copy;
+    }
+
+    private static ObjectNode object(ObjectNode parent, String field) {
+        JsonNode child = parent.get(field);
+        return child instanceof ObjectNode object ? object : parent.putObject(field);
+    }
+
+    private static ObjectNode requiredObject(JsonNode request, String field) {
+        JsonNode value = request.path(field);
+        if (!(value instanceof ObjectNode object)) throw ArgoCdException.invalidArgument(field + " is required");
+        return object;
+    }
+
+    private static String requiredName(JsonNode resource) {
+        String name = name(resource);
+        if (name.isEmpty()) throw ArgoCdException.invalidArgument("name is required");
+        return name;
+    }
+
+    private static String name(JsonNode resource) {
+        return resource.path("metadata").path("name").asText("");
+    }
+
+    private static String project(JsonNode application) {
+        return application.path("spec").path("project").asText("");
+    }
+
+    private static String repoUrl(JsonNode repository) {
+        return repository.path("repo").asText("");
+    }
+
+    /** The commit a target revision resolves to: a commit resolves to itself, any other revision to a stable one. */
+    private static String revision(String targetRevision) {
+        if (targetRevision.matches("[0-9a-f]{40}")) return targetRevision;
+        return String.format("%040x", Integer.toUnsignedLong(targetRevision.hashCode()));
+    }
+
+    private static String now() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+}
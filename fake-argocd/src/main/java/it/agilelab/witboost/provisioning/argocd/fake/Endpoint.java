@@ -0,0 +1,53 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** The ArgoCD API endpoints implemented by {@link FakeArgoCd}, as defined in {@code argocd-specification.json}. */
+public enum Endpoint {
+    APPLICATION_LIST("GET", "/api/v1/applications"),
+    APPLICATION_CREATE("POST", "/api/v1/applications"),
+    APPLICATION_GET("GET", "/api/v1/applications/([^/]+)"),
+    APPLICATION_UPDATE("PUT", "/api/v1/applications/([^/]+)"),
+    APPLICATION_DELETE("DELETE", "/api/v1/applications/([^/]+)"),
+    APPLICATION_SYNC("POST", "/api/v1/applications/([^/]+)/sync"),
+    APPLICATION_WATCH("GET", "/api/v1/stream/applications"),
+    PROJECT_LIST("GET", "/api/v1/projects"),
+    PROJECT_CREATE("POST", "/api/v1/projects"),
+    PROJECT_GET("GET", "/api/v1/projects/([^/]+)"),
+    PROJECT_UPDATE("PUT", "/api/v1/projects/([^/]+)"),
+    PROJECT_DELETE("DELETE", "/api/v1/projects/([^/]+)"),
+    REPOSITORY_LIST("GET", "/api/v1/repositories"),
+    REPOSITORY_CREATE("POST", "/api/v1/repositories"),
+    // The repository URL is a single path segment, as in ArgoCD: its slashes must be encoded
+    REPOSITORY_GET("GET", "/api/v1/repositories/([^/]+)"),
+    REPOSITORY_UPDATE("PUT", "/api/v1/repositories/([^/]+)"),
+    REPOSITORY_DELETE("DELETE", "/api/v1/repositories/([^/]+)"),
+    SESSION_CREATE("POST", "/api/v1/session"),
+    SESSION_DELETE("DELETE", "/api/v1/session"),
+    SESSION_USER_INFO("GET", "/api/v1/session/userinfo");
+
+    private final String method;
+    private final Pattern path;
+
+    Endpoint(String method, String path) {
+        this.method = method;
+        this.path = Pattern.compile(path);
+    }
+
+    /**
+     * Matches a request against this endpoint.
+     *
+     * @param method The HTTP method of the request.
+     * @param rawPath The path of the request, not decoded.
+     * @return The raw path parameter (e.g. the application name) or an empty string if the endpoint has none, or
+     * nothing if the request is not for this endpoint.
+     */
+    Optional<String> match(String method, String rawPath) {
+        if (!this.method.equals(method)) return Optional.empty();
+        Matcher matcher = path.matcher(rawPath);
+        if (!matcher.matches()) return Optional.empty();
+        return Optional.of(matcher.groupCount() > 0 ? matcher.group(1) : "");
+    }
+}
@@ -0,0 +1,85 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import java.time.Duration;
+
+/**
+ * How {@link FakeArgoCd} answers the requests to an endpoint: the latency added before handling them, the share
+ * of them failing with an error status instead of being handled, and, for the application watch stream, the delay
+ * between two events and the number of events after which the stream is closed.
+ * <p>
+ * The behavior can be changed while the server is running; by default requests are answered immediately and never
+ * fail, and streams are kept open.
+ * </p>
+ */
+public class EndpointBehavior {
+
+    private volatile LatencyDistribution latency = LatencyDistribution.NONE;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile Duration streamEventDelay = Duration.ZERO;
+    private volatile int streamMaxEvents = Integer.MAX_VALUE;
+
+    public LatencyDistribution latency() {
+        return latency;
+    }
+
+    public EndpointBehavior latency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public double errorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Makes a share of the requests fail without being handled.
+     *
+     * @param errorRate The probability, between 0 and 1, that a request fails.
+     * @return This behavior.
+     */
+    public EndpointBehavior errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public int errorStatus() {
+        return errorStatus;
+    }
+
+    /** The status of the failed requests, {@code 503} by default. */
+    public EndpointBehavior errorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    public Duration streamEventDelay() {
+        return streamEventDelay;
+    }
+
+    /** The delay before sending every event of a stream, to simulate a slow consumer or a congested server. */
+    public EndpointBehavior streamEventDelay(Duration streamEventDelay) {
+        this.streamEventDelay = streamEventDelay;
+        return this;
+    }
+
+    public int streamMaxEvents() {
+        return streamMaxEvents;
+    }
+
+    /** The number of events after which a stream is closed by the server. */
+    public EndpointBehavior streamMaxEvents(int streamMaxEvents) {
+        this.streamMaxEvents = streamMaxEvents;
+        return this;
+    }
+
+    /** Restores the default behavior. */
+    public EndpointBehavior reset() {
+        latency = LatencyDistribution.NONE;
+        errorRate = 0;
+        errorStatus = 503;
+        streamEventDelay = Duration.ZERO;
+        streamMaxEvents = Integer.MAX_VALUE;
+        return this;
+    }
+}
@@ -0,0 +1,380 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An embeddable stand-in for the ArgoCD API server, keeping applications, projects and repositories in memory.
+ * <p>
+ * It implements the application (including sync and the watch stream), project, repository and session
+ * {@link Endpoint endpoints} used by the adapter, with the request and response bodies and the error format of
+ * {@code argocd-specification.json}, so that the real HTTP client, serialization and connection handling can be
+ * exercised offline. The {@link EndpointBehavior} of every endpoint injects latency, failures and slow streams.
+ * </p>
+ * <p>
+ * Requests must carry {@code Authorization: Bearer} with {@link #token()} or a token obtained from
+ * {@code POST /api/v1/session} with the {@code admin} user and {@link #ADMIN_PASSWORD}. Created applications are
+ * OutOfSync and Missing until synced; a sync completes after {@link #syncDuration(Duration)}.
+ * </p>
+ * <pre>{@code
+ * try (FakeArgoCd argoCd = FakeArgoCd.start()) {
+ *     argoCd.behavior(Endpoint.APPLICATION_SYNC).latency(LatencyDistribution.fixed(Duration.ofMillis(50)));
+ *     // point the client to argoCd.baseUrl() with argoCd.token()
+ * }
+ * }</pre>
+ */
+public class FakeArgoCd implements AutoCloseable {
+
+    public static final String ADMIN_PASSWORD = "password";
+
+    private static final Duration STREAM_POLL = Duration.ofMillis(100);
+
+    private final Logger logger = LoggerFactory.getLogger(FakeArgoCd.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String token;
+    private final Set<String> tokens = ConcurrentHashMap.newKeySet();
+    private final Map<Endpoint, EndpointBehavior> behaviors = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> requests = new EnumMap<>(Endpoint.class);
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final ArgoCdState state;
+    private final HttpServer server;
+    private volatile boolean running = true;
+
+    private FakeArgoCd(int port, String token) throws IOException {
+        this.token = token;
+        AtomicInteger threads = new AtomicInteger();
+        this.executor =
+                Executors.newCachedThreadPool(runnable -> daemon(runnable, "fake-argocd-" + threads.incrementAndGet()));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "fake-argocd-sync"));
+        this.state = new ArgoCdState(objectMapper, scheduler);
+        for (Endpoint endpoint : Endpoint.values()) {
+            behaviors.put(endpoint, new EndpointBehavior());
+            requests.put(endpoint, new AtomicLong());
+        }
+        tokens.add(token);
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /** Starts a server listening on a random free port of the loopback interface. */
+    public static FakeArgoCd start() throws IOException {
+        return start(0);
+    }
+
+    /** Starts a server listening on the given port of the loopback interface, or a random one if {@code 0}. */
+    public static FakeArgoCd start(int port) throws IOException {
+        return start(port, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Starts a server accepting the given token, so that a client configured in advance can connect to it.
+     *
+     * @param port The port of the loopback interface to listen on, or {@code 0} for a random one.
+     * @param token The token accepted by every endpoint.
+     * @return The running server.
+     */
+    public static FakeArgoCd start(int port, String token) throws IOException {
+        return new FakeArgoCd(port, token);
+    }
+
+    /** The base path of the API, e.g. {@code http://127.0.0.1:41234}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** A token accepted by every endpoint. */
+    public String token() {
+        return token;
+    }
+
+    /** The behavior of an endpoint, which can be changed while the server is running. */
+    public EndpointBehavior behavior(Endpoint endpoint) {
+        return behaviors.get(endpoint);
+    }
+
+    /** Changes the behavior of every endpoint. */
+    public FakeArgoCd everyEndpoint(Consumer<EndpointBehavior> change) {
+        behaviors.values().forEach(change);
+        return this;
+    }
+
+    /** The time a sync takes before the application is Synced and Healthy, {@code 0} by default. */
+    public FakeArgoCd syncDuration(Duration syncDuration) {
+        state.syncDuration(syncDuration);
+        return this;
+    }
+
+    /** The number of requests received by an endpoint, including the failed ones. */
+    public long requests(Endpoint endpoint) {
+        return requests.get(endpoint).get();
+    }
+
+    public Optional<JsonNode> application(String name) {
+        return state.findApplication(name);
+    }
+
+    public Optional<JsonNode> project(String name) {
+        return state.findProject(name);
+    }
+
+    /** The repository with the given URL, without its credentials. */
+    public Optional<JsonNode> repository(String repo) {
+        return state.findRepository(repo);
+    }
+
+    /** Removes all the resources, restores the default behavior of every endpoint and clears the request counts. */
+    public void reset() {
+        state.clear();
+        state.syncDuration(Duration.ZERO);
+        behaviors.values().forEach(EndpointBehavior::reset);
+        requests.values().forEach(count -> count.set(0));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        server.stop(0);
+        executor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String rawPath = exchange.getRequestURI().getRawPath();
+            for (Endpoint endpoint : Endpoint.values()) {
+                Optional<String> parameter = endpoint.match(method, rawPath);
+                if (parameter.isPresent()) {
+                    handle(exchange, endpoint, URLDecoder.decode(parameter.get(), StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+            sendError(exchange, new ArgoCdException(404, ArgoCdException.NOT_FOUND, "Not Found"));
+        } catch (ArgoCdException e) {
+            sendError(exchange, e);
+        } catch (IOException e) {
+            // The client went away, e.g. by closing a watch stream
+            logger.debug("Request {} {} interrupted: {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error serving {} {}", exchange.getRequestMethod(), exchange.getRequestURI(), e);
+            sendError(exchange, new ArgoCdException(500, 13, String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handle(HttpExchange exchange, Endpoint endpoint, String parameter) throws IOException {
+        requests.get(endpoint).incrementAndGet();
+        EndpointBehavior behavior = behaviors.get(endpoint);
+        sleep(behavior.latency().sample(ThreadLocalRandom.current()));
+
+        if (endpoint != Endpoint.SESSION_CREATE && !isAuthenticated(exchange)) {
+            throw new ArgoCdException(401, ArgoCdException.UNAUTHENTICATED, "no session information");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < behavior.errorRate()) {
+            throw new ArgoCdException(behavior.errorStatus(), ArgoCdException.UNAVAILABLE, "injected failure");
+        }
+
+        Map<String, List<String>> query = query(exchange.getRequestURI().getRawQuery());
+        if (endpoint == Endpoint.APPLICATION_WATCH) {
+            stream(exchange, query, behavior);
+            return;
+        }
+        JsonNode response =
+                switch (endpoint) {
+                    case APPLICATION_LIST -> state.listApplications(first(query, "name"), all(query, "projects"));
+                    case APPLICATION_CREATE -> state.createApplication(body(exchange), flag(query, "upsert"));
+                    case APPLICATION_GET -> state.getApplication(parameter);
+                    case APPLICATION_UPDATE -> state.updateApplication(parameter, body(exchange));
+                    case APPLICATION_DELETE -> state.deleteApplication(parameter);
+                    case APPLICATION_SYNC -> state.syncApplication(parameter, body(exchange));
+                    case PROJECT_LIST -> state.listProjects();
+                    case PROJECT_CREATE -> state.createProject(body(exchange));
+                    case PROJECT_GET -> state.getProject(parameter);
+                    case PROJECT_UPDATE -> state.updateProject(parameter, body(exchange));
+                    case PROJECT_DELETE -> state.deleteProject(parameter);
+                    case REPOSITORY_LIST -> state.listRepositories(first(query, "repo"));
+                    case REPOSITORY_CREATE -> state.createRepository(body(exchange), flag(query, "upsert"));
+                    case REPOSITORY_GET -> state.getRepository(parameter);
+                    case REPOSITORY_UPDATE -> state.updateRepository(parameter, body(exchange));
+                    case REPOSITORY_DELETE -> state.deleteRepository(parameter);
+                    case SESSION_CREATE -> createSession(body(exchange));
+                    case SESSION_DELETE -> deleteSession(exchange);
+                    case SESSION_USER_INFO -> objectMapper
+                            .createObjectNode()
+                            .put("loggedIn", true)
+                            .put("username", "admin")
+                            .put("iss", "argocd");
+                    case APPLICATION_WATCH -> throw new IllegalStateException(
+                            "Streams are not answered with a single body");
+                };
+        send(exchange, 200, response);
+    }
+
+    /** Streams the changes of the applications, one JSON event per line, until the client or the server closes. */
+    private void stream(HttpExchange exchange, Map<String, List<String>> query, EndpointBehavior behavior)
+            throws IOException {
+        BlockingQueue<ObjectNode> events = new LinkedBlockingQueue<>();
+        try (AutoCloseable ignored = state.watch(first(query, "name"), all(query, "projects"), events::add)) {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            int sent = 0;
+            while (running && sent < behavior.streamMaxEvents()) {
+                ObjectNode event = events.poll(STREAM_POLL.toMillis(), TimeUnit.MILLISECONDS);
+                if (event == null) continue;
+                sleep(behavior.streamEventDelay());
+                body.write(objectMapper.writeValueAsBytes(event));
+                body.write('\n');
+                body.flush();
+                sent++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode createSession(ObjectNode request) {
+        if (!"admin".equals(request.path("username").asText())
+                || !ADMIN_PASSWORD.equals(request.path("password").asText())) {
+            throw new ArgoCdException(401, ArgoCdException.UNAUTHENTICATED, "Invalid username or password");
+        }
+        String sessionToken = UUID.randomUUID().toString();
+        tokens.add(sessionToken);
+        return objectMapper.createObjectNode().put("token", sessionToken);
+    }
+
+    private JsonNode deleteSession(HttpExchange exchange) {
+        String bearer = bearer(exchange);
+        if (!token.equals(bearer)) tokens.remove(bearer);
+        return objectMapper.createObjectNode();
+    }
+
+    private boolean isAuthenticated(HttpExchange exchange) {
+        String bearer = bearer(exchange);
+        return bearer != null && tokens.contains(bearer);
+    }
+
+    private static String bearer(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return null;
+        return authorization.substring("Bearer ".length()).trim();
+    }
+
+    private ObjectNode body(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            if (bytes.length == 0) return objectMapper.createObjectNode();
+            JsonNode json = objectMapper.readTree(bytes);
+            if (!(json instanceof ObjectNode object)) throw ArgoCdException.invalidArgument("body must be an object");
+            return object;
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw ArgoCdException.invalidArgument("invalid body: " + e.getOriginalMessage());
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, JsonNode response) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private void sendError(HttpExchange exchange, ArgoCdException error) {
+        ObjectNode response = objectMapper
+                .createObjectNode()
+                .put("error", error.getMessage())
+                .put("code", error.code())
+                .put("message", error.getMessage());
+        try {
+            send(exchange, error.status(), response);
+        } catch (IOException e) {
+            logger.debug("Unable to send the error {} to the client: {}", error.status(), e.getMessage());
+        }
+    }
+
+    private static Map<String, List<String>> query(String rawQuery) {
+        Map<String, List<String>> parameters = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return parameters;
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters
+                    .computeIfAbsent(URLDecoder.decode(name, StandardCharsets.UTF_8), key -> new ArrayList<>())
+                    .add(URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String first(Map<String, List<String>> query, String name) {
+        List<String> values = query.get(name);
+        return values == null || values.isEmpty() || values.get(0).isEmpty() ? null : values.get(0);
+    }
+
+    private static List<String> all(Map<String, List<String>> query, String name) {
+        return query.getOrDefault(name, List.of()).stream()
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private static boolean flag(Map<String, List<String>> query, String name) {
+        return Boolean.parseBoolean(first(query, name));
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero() || duration.isNegative()) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(duration.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,45 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import java.time.Duration;
+import java.util.random.RandomGenerator;
+
+/** The distribution of the latency added by {@link FakeArgoCd} before answering a request. */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = random -> Duration.ZERO;
+
+    /**
+     * Draws the latency of a request.
+     *
+     * @param random The source of randomness.
+     * @return The latency.
+     */
+    Duration sample(RandomGenerator random);
+
+    /** Every request takes the same time. */
+    static LatencyDistribution fixed(Duration latency) {
+        return random -> latency;
+    }
+
+    /** Latencies uniformly distributed between {@code min} and {@code max}. */
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        return random -> Duration.ofNanos(minNanos == maxNanos ? minNanos : random.nextLong(minNanos, maxNanos));
+    }
+
+    /**
+     * Log-normal latencies, with a long tail like the ones of a loaded API server.
+     *
+     * @param median The median latency.
+     * @param p99 The 99th percentile of the latency, greater than the median.
+     * @return The distribution.
+     */
+    static LatencyDistribution logNormal(Duration median, Duration p99) {
+        double mu = Math.log(median.toNanos());
+        // 2.326 is the 99th percentile of the standard normal distribution
+        double sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+        return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+}
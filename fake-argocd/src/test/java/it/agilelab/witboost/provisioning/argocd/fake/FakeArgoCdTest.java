@@ -0,0 +1,209 @@
+package it.agilelab.witboost.provisioning.argocd.fake;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FakeArgoCdTest {
+
+    private static final String PROJECT =
+            "{\"project\":{\"metadata\":{\"name\":\"my-project\"},\"spec\":{\"sourceRepos\":[\"*\"]}}}";
+    private static final String APPLICATION =
+            "{\"metadata\":{\"name\":\"my-app\"},\"spec\":{\"project\":\"my-project\","
+                    + "\"source\":{\"repoURL\":\"https://example.com/repo.git\",\"path\":\"app\",\"targetRevision\":\"main\"},"
+                    + "\"destination\":{\"server\":\"https://kubernetes.default.svc\",\"namespace\":\"default\"}}}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FakeArgoCd argoCd;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        argoCd = FakeArgoCd.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        argoCd.close();
+    }
+
+    @Test
+    void testApplication_IsSyncedAfterTheSyncDuration() throws Exception {
+        argoCd.syncDuration(Duration.ofMillis(200));
+        assertEquals(200, send("POST", "/api/v1/projects", PROJECT).statusCode());
+        assertEquals(
+                200,
+                send("POST", "/api/v1/applications?upsert=true&validate=true", APPLICATION)
+                        .statusCode());
+
+        JsonNode created = json(send("GET", "/api/v1/applications/my-app", null));
+        assertEquals("OutOfSync", created.at("/status/sync/status").asText());
+
+        HttpResponse<String> sync = send("POST", "/api/v1/applications/my-app/sync", "{\"revision\":\"main\"}");
+        assertEquals(200, sync.statusCode());
+        assertEquals("Running", json(sync).at("/status/operationState/phase").asText());
+        assertEquals(400, send("POST", "/api/v1/applications/my-app/sync", "{}").statusCode());
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        JsonNode synced = created;
+        while (System.nanoTime() < deadline
+                && !"Synced".equals(synced.at("/status/sync/status").asText())) {
+            Thread.sleep(20);
+            synced = argoCd.application("my-app").orElseThrow();
+        }
+        assertEquals("Synced", synced.at("/status/sync/status").asText());
+        assertEquals("Healthy", synced.at("/status/health/status").asText());
+        assertEquals("Succeeded", synced.at("/status/operationState/phase").asText());
+        assertEquals("app", synced.at("/status/sync/comparedTo/source/path").asText());
+        assertEquals(1, argoCd.requests(Endpoint.APPLICATION_CREATE));
+    }
+
+    @Test
+    void testApplication_RejectedWhenTheProjectDoesNotExist() throws Exception {
+        HttpResponse<String> response = send("POST", "/api/v1/applications", APPLICATION);
+
+        assertEquals(400, response.statusCode());
+        assertEquals(3, json(response).path("code").asInt());
+    }
+
+    @Test
+    void testWatch_StreamsTheChangesOfTheApplications() throws Exception {
+        argoCd.behavior(Endpoint.APPLICATION_WATCH).streamMaxEvents(2);
+        send("POST", "/api/v1/projects", PROJECT);
+        send("POST", "/api/v1/applications", APPLICATION);
+
+        HttpRequest watch = request("GET", "/api/v1/stream/applications?name=my-app", null);
+        HttpResponse<InputStream> stream = client.send(watch, HttpResponse.BodyHandlers.ofInputStream());
+        try (BufferedReader events = new BufferedReader(new InputStreamReader(stream.body(), StandardCharsets.UTF_8))) {
+            assertEquals(
+                    "ADDED",
+                    objectMapper.readTree(events.readLine()).at("/result/type").asText());
+            send("POST", "/api/v1/applications/my-app/sync", "{}");
+            JsonNode modified = objectMapper.readTree(events.readLine());
+            assertEquals("MODIFIED", modified.at("/result/type").asText());
+            assertEquals(
+                    "my-app", modified.at("/result/application/metadata/name").asText());
+            assertNull(events.readLine());
+        }
+    }
+
+    @Test
+    void testProject_UpdateWithAStaleResourceVersionConflicts() throws Exception {
+        String resourceVersion = json(send("POST", "/api/v1/projects", PROJECT))
+                .at("/metadata/resourceVersion")
+                .asText();
+        String update = "{\"project\":{\"metadata\":{\"name\":\"my-project\",\"resourceVersion\":\"%s\"},"
+                + "\"spec\":{\"sourceRepos\":[\"https://example.com/repo.git\"]}}}";
+
+        assertEquals(
+                200,
+                send("PUT", "/api/v1/projects/my-project", update.formatted(resourceVersion))
+                        .statusCode());
+        HttpResponse<String> conflict = send("PUT", "/api/v1/projects/my-project", update.formatted(resourceVersion));
+
+        assertEquals(409, conflict.statusCode());
+        assertTrue(json(conflict).path("message").asText().contains("the object has been modified"));
+    }
+
+    @Test
+    void testRepository_CredentialsAreNotReturned() throws Exception {
+        String repository = "{\"repo\":\"https://example.com/repo.git\",\"username\":\"user\",\"password\":\"secret\"}";
+
+        assertEquals(
+                200,
+                send("POST", "/api/v1/repositories?upsert=true", repository).statusCode());
+        JsonNode fetched = json(send("GET", "/api/v1/repositories/https%3A%2F%2Fexample.com%2Frepo.git", null));
+
+        assertEquals("Successful", fetched.at("/connectionState/status").asText());
+        assertEquals("user", fetched.path("username").asText());
+        assertFalse(fetched.has("password"));
+    }
+
+    @Test
+    void testRepository_UrlWithUnencodedSlashesIsNotFound() throws Exception {
+        String repository = "{\"repo\":\"https://example.com/repo.git\"}";
+        assertEquals(
+                200,
+                send("POST", "/api/v1/repositories?upsert=true", repository).statusCode());
+
+        HttpResponse<String> response = send("GET", "/api/v1/repositories/https:%2F%2Fexample.com/repo.git", null);
+
+        assertEquals(404, response.statusCode());
+        assertEquals(0, argoCd.requests(Endpoint.REPOSITORY_GET));
+    }
+
+    @Test
+    void testBehavior_InjectsFailuresAndLatency() throws Exception {
+        argoCd.behavior(Endpoint.PROJECT_LIST).errorRate(1).errorStatus(502);
+        argoCd.behavior(Endpoint.REPOSITORY_LIST).latency(LatencyDistribution.fixed(Duration.ofMillis(200)));
+
+        HttpResponse<String> failed = send("GET", "/api/v1/projects", null);
+        long start = System.nanoTime();
+        HttpResponse<String> slow = send("GET", "/api/v1/repositories", null);
+
+        assertEquals(502, failed.statusCode());
+        assertEquals(14, json(failed).path("code").asInt());
+        assertEquals(200, slow.statusCode());
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(200).toNanos());
+
+        argoCd.reset();
+        assertEquals(200, send("GET", "/api/v1/projects", null).statusCode());
+    }
+
+    @Test
+    void testSession_TokensAreRequired() throws Exception {
+        HttpRequest anonymous = HttpRequest.newBuilder(URI.create(argoCd.baseUrl() + "/api/v1/applications"))
+                .GET()
+                .build();
+        assertEquals(
+                401,
+                client.send(anonymous, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest login = HttpRequest.newBuilder(URI.create(argoCd.baseUrl() + "/api/v1/session"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"admin\",\"password\":\"" + FakeArgoCd.ADMIN_PASSWORD + "\"}"))
+                .build();
+        String token = json(client.send(login, HttpResponse.BodyHandlers.ofString()))
+                .path("token")
+                .asText();
+        HttpRequest userInfo = HttpRequest.newBuilder(URI.create(argoCd.baseUrl() + "/api/v1/session/userinfo"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = client.send(userInfo, HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        assertTrue(json(response).path("loggedIn").asBoolean());
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        return client.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(argoCd.baseUrl() + path))
+                .header("Authorization", "Bearer " + argoCd.token())
+                .header("Content-Type", "application/json")
+                .method(
+                        method,
+                        body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private JsonNode json(HttpResponse<String> response) throws Exception {
+        return objectMapper.readTree(response.body());
+    }
+}
@@ -0,0 +1,76 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bodies of the requests sent to the adapter, one per application.
+ * <p>
+ * Every application is a copy of a sample descriptor, alternately with automated and manual sync, with its own
+ * name and namespace. The applications are spread over the given number of ArgoCD projects and Git repositories,
+ * so that concurrent requests share projects and repositories as in a real platform.
+ * </p>
+ */
+final class Descriptors {
+
+    private static final List<String> TEMPLATES =
+            List.of("/descriptors/automated-sync.yaml", "/descriptors/manual-sync.yaml");
+
+    private final List<byte[]> bodies;
+
+    Descriptors(ObjectMapper objectMapper, int applications, int projects, int repositories) {
+        YAMLMapper yamlMapper = new YAMLMapper();
+        List<ObjectNode> templates =
+                TEMPLATES.stream().map(template -> read(yamlMapper, template)).toList();
+
+        this.bodies = new ArrayList<>(applications);
+        for (int i = 0; i < applications; i++) {
+            ObjectNode descriptor = templates.get(i % templates.size()).deepCopy();
+            ObjectNode component = (ObjectNode) descriptor.at("/dataProduct/components/0");
+            String componentId = String.format("urn:dmb:cmp:domainName:argocd-data-product:0:loadtest-%05d", i);
+            component.put("id", componentId);
+            component.put("name", String.format("loadtest %05d", i));
+            ObjectNode specific = (ObjectNode) component.get("specific");
+            specific.put("name", String.format("loadtest-app-%05d", i));
+            specific.put("project", String.format("loadtest-project-%03d", i % projects));
+            ((ObjectNode) specific.get("destination")).put("namespace", String.format("loadtest-%05d", i));
+            ((ObjectNode) specific.get("source"))
+                    .put("repoURL", String.format("https://gitlab.com/loadtest/repository-%03d.git", i % repositories));
+            descriptor.put("componentIdToProvision", componentId);
+
+            try {
+                ObjectNode body = objectMapper.createObjectNode();
+                body.put("descriptorKind", "COMPONENT_DESCRIPTOR");
+                body.put("descriptor", yamlMapper.writeValueAsString(descriptor));
+                body.put("removeData", false);
+                bodies.add(objectMapper.writeValueAsBytes(body));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** The body of the provisioning, unprovisioning and validation requests of an application. */
+    byte[] body(int application) {
+        return bodies.get(application);
+    }
+
+    int size() {
+        return bodies.size();
+    }
+
+    private static ObjectNode read(YAMLMapper yamlMapper, String template) {
+        try (InputStream input = Descriptors.class.getResourceAsStream(template)) {
+            if (input == null) throw new IllegalStateException("Missing descriptor template " + template);
+            return (ObjectNode) yamlMapper.readTree(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
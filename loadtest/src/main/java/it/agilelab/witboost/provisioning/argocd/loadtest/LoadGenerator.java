@@ -0,0 +1,174 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends requests to the adapter at a constant rate and records their outcomes.
+ * <p>
+ * Requests are started on schedule whether or not the previous ones have been answered (an open workload, like the
+ * requests of many independent users), so that a slow adapter shows up as growing latencies instead of a lower
+ * request rate. At most {@code concurrency} requests are in flight: the requests due beyond it are not sent and
+ * are reported as {@code dropped}. Every request picks its operation according to the mix and its application at
+ * random, from a seeded sequence.
+ * </p>
+ */
+final class LoadGenerator {
+
+    private final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final URI target;
+    private final Descriptors descriptors;
+    private final LoadTestOptions options;
+    private final Operation[] weightedOperations;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    LoadGenerator(
+            HttpClient httpClient,
+            ObjectMapper objectMapper,
+            URI target,
+            Descriptors descriptors,
+            LoadTestOptions options) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.target = target;
+        this.descriptors = descriptors;
+        this.options = options;
+        this.weightedOperations = options.mix().entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Operation[]::new);
+        options.mix().keySet().forEach(operation -> stats.put(operation, new OperationStats()));
+    }
+
+    /**
+     * Runs the warmup and the measured window, then waits for the requests still in flight.
+     *
+     * @return The report of the requests due in the measured window.
+     */
+    LoadReport run() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        Semaphore inFlight = new Semaphore(options.concurrency());
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate());
+
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+        Instant startedAt = Instant.now().plus(options.warmup());
+        logger.info(
+                "Sending {} requests/s for {} after a warmup of {}, to {}",
+                options.rate(),
+                options.duration(),
+                options.warmup(),
+                target);
+
+        for (long i = 0; ; i++) {
+            long due = start + i * interval;
+            if (due >= end) break;
+            waitUntil(due);
+            Operation operation = weightedOperations[random.nextInt(weightedOperations.length)];
+            int application = random.nextInt(descriptors.size());
+            boolean measured = due >= measureFrom;
+
+            if (!inFlight.tryAcquire()) {
+                if (measured) stats.get(operation).dropped();
+                continue;
+            }
+            httpClient
+                    .sendAsync(request(operation, application), HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((response, failure) -> {
+                        long latency = System.nanoTime() - due;
+                        inFlight.release();
+                        if (measured) record(stats.get(operation), latency, operation, response, failure);
+                    });
+        }
+
+        long timeout = options.requestTimeout().toMillis() + 1000;
+        if (!inFlight.tryAcquire(options.concurrency(), timeout, TimeUnit.MILLISECONDS)) {
+            logger.warn("Some requests were still in flight after {} ms, they are not reported", timeout);
+        }
+        return report(startedAt);
+    }
+
+    private HttpRequest request(Operation operation, int application) {
+        return HttpRequest.newBuilder(target.resolve(operation.path()))
+                .timeout(options.requestTimeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(descriptors.body(application)))
+                .build();
+    }
+
+    private void record(
+            OperationStats operationStats,
+            long latency,
+            Operation operation,
+            HttpResponse<byte[]> response,
+            Throwable failure) {
+        if (failure != null) {
+            operationStats.failure(latency, kind(failure));
+            return;
+        }
+        if (response.statusCode() != 200) {
+            operationStats.failure(latency, "http_" + response.statusCode());
+            return;
+        }
+        Optional<String> failed;
+        try {
+            JsonNode body = objectMapper.readTree(response.body());
+            failed = operation.failure(body);
+        } catch (IOException e) {
+            failed = Optional.of("unreadable_response");
+        }
+        failed.ifPresentOrElse(kind -> operationStats.failure(latency, kind), () -> operationStats.success(latency));
+    }
+
+    private LoadReport report(Instant startedAt) {
+        Duration window = options.duration();
+        OperationStats total = new OperationStats();
+        Map<String, OperationStats.OperationReport> operations = new LinkedHashMap<>();
+        stats.forEach((operation, operationStats) -> {
+            total.addAll(operationStats);
+            operations.put(operation.key(), operationStats.report(window));
+        });
+        return new LoadReport(
+                startedAt.toString(), window.toNanos() / 1e9, options.describe(), total.report(window), operations);
+    }
+
+    private static String kind(Throwable failure) {
+        Throwable cause =
+                failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        if (cause instanceof HttpTimeoutException) return "timeout";
+        if (cause instanceof ConnectException) return "connection";
+        if (cause instanceof IOException) return "io";
+        return cause.getClass().getSimpleName();
+    }
+
+    private static void waitUntil(long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import it.agilelab.witboost.provisioning.argocd.loadtest.OperationStats.OperationReport;
+import java.util.Map;
+
+/**
+ * The machine-readable outcome of a load test, written as JSON.
+ *
+ * @param startedAt When the measured window started, in ISO-8601.
+ * @param windowSeconds The length of the measured window, excluding the warmup.
+ * @param options The options of the run.
+ * @param total The summary of all the requests.
+ * @param operations The summary of the requests of every operation.
+ */
+record LoadReport(
+        String startedAt,
+        double windowSeconds,
+        Map<String, Object> options,
+        OperationReport total,
+        Map<String, OperationReport> operations) {}
@@ -0,0 +1,147 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import it.agilelab.witboost.provisioning.argocd.Main;
+import it.agilelab.witboost.provisioning.argocd.fake.FakeArgoCd;
+import it.agilelab.witboost.provisioning.argocd.fake.LatencyDistribution;
+import it.agilelab.witboost.provisioning.argocd.loadtest.OperationStats.OperationReport;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the throughput and the latency of the provision, unprovision and validate endpoints of the adapter
+ * under a sustained load, against a stubbed ArgoCD.
+ * <p>
+ * A {@link FakeArgoCd} is started with the configured latency, error rate and sync duration. Unless a
+ * {@code --target} adapter is given, the adapter is started in-process, connected to it, with the
+ * {@code --argocd.*}, {@code --spring.*}, {@code --server.*}, {@code --management.*} and {@code --logging.*}
+ * arguments. An adapter started separately must be configured with the {@code --argocdPort} and
+ * {@code --argocdToken} of the stubbed ArgoCD. The report is printed and written as JSON to {@code --output}; the
+ * process exits with {@code 1} if the error rate exceeds {@code --maxErrorRate} or the 99th percentile of the
+ * latency exceeds {@code --maxP99}. See {@link LoadTestOptions} for all the options.
+ * </p>
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        LoadReport report;
+        try (FakeArgoCd argoCd = FakeArgoCd.start(options.argocdPort(), options.argocdToken())) {
+            LatencyDistribution latency = options.argocdMedianLatency().isZero()
+                    ? LatencyDistribution.NONE
+                    : LatencyDistribution.logNormal(options.argocdMedianLatency(), options.argocdP99Latency());
+            argoCd.syncDuration(options.syncDuration())
+                    .everyEndpoint(behavior -> behavior.latency(latency).errorRate(options.argocdErrorRate()));
+            System.out.printf("Stubbed ArgoCD listening on %s%n", argoCd.baseUrl());
+
+            ConfigurableApplicationContext adapter = null;
+            try {
+                URI target;
+                if (options.target().isPresent()) {
+                    target = URI.create(options.target().get());
+                } else {
+                    adapter = startAdapter(argoCd, options);
+                    int port = ((WebServerApplicationContext) adapter)
+                            .getWebServer()
+                            .getPort();
+                    target = URI.create("http://127.0.0.1:" + port);
+                }
+
+                Descriptors descriptors = new Descriptors(
+                        objectMapper, options.applications(), options.projects(), options.repositories());
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                report = new LoadGenerator(httpClient, objectMapper, target, descriptors, options).run();
+            } finally {
+                if (adapter != null) adapter.close();
+            }
+        }
+
+        objectMapper.writeValue(options.output().toFile(), report);
+        print(report);
+        System.out.printf("Report written to %s%n", options.output().toAbsolutePath());
+
+        List<String> violations = violations(report.total(), options);
+        violations.forEach(violation -> System.out.printf("FAILED: %s%n", violation));
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext startAdapter(FakeArgoCd argoCd, LoadTestOptions options) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("argocd.basePath", argoCd.baseUrl());
+        properties.put("argocd.token", argoCd.token());
+        properties.put("git.username", "loadtest");
+        properties.put("git.token", "loadtest");
+        // The request logs of the adapter would slow it down and flood the output of the load test
+        properties.put("logging.level.root", "WARN");
+        properties.putAll(options.adapterProperties());
+
+        String[] args = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Main.class)
+                .bannerMode(Banner.Mode.OFF)
+                .run(args);
+    }
+
+    private static void print(LoadReport report) {
+        System.out.printf(
+                "%-12s %9s %9s %9s %10s %9s %9s %9s %9s  %s%n",
+                "operation",
+                "requests",
+                "succeeded",
+                "failed",
+                "req/s",
+                "p50 ms",
+                "p95 ms",
+                "p99 ms",
+                "max ms",
+                "errors");
+        report.operations().forEach((operation, operationReport) -> print(operation, operationReport));
+        print("total", report.total());
+    }
+
+    private static void print(String operation, OperationReport report) {
+        System.out.printf(
+                "%-12s %9d %9d %9d %10.1f %9.1f %9.1f %9.1f %9.1f  %s%n",
+                operation,
+                report.requests(),
+                report.succeeded(),
+                report.failed(),
+                report.throughput(),
+                report.latencyMs().p50(),
+                report.latencyMs().p95(),
+                report.latencyMs().p99(),
+                report.latencyMs().max(),
+                report.errors());
+    }
+
+    static List<String> violations(OperationReport total, LoadTestOptions options) {
+        List<String> violations = new ArrayList<>();
+        options.maxErrorRate()
+                .filter(maxErrorRate -> total.errorRate() > maxErrorRate)
+                .ifPresent(maxErrorRate -> violations.add(String.format(
+                        "error rate %.4f is above the maximum of %.4f", total.errorRate(), maxErrorRate)));
+        options.maxP99()
+                .filter(maxP99 -> total.latencyMs().p99() > maxP99.toNanos() / 1e6)
+                .ifPresent(maxP99 -> violations.add(String.format(
+                        "p99 latency of %.1f ms is above the maximum of %d ms",
+                        total.latencyMs().p99(), maxP99.toMillis())));
+        return violations;
+    }
+}
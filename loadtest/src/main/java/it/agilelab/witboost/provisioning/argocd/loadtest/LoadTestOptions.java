@@ -0,0 +1,147 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+/**
+ * The options of the load test, read from {@code --name=value} arguments.
+ *
+ * @param target The base URL of the adapter under test, or nothing to start it in-process.
+ * @param rate The requests started per second, whether or not the previous ones have been answered.
+ * @param warmup The time after the start whose requests are not reported.
+ * @param duration The time requests are started for after the warmup.
+ * @param concurrency The maximum number of requests in flight; requests due when it is reached are dropped.
+ * @param mix The relative weight of every operation.
+ * @param applications The number of distinct applications the requests are spread over.
+ * @param projects The number of ArgoCD projects the applications are spread over.
+ * @param repositories The number of Git repositories the applications are spread over.
+ * @param requestTimeout The time after which a request is abandoned.
+ * @param argocdPort The port of the stubbed ArgoCD, {@code 0} for a random one.
+ * @param argocdToken The token accepted by the stubbed ArgoCD.
+ * @param argocdMedianLatency The median latency of the stubbed ArgoCD.
+ * @param argocdP99Latency The 99th percentile of the latency of the stubbed ArgoCD.
+ * @param argocdErrorRate The share of the calls failing with {@code 503} in the stubbed ArgoCD.
+ * @param syncDuration The time the stubbed ArgoCD takes to sync an application.
+ * @param output The file the JSON report is written to.
+ * @param maxErrorRate The share of failed requests above which the load test fails, if any.
+ * @param maxP99 The 99th percentile of the latency above which the load test fails, if any.
+ * @param seed The seed of the sequence of operations and applications, so that runs can be repeated.
+ * @param adapterProperties The {@code argocd.*}, {@code spring.*}, {@code server.*}, {@code management.*} and
+ *                          {@code logging.*} arguments, passed to the in-process adapter.
+ */
+record LoadTestOptions(
+        Optional<String> target,
+        double rate,
+        Duration warmup,
+        Duration duration,
+        int concurrency,
+        Map<Operation, Integer> mix,
+        int applications,
+        int projects,
+        int repositories,
+        Duration requestTimeout,
+        int argocdPort,
+        String argocdToken,
+        Duration argocdMedianLatency,
+        Duration argocdP99Latency,
+        double argocdErrorRate,
+        Duration syncDuration,
+        Path output,
+        Optional<Double> maxErrorRate,
+        Optional<Duration> maxP99,
+        long seed,
+        Map<String, String> adapterProperties) {
+
+    private static final String[] ADAPTER_PREFIXES = {"argocd.", "spring.", "server.", "management.", "logging."};
+
+    static LoadTestOptions parse(String... args) {
+        SimpleCommandLinePropertySource arguments = new SimpleCommandLinePropertySource(args);
+        Map<String, String> adapterProperties = new LinkedHashMap<>();
+        for (String name : arguments.getPropertyNames()) {
+            for (String prefix : ADAPTER_PREFIXES) {
+                if (name.startsWith(prefix)) adapterProperties.put(name, arguments.getProperty(name));
+            }
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                Optional.ofNullable(arguments.getProperty("target")),
+                Double.parseDouble(value(arguments, "rate", "20")),
+                duration(arguments, "warmup", "10s"),
+                duration(arguments, "duration", "60s"),
+                Integer.parseInt(value(arguments, "concurrency", "64")),
+                mix(value(arguments, "mix", "provision=6,unprovision=2,validate=2")),
+                Integer.parseInt(value(arguments, "applications", "200")),
+                Integer.parseInt(value(arguments, "projects", "10")),
+                Integer.parseInt(value(arguments, "repositories", "20")),
+                duration(arguments, "requestTimeout", "60s"),
+                Integer.parseInt(value(arguments, "argocdPort", "0")),
+                value(arguments, "argocdToken", "loadtest-token"),
+                duration(arguments, "argocdMedianLatency", "20ms"),
+                duration(arguments, "argocdP99Latency", "200ms"),
+                Double.parseDouble(value(arguments, "argocdErrorRate", "0")),
+                duration(arguments, "syncDuration", "0s"),
+                Path.of(value(arguments, "output", "loadtest-report.json")),
+                Optional.ofNullable(arguments.getProperty("maxErrorRate")).map(Double::parseDouble),
+                Optional.ofNullable(arguments.getProperty("maxP99")).map(DurationStyle::detectAndParse),
+                Long.parseLong(value(arguments, "seed", "42")),
+                adapterProperties);
+        if (options.rate() <= 0 || options.concurrency() <= 0 || options.applications() <= 0) {
+            throw new IllegalArgumentException("rate, concurrency and applications must be positive");
+        }
+        if (options.projects() <= 0 || options.repositories() <= 0) {
+            throw new IllegalArgumentException("projects and repositories must be positive");
+        }
+        return options;
+    }
+
+    /** The options worth recording in the report, to compare runs with the same parameters. */
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("target", target.orElse("in-process"));
+        description.put("rate", rate);
+        description.put("warmup", warmup.toString());
+        description.put("duration", duration.toString());
+        description.put("concurrency", concurrency);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach((operation, weight) -> weights.put(operation.key(), weight));
+        description.put("mix", weights);
+        description.put("applications", applications);
+        description.put("projects", projects);
+        description.put("repositories", repositories);
+        description.put("argocdMedianLatency", argocdMedianLatency.toString());
+        description.put("argocdP99Latency", argocdP99Latency.toString());
+        description.put("argocdErrorRate", argocdErrorRate);
+        description.put("syncDuration", syncDuration.toString());
+        description.put("seed", seed);
+        description.put("adapterProperties", adapterProperties);
+        return description;
+    }
+
+    private static Map<Operation, Integer> mix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) throw new IllegalArgumentException("Invalid mix entry: " + entry);
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) throw new IllegalArgumentException("Invalid mix weight: " + entry);
+            if (weight > 0) mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("The mix must contain at least one operation");
+        return mix;
+    }
+
+    private static String value(SimpleCommandLinePropertySource arguments, String name, String defaultValue) {
+        String value = arguments.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static Duration duration(SimpleCommandLinePropertySource arguments, String name, String defaultValue) {
+        return DurationStyle.detectAndParse(value(arguments, name, defaultValue));
+    }
+}
@@ -0,0 +1,40 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Optional;
+
+/** The endpoints of the adapter driven by the load test and how their responses are judged. */
+enum Operation {
+    PROVISION("/v1/provision"),
+    UNPROVISION("/v1/unprovision"),
+    VALIDATE("/v1/validate");
+
+    private final String path;
+
+    Operation(String path) {
+        this.path = path;
+    }
+
+    String path() {
+        return path;
+    }
+
+    /** The name of the operation in the options and in the report. */
+    String key() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Judges a {@code 200} response of the adapter.
+     *
+     * @param body The body of the response.
+     * @return Nothing if the operation succeeded, otherwise the kind of failure counted in the report.
+     */
+    Optional<String> failure(JsonNode body) {
+        if (this == VALIDATE) {
+            return body.path("valid").asBoolean(false) ? Optional.empty() : Optional.of("invalid");
+        }
+        String status = body.path("status").asText("");
+        return "COMPLETED".equals(status) ? Optional.empty() : Optional.of("status_" + status.toLowerCase());
+    }
+}
@@ -0,0 +1,121 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcomes of the requests of an operation: the latency of every answered request, measured from the time it
+ * was due to be sent, and the number of failures of every kind.
+ * <p>
+ * Measuring from the due time rather than from the actual send time, requests delayed by a saturated generator or
+ * by the concurrency limit count the delay in their latency, instead of hiding it.
+ * </p>
+ */
+final class OperationStats {
+
+    /** The failure of the requests not sent because the maximum number of requests in flight was reached. */
+    static final String DROPPED = "dropped";
+
+    private long[] latencies = new long[1024];
+    private int answered;
+    private long succeeded;
+    private final Map<String, Long> failures = new TreeMap<>();
+
+    synchronized void success(long latencyNanos) {
+        add(latencyNanos);
+        succeeded++;
+    }
+
+    synchronized void failure(long latencyNanos, String kind) {
+        add(latencyNanos);
+        failures.merge(kind, 1L, Long::sum);
+    }
+
+    synchronized void dropped() {
+        failures.merge(DROPPED, 1L, Long::sum);
+    }
+
+    /** Adds the outcomes of another operation, to report the totals. */
+    synchronized void addAll(OperationStats other) {
+        synchronized (other) {
+            for (int i = 0; i < other.answered; i++) add(other.latencies[i]);
+            succeeded += other.succeeded;
+            other.failures.forEach((kind, count) -> failures.merge(kind, count, Long::sum));
+        }
+    }
+
+    /**
+     * Summarizes the outcomes.
+     *
+     * @param window The time the requests were sent in, to compute the throughput.
+     * @return The summary, with the latencies in milliseconds.
+     */
+    synchronized OperationReport report(Duration window) {
+        long[] sorted = Arrays.copyOf(latencies, answered);
+        Arrays.sort(sorted);
+        long failed = failures.values().stream().mapToLong(Long::longValue).sum();
+        double seconds = window.toNanos() / 1e9;
+        return new OperationReport(
+                succeeded + failed,
+                succeeded,
+                failed,
+                seconds > 0 ? succeeded / seconds : 0,
+                new Latency(
+                        millis(percentile(sorted, 50)),
+                        millis(percentile(sorted, 95)),
+                        millis(percentile(sorted, 99)),
+                        millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0),
+                        millis(
+                                sorted.length > 0
+                                        ? (long) Arrays.stream(sorted).average().orElse(0)
+                                        : 0)),
+                Collections.unmodifiableMap(new TreeMap<>(failures)));
+    }
+
+    /** The nearest-rank percentile of sorted values, {@code 0} if there are none. */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    private void add(long latencyNanos) {
+        if (answered == latencies.length) latencies = Arrays.copyOf(latencies, answered * 2);
+        latencies[answered++] = latencyNanos;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    /**
+     * The summary of an operation.
+     *
+     * @param requests The requests due in the measured window, answered, failed or dropped.
+     * @param succeeded The requests that succeeded.
+     * @param failed The requests that failed or were dropped.
+     * @param throughput The requests that succeeded per second.
+     * @param latencyMs The latency of the answered requests, successful or not.
+     * @param errors The number of failures of every kind: {@code http_<status>}, {@code status_<status>} for
+     *               operations answered with a status other than {@code COMPLETED}, {@code invalid} for failed
+     *               validations, {@code timeout}, {@code connection} and {@code dropped}.
+     */
+    record OperationReport(
+            long requests,
+            long succeeded,
+            long failed,
+            double throughput,
+            Latency latencyMs,
+            Map<String, Long> errors) {
+
+        double errorRate() {
+            return requests > 0 ? (double) failed / requests : 0;
+        }
+    }
+
+    /** The percentiles, maximum and mean of the latency, in milliseconds. */
+    record Latency(double p50, double p95, double p99, double max, double mean) {}
+}
@@ -0,0 +1,66 @@
+package it.agilelab.witboost.provisioning.argocd.loadtest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class OperationStatsTest {
+
+    @Test
+    void testPercentile_NearestRank() {
+        long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+        assertEquals(5, OperationStats.percentile(sorted, 50));
+        assertEquals(10, OperationStats.percentile(sorted, 95));
+        assertEquals(10, OperationStats.percentile(sorted, 99));
+        assertEquals(1, OperationStats.percentile(sorted, 0));
+        assertEquals(0, OperationStats.percentile(new long[0], 99));
+    }
+
+    @Test
+    void testReport_SummarizesLatenciesAndFailures() {
+        OperationStats stats = new OperationStats();
+        for (int i = 1; i <= 2000; i++) {
+            stats.success(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        stats.failure(TimeUnit.MILLISECONDS.toNanos(5000), "http_500");
+        stats.failure(TimeUnit.MILLISECONDS.toNanos(10), "status_failed");
+        stats.dropped();
+
+        OperationStats.OperationReport report = stats.report(Duration.ofSeconds(10));
+
+        assertEquals(2003, report.requests());
+        assertEquals(2000, report.succeeded());
+        assertEquals(3, report.failed());
+        assertEquals(200.0, report.throughput());
+        assertEquals(1000.0, report.latencyMs().p50());
+        assertEquals(1981.0, report.latencyMs().p99());
+        assertEquals(5000.0, report.latencyMs().max());
+        assertEquals(Map.of("http_500", 1L, "status_failed", 1L, OperationStats.DROPPED, 1L), report.errors());
+        assertEquals(3.0 / 2003, report.errorRate());
+    }
+
+    @Test
+    void testAddAll_MergesOperations() {
+        OperationStats provision = new OperationStats();
+        provision.success(TimeUnit.MILLISECONDS.toNanos(100));
+        provision.failure(TimeUnit.MILLISECONDS.toNanos(300), "timeout");
+        OperationStats validate = new OperationStats();
+        validate.success(TimeUnit.MILLISECONDS.toNanos(200));
+        validate.dropped();
+
+        OperationStats total = new OperationStats();
+        total.addAll(provision);
+        total.addAll(validate);
+        OperationStats.OperationReport report = total.report(Duration.ofSeconds(1));
+
+        assertEquals(4, report.requests());
+        assertEquals(2, report.succeeded());
+        assertEquals(200.0, report.latencyMs().p50());
+        assertEquals(300.0, report.latencyMs().max());
+        assertEquals(Map.of("timeout", 1L, OperationStats.DROPPED, 1L), report.errors());
+    }
+}
@@ -1,3 +1,13 @@
 #!/bin/bash
 
-exec java -javaagent:opentelemetry-jav agent.jar -jar argocd-tech-adapter.jar
\ No newline at end of file
+JAVA_OPTS="-javaagent:opentelemetry-javaagent.jar"
+if [ "$SPRING_AOT" = "true" ]; then
+  JAVA_OPTS="$JAVA_OPTS -Dspring.aot.enabled=true"
+fi
+
+if [ "$1" = "--cds-training" ]; then
+  exec java $JAVA_OPTS -XX:ArchiveClassesAtExit=application.jsa -Dspring.context.exit=onRefresh \
+    -jar application/argocd-tech-adapter.jar
+fi
+
+exec java $JAVA_OPTS -XX:SharedArchiveFile=application.jsa -jar application/argocd-tech-adapter.jar